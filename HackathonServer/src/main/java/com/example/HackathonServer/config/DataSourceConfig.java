@@ -0,0 +1,136 @@
+package com.example.HackathonServer.config;
+
+import com.example.HackathonServer.util.ShardIds;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Connection pools. The primary "ingest" pool takes every write; optional
+ * read replicas (replica.datasource.urls, same credentials as the primary)
+ * take read-only transactions of GET requests via ReplicaRoutingDataSource;
+ * the small read-only "analytics" pools serve dashboard summaries (the
+ * ingest/analytics bulkhead, see DashboardAnalyticsService) from the
+ * replicas when there are any. Replicas lagging more than replica.max-lag-ms
+ * are taken out of both rotations by ReplicaLagMonitor. Extra shards (sharding.datasource.urls) sit
+ * beside the primary as shards 1..N behind ShardRoutingDataSource, each with
+ * its own analytics pool; the primary and its replicas are shard 0. Pool
+ * sizes: spring.datasource.hikari.*, replica.datasource.hikari.*,
+ * sharding.datasource.hikari.*, analytics.datasource.hikari.*.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    @Bean
+    @Primary
+    @ConfigurationProperties("spring.datasource")
+    public DataSourceProperties dataSourceProperties() {
+        return new DataSourceProperties();
+    }
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource ingestDataSource(DataSourceProperties properties,
+                                             @Value("${sharding.datasource.urls:}") List<String> shardUrls) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("ingest");
+        if (!urls(shardUrls).isEmpty()) {
+            dataSource.setConnectionInitSql(ShardIds.initSql(0));
+        }
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource routingDataSource(@Qualifier("ingestDataSource") HikariDataSource primary,
+                                                      DataSourceProperties properties, Environment environment,
+                                                      @Value("${replica.datasource.urls:}") List<String> replicaUrls) {
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (String url : urls(replicaUrls)) {
+            HikariDataSource replica = properties.initializeDataSourceBuilder().url(url)
+                    .type(HikariDataSource.class).build();
+            Binder.get(environment).bind("replica.datasource.hikari", Bindable.ofInstance(replica));
+            replica.setPoolName("replica-" + replicas.size());
+            replica.setReadOnly(true);
+            replicas.add(replica);
+        }
+        return new ReplicaRoutingDataSource(primary, replicas);
+    }
+
+    @Bean
+    public ShardRoutingDataSource shardRoutingDataSource(@Qualifier("routingDataSource") ReplicaRoutingDataSource shard0,
+                                                         DataSourceProperties properties, Environment environment,
+                                                         @Value("${sharding.datasource.urls:}") List<String> shardUrls) {
+        List<String> urls = urls(shardUrls);
+        if (urls.size() + 1 > ShardIds.MAX_SHARDS) {
+            throw new IllegalStateException("At most " + ShardIds.MAX_SHARDS + " shards are supported");
+        }
+        List<DataSource> shards = new ArrayList<>();
+        shards.add(shard0);
+        for (String url : urls) {
+            HikariDataSource shard = properties.initializeDataSourceBuilder().url(url)
+                    .type(HikariDataSource.class).build();
+            Binder.get(environment).bind("sharding.datasource.hikari", Bindable.ofInstance(shard));
+            shard.setPoolName("shard-" + shards.size());
+            shard.setConnectionInitSql(ShardIds.initSql(shards.size()));
+            shards.add(shard);
+        }
+        return new ShardRoutingDataSource(shards, 1);
+    }
+
+    // declaring our own DataSources switches off Boot's, so the one JPA and the JdbcTemplates use is declared here.
+    // The lazy proxy defers fetching a connection until the first statement, by which time the request's shard
+    // and the transaction's read-only flag are known and the routers can pick a shard and a replica.
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("shardRoutingDataSource") ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+
+    @Bean
+    public ShardRoutingDataSource analyticsDataSource(DataSourceProperties properties, Environment environment,
+                                                      @Value("${replica.datasource.urls:}") List<String> replicaUrls,
+                                                      @Value("${sharding.datasource.urls:}") List<String> shardUrls) {
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (String url : urls(replicaUrls)) {
+            replicas.add(analyticsPool(properties, environment, url, "analytics-0-replica-" + replicas.size()));
+        }
+        // shard 0 reads whichever replica ReplicaLagMonitor keeps in rotation, the primary when none is
+        ReplicaRoutingDataSource shard0 = new ReplicaRoutingDataSource(analyticsPool(properties, environment,
+                properties.determineUrl(), "analytics-0"), replicas, true);
+        shard0.afterPropertiesSet(); // not a bean of its own
+        List<DataSource> pools = new ArrayList<>();
+        pools.add(shard0);
+        for (String url : urls(shardUrls)) {
+            pools.add(analyticsPool(properties, environment, url, "analytics-" + pools.size()));
+        }
+        return new ShardRoutingDataSource(pools, 0);
+    }
+
+    private static HikariDataSource analyticsPool(DataSourceProperties properties, Environment environment,
+                                                  String url, String name) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder().url(url)
+                .type(HikariDataSource.class).build();
+        pool.setMaximumPoolSize(4);
+        Binder.get(environment).bind("analytics.datasource.hikari", Bindable.ofInstance(pool));
+        pool.setPoolName(name);
+        pool.setReadOnly(true);
+        return pool;
+    }
+
+    private static List<String> urls(List<String> configured) {
+        return configured.stream().filter(url -> !url.isBlank()).map(String::trim).toList();
+    }
+}
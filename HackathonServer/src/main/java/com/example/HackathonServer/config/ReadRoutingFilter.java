@@ -0,0 +1,76 @@
+package com.example.HackathonServer.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Decides per request whether read-only transactions may use a replica
+ * (ReplicaLagMonitor keeps lagging replicas out of rotation), with a
+ * read-your-writes guard on top: every write request sets
+ * a short-lived cookie holding "primary until" (now + replica.read-your-writes-ms),
+ * and GETs carrying an unexpired one stay on the primary, so a parent who
+ * just created a child or homework sees it on the next screen. The dashboard
+ * runs on another origin, so CORS allows credentials (WebConfig) and the
+ * client fetches with credentials: 'include' for the cookie to come back.
+ */
+@Component
+public class ReadRoutingFilter extends OncePerRequestFilter {
+
+    static final String PIN_COOKIE = "rw-pin";
+
+    @Autowired
+    private ReplicaRoutingDataSource routingDataSource;
+
+    @Value("${replica.read-your-writes-ms:5000}")
+    private long readYourWritesMs;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (!routingDataSource.hasReplicas()) {
+            chain.doFilter(request, response);
+            return;
+        }
+        String method = request.getMethod();
+        boolean read = "GET".equals(method) || "HEAD".equals(method);
+        if (!read && !"OPTIONS".equals(method)) {
+            // set before the handler runs; the response may be committed by the time it returns
+            Cookie pin = new Cookie(PIN_COOKIE, String.valueOf(System.currentTimeMillis() + readYourWritesMs));
+            pin.setPath("/");
+            pin.setHttpOnly(true);
+            pin.setMaxAge((int) Math.max(1, (readYourWritesMs + 999) / 1000));
+            response.addCookie(pin);
+        }
+        ReplicaRoutingDataSource.setReplicaEligible(read && !pinned(request));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReplicaRoutingDataSource.setReplicaEligible(false);
+        }
+    }
+
+    private static boolean pinned(HttpServletRequest request) {
+        if (request.getCookies() == null) {
+            return false;
+        }
+        for (Cookie cookie : request.getCookies()) {
+            if (PIN_COOKIE.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue()) > System.currentTimeMillis();
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.HackathonServer.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures each replica's lag with a heartbeat: every replica.heartbeat-ms the
+ * primary stamps replica_heartbeat with its clock, and a replica's lag is how
+ * far its copy of the stamp trails the primary's (no clock comparison across
+ * hosts; accurate to about one heartbeat). Replicas more than
+ * replica.max-lag-ms behind, or that cannot be read, are taken out of
+ * rotation of both the request router and the analytics router until they
+ * catch up. The heartbeat has its own thread: on the shared @Scheduled one it
+ * would stall behind the nightly jobs, leaving the rotation frozen.
+ */
+@Slf4j
+@Component
+@DependsOn("entityManagerFactory")
+public class ReplicaLagMonitor {
+
+    private static final String READ_BEAT = "select beat_at from replica_heartbeat where id = 1";
+
+    @Autowired
+    private ReplicaRoutingDataSource routingDataSource;
+    @Autowired
+    @Qualifier("analyticsDataSource")
+    private ShardRoutingDataSource analyticsDataSource;
+    @Autowired
+    @Qualifier("ingestDataSource")
+    private HikariDataSource primary;
+
+    @Value("${replica.max-lag-ms:2000}")
+    private long maxLagMs;
+    @Value("${replica.heartbeat-ms:1000}")
+    private long heartbeatMs;
+
+    private JdbcTemplate primaryJdbc;
+    private List<JdbcTemplate> replicaJdbc;
+    private volatile Map<Integer, Long> lagMillis = Map.of(); // -1 when the replica could not be read
+    private ThreadPoolTaskScheduler scheduler;
+
+    @PostConstruct
+    void init() {
+        primaryJdbc = new JdbcTemplate(primary);
+        replicaJdbc = routingDataSource.replicas().stream().map(JdbcTemplate::new).toList();
+        replicaJdbc.forEach(jdbc -> jdbc.setQueryTimeout(2));
+        if (replicaJdbc.isEmpty()) {
+            return;
+        }
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setThreadNamePrefix("replica-heartbeat-");
+        scheduler.setPoolSize(1);
+        scheduler.initialize();
+        scheduler.scheduleWithFixedDelay(this::beat, Duration.ofMillis(heartbeatMs));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    public Map<Integer, Long> lagMillis() {
+        return lagMillis;
+    }
+
+    public void beat() {
+        if (replicaJdbc.isEmpty()) {
+            return;
+        }
+        Timestamp stamped;
+        try {
+            primaryJdbc.update("insert into replica_heartbeat (id, beat_at) values (1, now(6)) " +
+                    "on duplicate key update beat_at = now(6)");
+            stamped = primaryJdbc.queryForObject(READ_BEAT, Timestamp.class);
+        } catch (RuntimeException e) {
+            log.warn("Could not write the replica heartbeat", e);
+            return; // keep the last rotation; reads still fall back to the primary when it is empty
+        }
+        Map<Integer, Long> lags = new LinkedHashMap<>();
+        List<Integer> inRotation = new ArrayList<>();
+        for (int i = 0; i < replicaJdbc.size(); i++) {
+            long lag;
+            try {
+                List<Timestamp> seen = replicaJdbc.get(i).queryForList(READ_BEAT, Timestamp.class);
+                lag = seen.isEmpty() ? -1 : Math.max(0, stamped.getTime() - seen.get(0).getTime());
+            } catch (RuntimeException e) {
+                lag = -1;
+            }
+            lags.put(i, lag);
+            if (lag >= 0 && lag <= maxLagMs) {
+                inRotation.add(i);
+            }
+            Long before = lagMillis.get(i);
+            boolean wasIn = before != null && before >= 0 && before <= maxLagMs;
+            if (wasIn != inRotation.contains(i)) {
+                log.info("Replica {} {} rotation (lag {} ms)", i, wasIn ? "out of" : "back in", lag);
+            }
+        }
+        lagMillis = lags;
+        routingDataSource.setInRotation(inRotation);
+        if (analyticsDataSource.shard(0) instanceof ReplicaRoutingDataSource analytics) {
+            analytics.setInRotation(inRotation);
+        }
+    }
+}
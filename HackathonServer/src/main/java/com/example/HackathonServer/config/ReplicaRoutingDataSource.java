@@ -0,0 +1,90 @@
+package com.example.HackathonServer.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends a connection request to a replica only when the thread is serving a
+ * GET that ReadRoutingFilter marked replica-eligible and the current
+ * transaction is read-only; everything else - writes, reads inside write
+ * requests, scheduled jobs, and GETs from clients that wrote moments ago -
+ * goes to the primary. The analytics router (readsOnly) sends every
+ * connection to a replica. Replicas are used round-robin among those
+ * ReplicaLagMonitor keeps in rotation; with none in rotation, or before the
+ * first measurement, everything goes to the primary.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    private static final String PRIMARY = "primary";
+    private static final ThreadLocal<Boolean> REPLICA_ELIGIBLE = new ThreadLocal<>();
+
+    private final HikariDataSource primary;
+    private final List<HikariDataSource> replicas;
+    private final boolean readsOnly;
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile List<Integer> inRotation = List.of();
+
+    public ReplicaRoutingDataSource(HikariDataSource primary, List<HikariDataSource> replicas) {
+        this(primary, replicas, false);
+    }
+
+    /** @param readsOnly every connection is a read (the analytics pools); this router then owns the primary too */
+    public ReplicaRoutingDataSource(HikariDataSource primary, List<HikariDataSource> replicas, boolean readsOnly) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.readsOnly = readsOnly;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            targets.put(i, replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    public boolean hasReplicas() {
+        return !replicas.isEmpty();
+    }
+
+    public List<HikariDataSource> replicas() {
+        return replicas;
+    }
+
+    /** Indexes of the replicas within the lag limit. */
+    public void setInRotation(List<Integer> replicaIndexes) {
+        inRotation = List.copyOf(replicaIndexes);
+    }
+
+    static void setReplicaEligible(boolean eligible) {
+        if (eligible) {
+            REPLICA_ELIGIBLE.set(Boolean.TRUE);
+        } else {
+            REPLICA_ELIGIBLE.remove();
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        List<Integer> usable = inRotation;
+        if (usable.isEmpty() || (!readsOnly && (REPLICA_ELIGIBLE.get() == null
+                || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()))) {
+            return PRIMARY;
+        }
+        return usable.get(Math.floorMod(next.getAndIncrement(), usable.size()));
+    }
+
+    // the ingest primary pool is a bean of its own and closed by the context
+    @Override
+    public void close() {
+        replicas.forEach(HikariDataSource::close);
+        if (readsOnly) {
+            primary.close();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.HackathonServer.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Picks the shard for a new connection from the thread's current shard
+ * (ShardRoutingInterceptor sets it per request, ShardDirectory for scatter
+ * and migration work). Threads that never set one use shard 0, which also
+ * holds the directory and the global stats tables. The shard is fixed once a
+ * connection is taken, so switch before the first statement of a request or
+ * on a thread with no open transaction.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private final List<DataSource> shards;
+    private final int ownedFrom;
+
+    /** @param ownedFrom index of the first shard this router closes; earlier ones are beans of their own */
+    public ShardRoutingDataSource(List<DataSource> shards, int ownedFrom) {
+        this.shards = List.copyOf(shards);
+        this.ownedFrom = ownedFrom;
+        Map<Object, Object> targets = new HashMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            targets.put(i, shards.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shards.get(0));
+    }
+
+    public int shardCount() {
+        return shards.size();
+    }
+
+    public DataSource shard(int shard) {
+        return shards.get(shard);
+    }
+
+    public static int current() {
+        Integer shard = CURRENT.get();
+        return shard == null ? 0 : shard;
+    }
+
+    public static void route(int shard) {
+        CURRENT.set(shard);
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    public static <T> T on(int shard, Supplier<T> work) {
+        Integer previous = CURRENT.get();
+        CURRENT.set(shard);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        int shard = current();
+        if (shard >= shards.size()) {
+            throw new IllegalStateException("No datasource for shard " + shard);
+        }
+        return shard;
+    }
+
+    @Override
+    public void close() {
+        for (int i = ownedFrom; i < shards.size(); i++) {
+            if (shards.get(i) instanceof HikariDataSource pool) {
+                pool.close();
+            } else if (shards.get(i) instanceof ReplicaRoutingDataSource router) {
+                router.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.HackathonServer.config;
+
+import com.example.HackathonServer.services.ShardDirectory;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Map;
+
+/**
+ * Pins each request to a shard before the handler runs, from the first id in
+ * the path that identifies one: parentId, then childId, then videoId, then
+ * {id} read as the entity named by the first path segment; /sync falls back
+ * to its childId parameter. Requests that carry their key in the body
+ * (creating a parent, homework, or ingesting sessions, moves and scores)
+ * route themselves in the controller before their first statement, and
+ * anything left unrouted uses shard 0.
+ */
+@Component
+public class ShardRoutingInterceptor implements AsyncHandlerInterceptor {
+
+    private static final Map<String, String> ID_OWNERS = Map.of(
+            "parent", ShardDirectory.PARENT,
+            "homework", ShardDirectory.HOMEWORK,
+            "session", ShardDirectory.SESSION,
+            "score", ShardDirectory.SCORE,
+            "move", ShardDirectory.MOVE,
+            "video", ShardDirectory.VIDEO);
+
+    @Autowired
+    private ShardDirectory shardDirectory;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        ShardRoutingDataSource.clear();
+        if (!shardDirectory.isSharded()) {
+            return true;
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, String> vars = (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        if (vars == null) {
+            vars = Map.of();
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        String[] segments = path.split("/");
+        String owner = segments.length > 1 ? ID_OWNERS.get(segments[1]) : null;
+        if (vars.containsKey("parentId")) {
+            shardDirectory.route(ShardDirectory.PARENT, parseId(vars.get("parentId")));
+        } else if (vars.containsKey("childId")) {
+            shardDirectory.route(ShardDirectory.CHILD, parseId(vars.get("childId")));
+        } else if (vars.containsKey("videoId")) {
+            shardDirectory.route(ShardDirectory.VIDEO, parseId(vars.get("videoId")));
+        } else if (vars.containsKey("id") && owner != null) {
+            shardDirectory.route(owner, parseId(vars.get("id")));
+        } else if (request.getParameter("childId") != null) {
+            shardDirectory.route(ShardDirectory.CHILD, parseId(request.getParameter("childId")));
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        ShardRoutingDataSource.clear();
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        ShardRoutingDataSource.clear();
+    }
+
+    // a malformed id fails the handler's own conversion; route it anywhere
+    private static Long parseId(String value) {
+        try {
+            return value == null ? null : Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.HackathonServer.controllers;
+
+import com.example.HackathonServer.config.ReplicaLagMonitor;
+import com.example.HackathonServer.models.MoveAnomaly;
+import com.example.HackathonServer.repos.MoveAnomalyRepo;
+import com.example.HackathonServer.services.ActiveUsersService;
+import com.example.HackathonServer.services.ChildSummaryProjector;
+import com.example.HackathonServer.services.HomeworkScheduler;
+import com.example.HackathonServer.services.ReshardingService;
+import com.example.HackathonServer.services.ShardDirectory;
+import com.example.HackathonServer.services.VideoCatalogService;
+import com.example.HackathonServer.services.WeeklyReportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/admin")
+public class AdminController {
+
+    @Autowired
+    private ActiveUsersService activeUsersService;
+    @Autowired
+    private VideoCatalogService videoCatalogService;
+    @Autowired
+    private MoveAnomalyRepo moveAnomalyRepo;
+    @Autowired
+    private ReshardingService reshardingService;
+    @Autowired
+    private ChildSummaryProjector childSummaryProjector;
+    @Autowired
+    private ShardDirectory shardDirectory;
+    @Autowired
+    private WeeklyReportService weeklyReportService;
+    @Autowired
+    private HomeworkScheduler homeworkScheduler;
+    @Autowired
+    private ReplicaLagMonitor replicaLagMonitor;
+
+    // DAU/WAU/MAU ending on the given date (today by default)
+    @GetMapping("/active-users")
+    public ResponseEntity<ActiveUsersService.ActiveCounts> getActiveUsers(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(required = false) String region) {
+        return ResponseEntity.ok(activeUsersService.activeCounts(date == null ? LocalDate.now() : date, region));
+    }
+
+    // runs the sketch merge and COUNT(DISTINCT) over the same range and reports time and error
+    @GetMapping("/active-users/compare")
+    public ResponseEntity<ActiveUsersService.ActiveCountsComparison> compareActiveUsers(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String region) {
+        if (to.isBefore(from)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(activeUsersService.compareWithExact(from, to, region));
+    }
+
+    // one-time migration: backfill video keys, merge duplicate videos, repoint homework/sessions
+    @PostMapping("/videos/dedup")
+    public ResponseEntity<VideoCatalogService.DedupReport> dedupVideos() {
+        return ResponseEntity.ok(videoCatalogService.dedupe());
+    }
+
+    // last measured lag per replica index in ms, -1 when it could not be read
+    @GetMapping("/replicas/lag")
+    public ResponseEntity<Map<Integer, Long>> getReplicaLag() {
+        return ResponseEntity.ok(replicaLagMonitor.lagMillis());
+    }
+
+    // over-rate move bursts recorded by MoveRateGuard in the last `hours` hours
+    @GetMapping("/move-anomalies")
+    public ResponseEntity<List<MoveAnomaly>> getMoveAnomalies(@RequestParam(defaultValue = "24") int hours) {
+        return ResponseEntity.ok(moveAnomalyRepo.findByLastSeenAtAfterOrderByLastSeenAtDesc(
+                LocalDateTime.now().minusHours(hours)));
+    }
+
+    // parents the hash ring would now place on another shard (e.g. after a shard was added)
+    @GetMapping("/shards/misplaced")
+    public ResponseEntity<List<ReshardingService.Misplacement>> getMisplacedParents(
+            @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(reshardingService.misplaced(limit));
+    }
+
+    // moves one parent and everything they own; without `shard` the hash ring picks the target
+    @PostMapping("/shards/migrate")
+    public ResponseEntity<ReshardingService.MigrationReport> migrateParent(@RequestParam Long parentId,
+                                                                           @RequestParam(required = false) Integer shard) {
+        try {
+            ReshardingService.MigrationReport report = reshardingService.migrate(parentId, shard);
+            return report != null ? ResponseEntity.ok(report) : ResponseEntity.notFound().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // replays one child's events into child_summary
+    @PostMapping("/child-summary/rebuild")
+    public ResponseEntity<Map<String, Long>> rebuildChildSummary(@RequestParam Long childId) {
+        shardDirectory.route(ShardDirectory.CHILD, childId);
+        return ResponseEntity.ok(Map.of("events", childSummaryProjector.rebuild(childId)));
+    }
+
+    // writes the missing weekly reports of the week containing `week` (last full week by default), or all of them
+    // again with rerun=true (picks up late rows); 409 while a run is going, 202 with its progress when async
+    @PostMapping("/weekly-reports/run")
+    public ResponseEntity<WeeklyReportService.Progress> runWeeklyReports(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate week,
+            @RequestParam(defaultValue = "true") boolean async,
+            @RequestParam(defaultValue = "false") boolean rerun) {
+        WeeklyReportService.Progress progress = weeklyReportService.start(
+                week == null ? WeeklyReportService.lastWeek() : week, async, rerun);
+        if (progress == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return async ? ResponseEntity.accepted().body(progress) : ResponseEntity.ok(progress);
+    }
+
+    @GetMapping("/weekly-reports/progress")
+    public ResponseEntity<WeeklyReportService.Progress> getWeeklyReportProgress() {
+        return ResponseEntity.ofNullable(weeklyReportService.progress());
+    }
+
+    // recurring homework runs held in memory, due within the horizon
+    @GetMapping("/homework-schedules/wheel")
+    public ResponseEntity<HomeworkScheduler.WheelStats> getHomeworkScheduleWheel() {
+        return ResponseEntity.ok(homeworkScheduler.stats());
+    }
+}
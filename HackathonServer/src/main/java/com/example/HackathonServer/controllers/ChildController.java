@@ -1,19 +1,34 @@
 package com.example.HackathonServer.controllers;
 
+import com.example.HackathonServer.config.ShardRoutingDataSource;
+import com.example.HackathonServer.dto.ChildDTO;
+import com.example.HackathonServer.dto.MoveDTO;
 import com.example.HackathonServer.models.Child;
-import com.example.HackathonServer.models.Move;
+import com.example.HackathonServer.models.ChildSummary;
 import com.example.HackathonServer.models.Parent;
 import com.example.HackathonServer.models.Session;
+import com.example.HackathonServer.models.WeeklyReport;
 import com.example.HackathonServer.repos.ChildRepo;
-import com.example.HackathonServer.repos.MoveRepo;
 import com.example.HackathonServer.repos.ParentRepo;
+import com.example.HackathonServer.repos.WeeklyReportRepo;
+import com.example.HackathonServer.services.ActivityWatermarks;
+import com.example.HackathonServer.services.ChildExportService;
+import com.example.HackathonServer.services.CohortAnalyticsService;
+import com.example.HackathonServer.services.DashboardAnalyticsService;
+import com.example.HackathonServer.services.FamilyDeletionService;
+import com.example.HackathonServer.services.MoveArchiveService;
+import com.example.HackathonServer.util.ETags;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -22,6 +37,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/parent/{parentId}/child")
@@ -32,22 +48,29 @@ public class ChildController {
     @Autowired
     private ParentRepo parentRepo;
     @Autowired
-    private MoveRepo moveRepo;
+    private MoveArchiveService moveArchiveService;
+    @Autowired
+    private CohortAnalyticsService cohortAnalyticsService;
+    @Autowired
+    private ChildExportService childExportService;
+    @Autowired
+    private FamilyDeletionService familyDeletionService;
+    @Autowired
+    private DashboardAnalyticsService dashboardAnalyticsService;
+    @Autowired
+    private ActivityWatermarks activityWatermarks;
+    @Autowired
+    private WeeklyReportRepo weeklyReportRepo;
 
 
     @GetMapping
-    public ResponseEntity<List<Child>> getAllChildren(@PathVariable Long parentId) {
-        return ResponseEntity.ok(childRepo.findByParentId(parentId));
+    public ResponseEntity<List<ChildDTO>> getAllChildren(@PathVariable Long parentId) {
+        return ResponseEntity.ok(childRepo.findDTOsByParentId(parentId));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Child> getChildById(@PathVariable Long parentId, @PathVariable Long id) {
-        Optional<Child> child = childRepo.findByIdAndParentId(id, parentId);
-        if (child.get() == null) {
-            return ResponseEntity.notFound().build();
-        }
-        return ResponseEntity.ok(child.get());
-                
+    public ResponseEntity<ChildDTO> getChildById(@PathVariable Long parentId, @PathVariable Long id) {
+        return ResponseEntity.of(childRepo.findDTOByIdAndParentId(id, parentId));
     }
     @Data
     @NoArgsConstructor
@@ -87,38 +110,89 @@ public class ChildController {
         return ResponseEntity.ok(savedChild);
     }
 
+    // bulk deletes, leaves first; with async=true returns 202 and a job to poll at /parent/deletions/{jobId}
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteChild(@PathVariable Long parentId, @PathVariable Long id) {
-        Optional<Child> child = childRepo.findByIdAndParentId(id, parentId);
-        if (child.isEmpty()) {
+    public ResponseEntity<FamilyDeletionService.DeletionJob> deleteChild(@PathVariable Long parentId, @PathVariable Long id,
+                                                                        @RequestParam(defaultValue = "false") boolean async) {
+        FamilyDeletionService.DeletionJob job = familyDeletionService.deleteChild(parentId, id, async);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return async ? ResponseEntity.accepted().body(job) : ResponseEntity.ok(job);
+    }
+
+    // precomputed by the nightly WeeklyReportService run, newest week first
+    @GetMapping("/{id}/weekly-reports")
+    public ResponseEntity<List<WeeklyReport>> getWeeklyReports(@PathVariable Long parentId, @PathVariable Long id,
+                                                               @RequestParam(defaultValue = "8") int weeks) {
+        if (!childRepo.existsByIdAndParentId(id, parentId)) {
             return ResponseEntity.notFound().build();
         }
-        childRepo.delete(child.get());
-        return ResponseEntity.ok().build();
+        return ResponseEntity.ok(weeklyReportRepo.findByChildIdOrderByWeekStartDesc(id,
+                PageRequest.of(0, Math.max(1, Math.min(weeks, 104)))));
     }
 
     @GetMapping("/{id}/moves/last-week")
-    public ResponseEntity<List<Move>> getLastWeekMoves(@PathVariable Long parentId, @PathVariable Long id) {
-        Optional<Child> child = childRepo.findByIdAndParentId(id, parentId);
-        if (child.isEmpty()) {
+    public ResponseEntity<List<MoveDTO>> getLastWeekMoves(@PathVariable Long parentId, @PathVariable Long id) {
+        if (!childRepo.existsByIdAndParentId(id, parentId)) {
             return ResponseEntity.notFound().build();
         }
         LocalDateTime weekAgo = LocalDateTime.now().minusDays(7);
-        List<Move> moves = moveRepo.findByChildIdAndCreatedAtAfter(id, weekAgo);
+        List<MoveDTO> moves = moveArchiveService.movesSince(id, weekAgo);
         return ResponseEntity.ok(moves);
     }
 
     @GetMapping("/{id}/moves/last-month")
-    public ResponseEntity<List<Move>> getLastMonthMoves(@PathVariable Long parentId, @PathVariable Long id) {
-        Optional<Child> child = childRepo.findByIdAndParentId(id, parentId);
-        if (child.isEmpty()) {
+    public ResponseEntity<List<MoveDTO>> getLastMonthMoves(@PathVariable Long parentId, @PathVariable Long id) {
+        if (!childRepo.existsByIdAndParentId(id, parentId)) {
             return ResponseEntity.notFound().build();
         }
         LocalDateTime monthAgo = LocalDateTime.now().minusDays(30);
-        List<Move> moves = moveRepo.findByChildIdAndCreatedAtAfter(id, monthAgo);
+        List<MoveDTO> moves = moveArchiveService.movesSince(id, monthAgo);
         return ResponseEntity.ok(moves);
     }
 
+    @GetMapping("/{id}/percentile")
+    public ResponseEntity<CohortAnalyticsService.CohortPercentile> getCohortPercentile(@PathVariable Long parentId,
+                                                                                     @PathVariable Long id) {
+        Optional<Child> child = childRepo.findByIdAndParentId(id, parentId);
+        if (child.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(cohortAnalyticsService.percentileOf(child.get()));
+    }
+
+    // all-time counters from the child_summary read model; 404 until the child has any activity
+    @GetMapping("/{id}/summary")
+    public CompletableFuture<ResponseEntity<ChildSummary>> getChildSummary(@PathVariable Long parentId, @PathVariable Long id,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        if (!childRepo.existsByIdAndParentId(id, parentId)) {
+            return CompletableFuture.completedFuture(ResponseEntity.notFound().build());
+        }
+        String etag = activityWatermarks.etag(id, "summary");
+        if (ETags.matches(ifNoneMatch, etag)) {
+            return CompletableFuture.completedFuture(ETags.notModified(etag));
+        }
+        return dashboardAnalyticsService.submit(() -> {
+            ChildSummary summary = dashboardAnalyticsService.summary(id);
+            return summary == null ? ResponseEntity.notFound().build() : ResponseEntity.ok().eTag(etag).body(summary);
+        });
+    }
+
+    // zip of NDJSON files streamed from the database as it is written; nothing is buffered or staged on disk
+    @GetMapping("/{id}/export")
+    public ResponseEntity<StreamingResponseBody> exportChild(@PathVariable Long parentId, @PathVariable Long id) {
+        if (!childRepo.existsByIdAndParentId(id, parentId)) {
+            return ResponseEntity.notFound().build();
+        }
+        int shard = ShardRoutingDataSource.current(); // the body is written on an async thread
+        StreamingResponseBody body = out -> childExportService.export(shard, id, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"child-" + id + "-export.zip\"")
+                .body(body);
+    }
+
 
 
 
@@ -1,5 +1,7 @@
 package com.example.HackathonServer.controllers;
 
+import com.example.HackathonServer.dto.HomeworkDTO;
+import com.example.HackathonServer.events.ChildEvent;
 import com.example.HackathonServer.models.Child;
 import com.example.HackathonServer.models.Homework;
 import com.example.HackathonServer.models.Parent;
@@ -8,20 +10,30 @@ import com.example.HackathonServer.repos.ChildRepo;
 import com.example.HackathonServer.repos.HomeworkRepo;
 import com.example.HackathonServer.repos.ParentRepo;
 import com.example.HackathonServer.repos.VideoRepo;
+import com.example.HackathonServer.services.ChildSummaryProjector;
+import com.example.HackathonServer.services.HomeworkAssignmentService;
+import com.example.HackathonServer.services.ShardDirectory;
+import com.example.HackathonServer.services.SyncService;
+import com.example.HackathonServer.services.VideoCatalogService;
+import com.example.HackathonServer.util.ChangeVersions;
+import com.example.HackathonServer.util.ETags;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.Collections;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
 @RequestMapping("/homework")
 public class HomeworkController {
 
+    private static final String COMPLETED = "Completed";
+
     @Autowired
     private HomeworkRepo homeworkRepo;
     @Autowired
@@ -30,6 +42,18 @@ public class HomeworkController {
     private ChildRepo childRepo;
     @Autowired
     private VideoRepo videoRepo;
+    @Autowired
+    private ChangeVersions changeVersions;
+    @Autowired
+    private VideoCatalogService videoCatalogService;
+    @Autowired
+    private HomeworkAssignmentService homeworkAssignmentService;
+    @Autowired
+    private SyncService syncService;
+    @Autowired
+    private ShardDirectory shardDirectory;
+    @Autowired
+    private ApplicationEventPublisher events;
 
     @Data
     @NoArgsConstructor
@@ -43,55 +67,93 @@ public class HomeworkController {
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
-    private static class HomeworkDTO{
-        Long id;
+    private static class BulkHomeworkRequest{
         String title;
         String url;
-        Long videoId;
-        String status;
+        Long parentId;
+        List<Long> childIds;
     };
     
     @GetMapping
-    public List<HomeworkDTO> getAllHomework() {
-        return homeworkRepo.findAll().stream()
-                .map(hw -> new HomeworkDTO(hw.getId(), hw.getTitle(),
-                        hw.getVideo().getUrl(), hw.getVideo().getId(), hw.getStatus()))
-                .toList();
+    public ResponseEntity<List<HomeworkDTO>> getAllHomework(
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        String etag = ETags.of("homework", String.join(".", shardDirectory.scatterEach(homeworkRepo::watermark)));
+        if (ETags.matches(ifNoneMatch, etag)) {
+            return ETags.notModified(etag);
+        }
+        return ResponseEntity.ok().eTag(etag).body(shardDirectory.scatter(homeworkRepo::findAllDTOs));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<HomeworkDTO> getHomeworkById(@PathVariable Long id) {
-        return homeworkRepo.findById(id)
-                .map(hw -> ResponseEntity.ok(new HomeworkDTO(hw.getId(), hw.getTitle(), hw.getVideo().getUrl(), hw.getVideo().getId(), hw.getStatus())))
+    public ResponseEntity<HomeworkDTO> getHomeworkById(@PathVariable Long id,
+                                                       @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        String version = homeworkRepo.findVersionById(id).orElse(null);
+        if (version == null) {
+            return ResponseEntity.notFound().build();
+        }
+        String etag = ETags.of("homework", id, version);
+        if (ETags.matches(ifNoneMatch, etag)) {
+            return ETags.notModified(etag);
+        }
+        return homeworkRepo.findDTOById(id)
+                .map(hw -> ResponseEntity.ok().eTag(etag).body(hw))
                 .orElse(ResponseEntity.notFound().build());
     }
 
     @PostMapping
     public ResponseEntity<HomeworkDTO> createHomework(@RequestBody HomeworkRequest hw) {
+        shardDirectory.route(ShardDirectory.PARENT, hw.getParentId());
         Parent parent = parentRepo.findById(hw.getParentId()).
                 orElseThrow(() -> new RuntimeException("Parent not found"));
         Child child = childRepo.findById(hw.getChildId()).
                 orElseThrow(() -> new RuntimeException("Child not found"));
-        Video video = new Video();
-        video.setTitle(hw.getTitle());
-        video.setUrl(hw.getUrl());
-        Video savedVideo = videoRepo.save(video);
+        Video savedVideo = videoCatalogService.findOrCreate(hw.getTitle(), hw.getUrl());
         Homework homework = new Homework();
         homework.setVideo(savedVideo);
         homework.setParent(parent);
         homework.setChild(child);
         homework.setTitle(hw.getTitle());
-        Homework saved = homeworkRepo.save(homework);
+        Homework saved = changeVersions.save(homeworkRepo, homework);
         homework.setChild(child);
         return ResponseEntity.ok(new HomeworkDTO(saved.getId(), saved.getTitle(), saved.getVideo().getUrl(), saved.getVideo().getId(), saved.getStatus()));
     }
 
+    // same video for several children of one parent: one ownership query, one multi-row insert
+    @PostMapping("/bulk")
+    public ResponseEntity<List<HomeworkAssignmentService.AssignmentResult>> createHomeworkBulk(
+            @RequestBody BulkHomeworkRequest hw) {
+        if (hw.getParentId() == null || hw.getChildIds() == null || hw.getChildIds().isEmpty()
+                || hw.getChildIds().size() > HomeworkAssignmentService.MAX_CHILDREN
+                || hw.getUrl() == null || hw.getTitle() == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        shardDirectory.route(ShardDirectory.PARENT, hw.getParentId());
+        if (!parentRepo.existsById(hw.getParentId())) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(homeworkAssignmentService.assign(hw.getParentId(), hw.getTitle(),
+                hw.getUrl(), hw.getChildIds()));
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<HomeworkDTO> updateHomework(@PathVariable Long id, @RequestBody Homework homework) {
         return homeworkRepo.findById(id)
                 .map(existingHomework -> {
+                    boolean completes = !COMPLETED.equalsIgnoreCase(existingHomework.getStatus())
+                            && COMPLETED.equalsIgnoreCase(homework.getStatus());
+                    boolean reopens = COMPLETED.equalsIgnoreCase(existingHomework.getStatus())
+                            && !COMPLETED.equalsIgnoreCase(homework.getStatus());
+                    Long childId = existingHomework.getChild().getId();
                     homework.setId(id);
-                    Homework saved = homeworkRepo.save(homework);
+                    homework.setAssignedAt(existingHomework.getAssignedAt());
+                    homework.setCompletedAt(!COMPLETED.equalsIgnoreCase(homework.getStatus()) ? null
+                            : completes ? LocalDateTime.now() : existingHomework.getCompletedAt());
+                    Homework saved = changeVersions.save(homeworkRepo, homework);
+                    if (completes) {
+                        events.publishEvent(new ChildEvent.HomeworkCompleted(childId, id));
+                    } else if (reopens) {
+                        ChildSummaryProjector.retract(events, List.of(new ChildEvent.HomeworkCompleted(childId, id)));
+                    }
                     return ResponseEntity.ok(new HomeworkDTO(saved.getId(), saved.getTitle(), saved.getVideo().getUrl(), saved.getVideo().getId(), saved.getStatus()));
                 })
                 .orElse(ResponseEntity.notFound().build());
@@ -101,22 +163,29 @@ public class HomeworkController {
     public ResponseEntity<Void> deleteHomework(@PathVariable Long id) {
         return homeworkRepo.findById(id)
                 .map(homework -> {
+                    Long childId = homework.getChild().getId();
+                    boolean completed = COMPLETED.equalsIgnoreCase(homework.getStatus());
                     homeworkRepo.delete(homework);
+                    syncService.recordDeletion(SyncService.HOMEWORK, id, childId);
+                    if (completed) {
+                        ChildSummaryProjector.retract(events, List.of(new ChildEvent.HomeworkCompleted(childId, id)));
+                    }
                     return ResponseEntity.ok().<Void>build();
                 })
                 .orElse(ResponseEntity.notFound().build());
     }
 
     @GetMapping("/child/{childId}/all")
-    public ResponseEntity<List<HomeworkDTO>> getAllForAChild(@PathVariable Long childId) {
-        Child child = childRepo.findById(childId).orElseThrow(
-                () -> new RuntimeException("Child not found"));
-        List<Homework> homeworks = child.getHomeworks();
-        Collections.reverse(homeworks);
-        List<HomeworkDTO> dtos = homeworks.stream()
-                .map(hw -> new HomeworkDTO(hw.getId(), hw.getTitle(), hw.getVideo().getUrl(), hw.getVideo().getId(), hw.getStatus()))
-                .toList();
-        return ResponseEntity.ok(dtos);
+    public ResponseEntity<List<HomeworkDTO>> getAllForAChild(@PathVariable Long childId,
+                                                             @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        String etag = ETags.of("child-homework", childId, homeworkRepo.watermarkForChild(childId));
+        if (ETags.matches(ifNoneMatch, etag)) {
+            return ETags.notModified(etag);
+        }
+        if (!childRepo.existsById(childId)) {
+            throw new RuntimeException("Child not found");
+        }
+        return ResponseEntity.ok().eTag(etag).body(homeworkRepo.findDTOsByChildId(childId));
     }
     
     
@@ -0,0 +1,75 @@
+package com.example.HackathonServer.controllers;
+
+import com.example.HackathonServer.models.HomeworkSchedule;
+import com.example.HackathonServer.repos.ChildRepo;
+import com.example.HackathonServer.repos.HomeworkScheduleRepo;
+import com.example.HackathonServer.services.HomeworkScheduler;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.List;
+
+@RestController
+@RequestMapping("/parent/{parentId}/homework-schedules")
+public class HomeworkScheduleController {
+
+    @Autowired
+    private HomeworkScheduleRepo homeworkScheduleRepo;
+    @Autowired
+    private ChildRepo childRepo;
+    @Autowired
+    private HomeworkScheduler homeworkScheduler;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    private static class ScheduleRequest {
+        private Long childId;
+        private String title;
+        private String url;
+        private String frequency; //DAILY, WEEKLY
+        private DayOfWeek dayOfWeek; // WEEKLY only, e.g. MONDAY
+        private LocalTime time; // e.g. 08:00
+    }
+
+    @GetMapping
+    public ResponseEntity<List<HomeworkSchedule>> getSchedules(@PathVariable Long parentId) {
+        return ResponseEntity.ok(homeworkScheduleRepo.findByParentIdOrderById(parentId));
+    }
+
+    // "assign this video every Monday at 8:00" or "daily at 7:30"; the first homework is created at the next such time
+    @PostMapping
+    public ResponseEntity<HomeworkSchedule> createSchedule(@PathVariable Long parentId, @RequestBody ScheduleRequest request) {
+        if (request.getChildId() == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!childRepo.existsByIdAndParentId(request.getChildId(), parentId)) {
+            return ResponseEntity.notFound().build();
+        }
+        HomeworkSchedule schedule = new HomeworkSchedule(null, parentId, request.getChildId(), request.getTitle(),
+                request.getUrl(), request.getFrequency() == null ? null : request.getFrequency().toUpperCase(),
+                request.getDayOfWeek(), request.getTime(), null, null, null, null);
+        try {
+            return ResponseEntity.ok(homeworkScheduler.create(schedule));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // homework already created stays; a pending run finds the schedule gone and does nothing
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deleteSchedule(@PathVariable Long parentId, @PathVariable Long id) {
+        return homeworkScheduleRepo.findByIdAndParentId(id, parentId)
+                .map(schedule -> {
+                    homeworkScheduleRepo.delete(schedule);
+                    return ResponseEntity.ok().<Void>build();
+                })
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
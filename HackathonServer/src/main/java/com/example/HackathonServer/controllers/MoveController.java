@@ -1,22 +1,33 @@
 package com.example.HackathonServer.controllers;
 
-import com.example.HackathonServer.models.Child;
+import com.example.HackathonServer.dto.MoveDTO;
+import com.example.HackathonServer.events.ChildEvent;
 import com.example.HackathonServer.models.Move;
-import com.example.HackathonServer.models.Session;
-import com.example.HackathonServer.repos.ChildRepo;
 import com.example.HackathonServer.repos.MoveRepo;
-import jakarta.persistence.EntityNotFoundException;
+import com.example.HackathonServer.services.ActivityWatermarks;
+import com.example.HackathonServer.services.AdmissionControl;
+import com.example.HackathonServer.services.ChildSummaryProjector;
+import com.example.HackathonServer.services.DashboardAnalyticsService;
+import com.example.HackathonServer.services.IngestDeduplicator;
+import com.example.HackathonServer.services.MovePartitionService;
+import com.example.HackathonServer.services.MoveRateGuard;
+import com.example.HackathonServer.services.ShardDirectory;
+import com.example.HackathonServer.services.VideoEngagementService;
+import com.example.HackathonServer.util.ETags;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/move")
@@ -25,16 +36,32 @@ public class MoveController {
     @Autowired
     private MoveRepo moveRepo;
     @Autowired
-    private ChildRepo childRepo;
+    private VideoEngagementService videoEngagementService;
+    @Autowired
+    private ActivityWatermarks activityWatermarks;
+    @Autowired
+    private IngestDeduplicator ingestDeduplicator;
+    @Autowired
+    private MoveRateGuard moveRateGuard;
+    @Autowired
+    private DashboardAnalyticsService dashboardAnalyticsService;
+    @Autowired
+    private AdmissionControl admissionControl;
+    @Autowired
+    private ShardDirectory shardDirectory;
+    @Autowired
+    private MovePartitionService movePartitionService;
+    @Autowired
+    private ApplicationEventPublisher events;
 
     @GetMapping
-    public ResponseEntity<List<Move>> getAllMoves() {
-        return ResponseEntity.ok(moveRepo.findAll());
+    public ResponseEntity<List<MoveDTO>> getAllMoves() {
+        return ResponseEntity.ok(shardDirectory.scatter(moveRepo::findAllDTOs));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Move> getMoveById(@PathVariable Long id) {
-        Optional<Move> move = moveRepo.findById(id);
+    public ResponseEntity<MoveDTO> getMoveById(@PathVariable Long id) {
+        Optional<MoveDTO> move = moveRepo.findDTOById(id);
         if (move.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
@@ -42,105 +69,118 @@ public class MoveController {
     }
 
     @PostMapping
-    public ResponseEntity<Move> createMove(@RequestBody Move move) {
-        Move savedMove = moveRepo.save(move);
+    // a retried POST with the same clientEventId gets the original move back
+    public ResponseEntity<Move> createMove(@RequestBody Move move, HttpServletRequest request) {
+        shardDirectory.routeWrite(move.getChild() == null ? null : move.getChild().getId(),
+                move.getSession() == null ? null : move.getSession().getId());
+        long wait = admissionControl.acquire(move, request);
+        if (wait > 0) {
+            return AdmissionControl.tooManyRequests(wait);
+        }
+        String eventId = move.getClientEventId();
+        if (eventId != null && eventId.length() > IngestDeduplicator.MAX_EVENT_ID_LENGTH) {
+            return ResponseEntity.badRequest().build();
+        }
+        // rate-checked only once the move is known to be new: a retry of a stored move is not another move
+        MoveRateGuard.Action[] rate = {MoveRateGuard.Action.ALLOW};
+        IngestDeduplicator.Result<Move> result = ingestDeduplicator.insertOnce("move", eventId,
+                () -> moveRepo.findByClientEventId(eventId), () -> {
+                    rate[0] = moveRateGuard.check(move);
+                    boolean refused = rate[0] == MoveRateGuard.Action.THROTTLE || rate[0] == MoveRateGuard.Action.DROP;
+                    return refused ? null : movePartitionService.insert(move);
+                });
+        if (rate[0] == MoveRateGuard.Action.THROTTLE) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(moveRateGuard.retryAfterSeconds()))
+                    .build();
+        }
+        if (rate[0] == MoveRateGuard.Action.DROP) {
+            return ResponseEntity.accepted().build(); // not stored; the client has nothing to retry
+        }
+        Move savedMove = result.getValue();
+        if (result.isCreated()) {
+            videoEngagementService.recordMove(savedMove);
+            events.publishEvent(new ChildEvent.MoveRecorded(savedMove.getChild() == null ? null
+                    : savedMove.getChild().getId(), savedMove.getId(), savedMove.getType(), savedMove.getCreatedAt()));
+        }
         return ResponseEntity.ok(savedMove);
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<Move> updateMove(@PathVariable Long id, @RequestBody Move move) {
-        if (!moveRepo.existsById(id)) {
+    public ResponseEntity<Move> updateMove(@PathVariable Long id, @RequestBody Move move,
+                                           HttpServletRequest request) {
+        long wait = admissionControl.acquire(move, request);
+        if (wait > 0) {
+            return AdmissionControl.tooManyRequests(wait);
+        }
+        Move existing = moveRepo.findById(id).orElse(null);
+        if (existing == null) {
             return ResponseEntity.notFound().build();
         }
+        ChildEvent before = ChildSummaryProjector.moveEvent(existing); // save merges into the loaded entity
         move.setId(id);
         Move updatedMove = moveRepo.save(move);
+        ChildSummaryProjector.retract(events, List.of(before));
+        events.publishEvent(ChildSummaryProjector.moveEvent(updatedMove));
         return ResponseEntity.ok(updatedMove);
     }
 
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteMove(@PathVariable Long id) {
-        if (!moveRepo.existsById(id)) {
+        Move existing = moveRepo.findById(id).orElse(null);
+        if (existing == null) {
             return ResponseEntity.notFound().build();
         }
+        ChildEvent before = ChildSummaryProjector.moveEvent(existing);
         moveRepo.deleteById(id);
+        ChildSummaryProjector.retract(events, List.of(before));
         return ResponseEntity.ok().build();
     }
     
     @GetMapping("/{childId}")
-    public ResponseEntity<Map<String,Integer>>getTotalMovesByChild(@PathVariable Long childId)
-    {
-        Child child = childRepo.findById(childId).orElseThrow(
-                ()->new EntityNotFoundException("Child not found"));
-        List<Session>sessions = child.getSessions();
-        List<Move>moveList = new ArrayList<>();
-        int jump=0,squat=0,clap=0,totalMoves=0;
-        // add all the moves from all the sessions to the list
-        for(Session session:sessions)
-        {
-            List<Move>moves = session.getMoves();
-            moveList.addAll(moves);
-            for(Move move:moves)
-            {
-                if(move.getType()=="JUMP") jump++;
-                else if(move.getType()=="SQUAT") squat++;
-                else if(move.getType()=="CLAP") clap++;
-            }
+    public CompletableFuture<ResponseEntity<Map<String, Integer>>> getTotalMovesByChild(@PathVariable Long childId,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        String etag = activityWatermarks.etag(childId, "moves-total");
+        if (ETags.matches(ifNoneMatch, etag)) {
+            return CompletableFuture.completedFuture(ETags.notModified(etag));
         }
-        totalMoves = jump+squat+clap;
-        Map<String,Integer>map = Map.of("jump",jump,"squat",squat,"clap",clap,"totalMoves",totalMoves);
-        return ResponseEntity.ok(map);
+        return dashboardAnalyticsService.submit(() -> {
+            if (!dashboardAnalyticsService.childExists(childId)) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok().eTag(etag).body(dashboardAnalyticsService.moveTotals(childId, null));
+        });
     }
 
     @GetMapping("/last7days/{childId}")
-    public ResponseEntity<Map<String, Integer>> getTotalMovesByChildLast7Days
-            (@PathVariable Long childId) 
-    {
-        Child child = childRepo.findById(childId).orElseThrow(
-                () -> new EntityNotFoundException("Child not found"));
-        List<Session> sessions = child.getSessions();
-        List<Move> moveList = new ArrayList<>();
-        int jump = 0, squat = 0, clap = 0, totalMoves = 0;
-        LocalDateTime sevenDaysAgo = LocalDateTime.now().minus(7, ChronoUnit.DAYS);
-
-        for (Session session : sessions) {
-            List<Move> moves = session.getMoves();
-            for (Move move : moves) {
-                if (move.getCreatedAt().isAfter(sevenDaysAgo)) {
-                    if (move.getType() == "JUMP") jump++;
-                    else if (move.getType() == "SQUAT") squat++;
-                    else if (move.getType() == "CLAP") clap++;
-                }
-            }
+    public CompletableFuture<ResponseEntity<Map<String, Integer>>> getTotalMovesByChildLast7Days(@PathVariable Long childId,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        String etag = activityWatermarks.etag(childId, "moves-7d");
+        if (ETags.matches(ifNoneMatch, etag)) {
+            return CompletableFuture.completedFuture(ETags.notModified(etag));
         }
-        totalMoves = jump + squat + clap;
-        Map<String, Integer> map = Map.of("jump", jump, "squat", squat, "clap", clap, "totalMoves", totalMoves);
-        return ResponseEntity.ok(map);
+        return dashboardAnalyticsService.submit(() -> {
+            if (!dashboardAnalyticsService.childExists(childId)) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok().eTag(etag).body(dashboardAnalyticsService.moveTotals(childId,
+                    LocalDateTime.now().minusDays(7)));
+        });
     }
 
     @GetMapping("/last30days/{childId}")
-    public ResponseEntity<Map<String, Integer>> getTotalMovesByChildLast30Days
-            (@PathVariable Long childId) {
-        Child child = childRepo.findById(childId).orElseThrow(
-                () -> new EntityNotFoundException("Child not found"));
-        List<Session> sessions = child.getSessions();
-        List<Move> moveList = new ArrayList<>();
-        int jump = 0, squat = 0, clap = 0, totalMoves = 0;
-        LocalDateTime thirtyDaysAgo = LocalDateTime.now().minus(30, ChronoUnit.DAYS);
-
-        for (Session session : sessions) {
-            List<Move> moves = session.getMoves();
-            for (Move move : moves) {
-                if (move.getCreatedAt().isAfter(thirtyDaysAgo)) {
-                    if (move.getType() == "JUMP") jump++;
-                    else if (move.getType() == "SQUAT") squat++;
-                    else if (move.getType() == "CLAP") clap++;
-                }
-            }
+    public CompletableFuture<ResponseEntity<Map<String, Integer>>> getTotalMovesByChildLast30Days(@PathVariable Long childId,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        String etag = activityWatermarks.etag(childId, "moves-30d");
+        if (ETags.matches(ifNoneMatch, etag)) {
+            return CompletableFuture.completedFuture(ETags.notModified(etag));
         }
-        totalMoves = jump + squat + clap;
-        Map<String, Integer> map = Map.of("jump", jump, "squat", squat, "clap", clap, "totalMoves", totalMoves);
-        return ResponseEntity.ok(map);
+        return dashboardAnalyticsService.submit(() -> {
+            if (!dashboardAnalyticsService.childExists(childId)) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok().eTag(etag).body(dashboardAnalyticsService.moveTotals(childId,
+                    LocalDateTime.now().minusDays(30)));
+        });
     }
 }
-    
-
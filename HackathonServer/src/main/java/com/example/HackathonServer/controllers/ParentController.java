@@ -4,10 +4,15 @@ import com.example.HackathonServer.models.Child;
 import com.example.HackathonServer.models.Parent;
 import com.example.HackathonServer.repos.ChildRepo;
 import com.example.HackathonServer.repos.ParentRepo;
+import com.example.HackathonServer.services.FamilyDeletionService;
+import com.example.HackathonServer.services.ShardDirectory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -23,6 +28,15 @@ public class ParentController {
     @Autowired
     private ChildRepo childRepo;
 
+    @Autowired
+    private ShardDirectory shardDirectory;
+
+    @Autowired
+    private FamilyDeletionService familyDeletionService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
@@ -32,6 +46,7 @@ public class ParentController {
         private String email;
         private String password;
         private String dp;
+        private String region;
     }
 
     @Data
@@ -42,9 +57,12 @@ public class ParentController {
         private String password;
     }
 
+    // parents live on every shard; each shard's part is serialized inside its own transaction
     @GetMapping
-    public List<Parent> getAllParents() {
-        return parentRepo.findAll();
+    public List<JsonNode> getAllParents() {
+        return shardDirectory.scatter(() -> parentRepo.findAll().stream()
+                .map(parent -> objectMapper.<JsonNode>valueToTree(parent))
+                .toList());
     }
 
     @GetMapping("/{id}")
@@ -56,12 +74,19 @@ public class ParentController {
 
     @PostMapping
     public ResponseEntity<Parent> createParent(@RequestBody ParentRequest request) {
+        // usernames hash to one shard, so its unique key still holds; emails have to be checked everywhere
+        if (shardDirectory.isSharded() && shardDirectory.scatterEach(() -> parentRepo.existsByEmail(request.getEmail()))
+                .contains(Boolean.TRUE)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        shardDirectory.routeTo(shardDirectory.placeParent(request.getUsername()));
         Parent parent = new Parent();
         parent.setFullName(request.getFullName());
         parent.setUsername(request.getUsername());
         parent.setEmail(request.getEmail());
         parent.setPassword(request.getPassword());
         parent.setDp(request.getDp());
+        parent.setRegion(request.getRegion());
         return ResponseEntity.ok(parentRepo.save(parent));
     }
 
@@ -75,21 +100,34 @@ public class ParentController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    // bulk deletes, leaves first; with async=true returns 202 and a job to poll at /parent/deletions/{jobId}
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteParent(@PathVariable Long id) {
-        return parentRepo.findById(id)
-                .map(parent -> {
-                    parentRepo.delete(parent);
-                    return ResponseEntity.ok().<Void>build();
-                })
-                .orElse(ResponseEntity.notFound().build());
+    public ResponseEntity<FamilyDeletionService.DeletionJob> deleteParent(@PathVariable Long id,
+                                                                         @RequestParam(defaultValue = "false") boolean async) {
+        FamilyDeletionService.DeletionJob job = familyDeletionService.deleteParent(id, async);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return async ? ResponseEntity.accepted().body(job) : ResponseEntity.ok(job);
+    }
+
+    @GetMapping("/deletions/{jobId}")
+    public ResponseEntity<FamilyDeletionService.DeletionJob> getDeletionJob(@PathVariable String jobId) {
+        return ResponseEntity.ofNullable(familyDeletionService.job(jobId));
     }
 
     @PostMapping("/signin")
     public ResponseEntity<Parent> signIn(@RequestBody SignInRequest request) {
-        Parent parent = parentRepo.findByEmailAndPassword(request.getEmail(), request.getPassword())
-                .orElse(null);
-        return parent != null ? ResponseEntity.ok(parent) : ResponseEntity.notFound().build();
+        // find the parent's shard first, then load it on this request's own connection
+        Long parentId = shardDirectory.scatter(() -> parentRepo.findByEmailAndPassword(request.getEmail(),
+                request.getPassword()).map(Parent::getId).stream().toList()).stream().findFirst().orElse(null);
+        if (parentId == null) {
+            return ResponseEntity.notFound().build();
+        }
+        shardDirectory.route(ShardDirectory.PARENT, parentId);
+        return parentRepo.findById(parentId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
     }
 
 
@@ -1,16 +1,23 @@
 package com.example.HackathonServer.controllers;
 
+import com.example.HackathonServer.dto.QuestionDTO;
 import com.example.HackathonServer.models.Question;
 import com.example.HackathonServer.models.Video;
 import com.example.HackathonServer.repos.QuestionRepo;
 import com.example.HackathonServer.repos.VideoRepo;
+import com.example.HackathonServer.services.AnswerKeyCache;
+import com.example.HackathonServer.services.QuestionImportService;
+import com.example.HackathonServer.services.QuestionStatsService;
+import com.example.HackathonServer.services.SyncService;
+import com.example.HackathonServer.util.ChangeVersions;
+import com.example.HackathonServer.util.ETags;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/video/{videoId}/question")
@@ -20,15 +27,46 @@ public class QuestionController {
     private QuestionRepo questionRepo;
     @Autowired
     private VideoRepo videoRepo;
+    @Autowired
+    private ChangeVersions changeVersions;
+    @Autowired
+    private AnswerKeyCache answerKeyCache;
+    @Autowired
+    private QuestionStatsService questionStatsService;
+    @Autowired
+    private QuestionImportService questionImportService;
+    @Autowired
+    private SyncService syncService;
 
     @GetMapping
-    public List<Question> getAllQuestions() {
-        return questionRepo.findAll();
+    public ResponseEntity<List<QuestionDTO>> getAllQuestions(
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        String etag = ETags.of("questions", questionRepo.watermark());
+        if (ETags.matches(ifNoneMatch, etag)) {
+            return ETags.notModified(etag);
+        }
+        return ResponseEntity.ok().eTag(etag).body(questionRepo.findAllDTOs());
+    }
+
+    @GetMapping("/stats")
+    public List<QuestionStatsService.QuestionStatsDTO> getQuestionStats(@PathVariable Long videoId) {
+        return questionStatsService.statsForVideo(videoId);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Question> getQuestionById(@PathVariable Long id) {
-        return ResponseEntity.of(questionRepo.findById(id));
+    public ResponseEntity<QuestionDTO> getQuestionById(@PathVariable Long id,
+                                                    @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        Long version = questionRepo.findChangeVersionById(id).orElse(null);
+        if (version == null) {
+            return ResponseEntity.notFound().build();
+        }
+        String etag = ETags.of("question", id, version);
+        if (ETags.matches(ifNoneMatch, etag)) {
+            return ETags.notModified(etag);
+        }
+        return questionRepo.findDTOById(id)
+                .map(question -> ResponseEntity.ok().eTag(etag).body(question))
+                .orElse(ResponseEntity.notFound().build());
     }
 
     @PostMapping
@@ -36,26 +74,27 @@ public class QuestionController {
                                    @RequestBody Question question)
     {
         Video video = videoRepo.findById(videoId).orElseThrow(EntityNotFoundException::new);
-        Question q = questionRepo.save(question);
+        question.setVideo(video);
+        Question q = changeVersions.save(questionRepo, question);
         video.getQuestions().add(q);
         videoRepo.save(video);
+        answerKeyCache.invalidate(videoId);
         return q;
     }
 
+    // replaces the video's question set; questions missing from the body are deleted
     @PostMapping("/question-set")
-    public List<Question> createQuestionSet(@PathVariable Long videoId,
+    public ResponseEntity<?> createQuestionSet(@PathVariable Long videoId,
                                    @RequestBody List<Question> question)
     {
-        Video video = videoRepo.findById(videoId).orElseThrow(EntityNotFoundException::new);
-        List<Question>questionList = new ArrayList<>();
-        for(Question q : question) {
-            q.setVideo(video);
-            Question saved = questionRepo.save(q);
-            questionList.add(saved);
+        if (!videoRepo.existsById(videoId)) {
+            throw new EntityNotFoundException();
+        }
+        try {
+            return ResponseEntity.ok(questionImportService.replaceQuestionSet(videoId, question));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", String.valueOf(e.getMessage())));
         }
-        video.setQuestions(questionList);
-        videoRepo.save(video);
-        return question;
     }
 
 
@@ -67,15 +106,20 @@ public class QuestionController {
             return ResponseEntity.notFound().build();
         }
         question.setId(id);
-        return ResponseEntity.ok(questionRepo.save(question));
+        question.setVideo(videoRepo.getReferenceById(videoId));
+        Question saved = changeVersions.save(questionRepo, question);
+        answerKeyCache.invalidate(videoId);
+        return ResponseEntity.ok(saved);
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteQuestion(@PathVariable Long id) {
+    public ResponseEntity<Void> deleteQuestion(@PathVariable Long videoId, @PathVariable Long id) {
         if (!questionRepo.existsById(id)) {
             return ResponseEntity.notFound().build();
         }
         questionRepo.deleteById(id);
+        syncService.recordDeletion(SyncService.QUESTION, id, videoId);
+        answerKeyCache.invalidate(videoId);
         return ResponseEntity.ok().build();
     }
 }
@@ -0,0 +1,41 @@
+package com.example.HackathonServer.controllers;
+
+import com.example.HackathonServer.services.QuestionImportService;
+import com.example.HackathonServer.util.CsvReader;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.Map;
+
+// bulk question-set replace for many videos; the body is streamed, not buffered
+@RestController
+@RequestMapping("/question/import")
+public class QuestionImportController {
+
+    @Autowired
+    private QuestionImportService questionImportService;
+
+    // malformed input is a 400 naming the problem; other IOExceptions (a dropped upload) stay errors
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> importJson(HttpServletRequest request) throws IOException {
+        try {
+            return ResponseEntity.ok(questionImportService.importJson(request.getInputStream()));
+        } catch (IllegalArgumentException | JsonProcessingException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+
+    @PostMapping(consumes = "text/csv")
+    public ResponseEntity<?> importCsv(HttpServletRequest request) throws IOException {
+        try {
+            return ResponseEntity.ok(questionImportService.importCsv(request.getInputStream()));
+        } catch (IllegalArgumentException | CsvReader.MalformedCsvException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+}
@@ -1,19 +1,21 @@
 package com.example.HackathonServer.controllers;
 
-import com.example.HackathonServer.models.Child;
-import com.example.HackathonServer.models.Score;
-import com.example.HackathonServer.models.Session;
-import com.example.HackathonServer.repos.ChildRepo;
+import com.example.HackathonServer.dto.ScoreDTO;
+import com.example.HackathonServer.events.ChildEvent;
 import com.example.HackathonServer.repos.ScoreRepo;
-import jakarta.persistence.EntityNotFoundException;
+import com.example.HackathonServer.services.ActivityWatermarks;
+import com.example.HackathonServer.services.ChildSummaryProjector;
+import com.example.HackathonServer.services.DashboardAnalyticsService;
+import com.example.HackathonServer.services.ShardDirectory;
+import com.example.HackathonServer.util.ETags;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
 import java.util.List;
-
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/score")
@@ -22,124 +24,101 @@ public class ScoreController {
     @Autowired
     private ScoreRepo scoreRepo;
     @Autowired
-    private ChildRepo childRepo;
+    private DashboardAnalyticsService dashboardAnalyticsService;
+    @Autowired
+    private ActivityWatermarks activityWatermarks;
+    @Autowired
+    private ShardDirectory shardDirectory;
+    @Autowired
+    private ChildSummaryProjector childSummaryProjector;
+    @Autowired
+    private ApplicationEventPublisher events;
 
     @GetMapping
-    public List<Score> getAllScores() {
-        return scoreRepo.findAll();
+    public List<ScoreDTO> getAllScores() {
+        return shardDirectory.scatter(scoreRepo::findAllDTOs);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Score> getScoreById(@PathVariable Long id) {
-        return ResponseEntity.of(scoreRepo.findById(id));
+    public ResponseEntity<ScoreDTO> getScoreById(@PathVariable Long id) {
+        return ResponseEntity.of(scoreRepo.findDTOById(id));
     }
 
-    @PostMapping
-    public Score createScore(@RequestBody Score score) {
-        return scoreRepo.save(score);
-    }
-
-    @PutMapping("/{id}")
-    public ResponseEntity<Score> updateScore(@PathVariable Long id, @RequestBody Score score) {
-        if (!scoreRepo.existsById(id)) {
-            return ResponseEntity.notFound().build();
-        }
-        score.setId(id);
-        return ResponseEntity.ok(scoreRepo.save(score));
-    }
+    // no POST or PUT: a score is only ever written by ScoringService.endSession, from the stored answers
 
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteScore(@PathVariable Long id) {
         if (!scoreRepo.existsById(id)) {
             return ResponseEntity.notFound().build();
         }
+        List<ChildEvent> removed = childSummaryProjector.scoreEvents(id); // before the session stops pointing at it
         scoreRepo.deleteById(id);
+        ChildSummaryProjector.retract(events, removed);
         return ResponseEntity.ok().build();
     }
 
     @GetMapping("/{childId}/last-week/average")
-    public ResponseEntity<Double> getLastWeekAvrg(@PathVariable Long childId) {
-        Child child = childRepo.findById(childId)
-                .orElseThrow(() -> new EntityNotFoundException("Child not found"));
-        LocalDateTime weekAgo = LocalDateTime.now().minusDays(7);
-        List<Session>scores = child.getSessions();
-        int totalScore = 0;
-        int sessionCount = 0;
-        for (Session session : scores) {
-            if (!session.getCreatedAt().isAfter(weekAgo)) continue;
-            totalScore += session.getScore().getScore();
-            sessionCount++;
+    public CompletableFuture<ResponseEntity<Double>> getLastWeekAvrg(@PathVariable Long childId,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        String etag = activityWatermarks.etag(childId, "score-week-average");
+        if (ETags.matches(ifNoneMatch, etag)) {
+            return CompletableFuture.completedFuture(ETags.notModified(etag));
         }
-
-        double avrg = (sessionCount > 0 ? (totalScore / 
-                (double) sessionCount) * 100 : 0.0);
-        return ResponseEntity.ok(avrg);
-        
+        return dashboardAnalyticsService.submit(() -> {
+            if (!dashboardAnalyticsService.childExists(childId)) {
+                return ResponseEntity.notFound().build();
+            }
+            double avrg = dashboardAnalyticsService.averageScore(childId, LocalDateTime.now().minusDays(7));
+            return ResponseEntity.ok().eTag(etag).body(avrg);
+        });
     }
-    
+
     @GetMapping("{childId}/last-week/grade")
-    public ResponseEntity<String> getLastWeekGrade(@PathVariable Long childId) {
-        Child child = childRepo.findById(childId)
-                .orElseThrow(() -> new EntityNotFoundException("Child not found"));
-        LocalDateTime weekAgo = LocalDateTime.now().minusDays(7);
-        List<Session>scores = child.getSessions();
-        int totalScore = 0;
-        int sessionCount = 0;
-        for (Session session : scores) {
-            if (!session.getCreatedAt().isAfter(weekAgo)) continue;
-            totalScore += session.getScore().getScore();
-            sessionCount++;
+    public CompletableFuture<ResponseEntity<String>> getLastWeekGrade(@PathVariable Long childId,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        String etag = activityWatermarks.etag(childId, "score-week-grade");
+        if (ETags.matches(ifNoneMatch, etag)) {
+            return CompletableFuture.completedFuture(ETags.notModified(etag));
         }
-
-        double avrg = (sessionCount > 0 ? (totalScore /
-                (double) sessionCount) * 100 : 0.0);
-        if(avrg>=90) return ResponseEntity.ok("A");
-        else if(avrg>=80) return ResponseEntity.ok("B");
-        else if(avrg>=70) return ResponseEntity.ok("C");
-        else if(avrg>=60) return ResponseEntity.ok("D");
-        else return ResponseEntity.ok("F");
+        return dashboardAnalyticsService.submit(() -> {
+            if (!dashboardAnalyticsService.childExists(childId)) {
+                return ResponseEntity.notFound().build();
+            }
+            double avrg = dashboardAnalyticsService.averageScore(childId, LocalDateTime.now().minusDays(7));
+            return ResponseEntity.ok().eTag(etag).body(DashboardAnalyticsService.grade(avrg));
+        });
     }
 
     @GetMapping("/{childId}/last-month/average")
-    public ResponseEntity<Double> getLastMonthAvrg(@PathVariable Long childId) {
-        Child child = childRepo.findById(childId)
-                .orElseThrow(() -> new EntityNotFoundException("Child not found"));
-        LocalDateTime monthAgo = LocalDateTime.now().minusDays(30);
-        List<Session> scores = child.getSessions();
-        int totalScore = 0;
-        int sessionCount = 0;
-        for (Session session : scores) {
-            if (!session.getCreatedAt().isAfter(monthAgo)) continue;
-            totalScore += session.getScore().getScore();
-            sessionCount++;
+    public CompletableFuture<ResponseEntity<Double>> getLastMonthAvrg(@PathVariable Long childId,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        String etag = activityWatermarks.etag(childId, "score-month-average");
+        if (ETags.matches(ifNoneMatch, etag)) {
+            return CompletableFuture.completedFuture(ETags.notModified(etag));
         }
-
-        double avrg = (sessionCount > 0 ? (totalScore /
-                (double) sessionCount) * 100 : 0.0);
-        return ResponseEntity.ok(avrg);
+        return dashboardAnalyticsService.submit(() -> {
+            if (!dashboardAnalyticsService.childExists(childId)) {
+                return ResponseEntity.notFound().build();
+            }
+            double avrg = dashboardAnalyticsService.averageScore(childId, LocalDateTime.now().minusDays(30));
+            return ResponseEntity.ok().eTag(etag).body(avrg);
+        });
     }
 
     @GetMapping("{childId}/last-month/grade")
-    public ResponseEntity<String> getLastMonthGrade(@PathVariable Long childId) {
-        Child child = childRepo.findById(childId)
-                .orElseThrow(() -> new EntityNotFoundException("Child not found"));
-        LocalDateTime monthAgo = LocalDateTime.now().minusDays(30);
-        List<Session> scores = child.getSessions();
-        int totalScore = 0;
-        int sessionCount = 0;
-        for (Session session : scores) {
-            if (!session.getCreatedAt().isAfter(monthAgo)) continue;
-            totalScore += session.getScore().getScore();
-            sessionCount++;
+    public CompletableFuture<ResponseEntity<String>> getLastMonthGrade(@PathVariable Long childId,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        String etag = activityWatermarks.etag(childId, "score-month-grade");
+        if (ETags.matches(ifNoneMatch, etag)) {
+            return CompletableFuture.completedFuture(ETags.notModified(etag));
         }
-
-        double avrg = (sessionCount > 0 ? (totalScore /
-                (double) sessionCount) * 100 : 0.0);
-        if (avrg >= 90) return ResponseEntity.ok("A");
-        else if (avrg >= 80) return ResponseEntity.ok("B");
-        else if (avrg >= 70) return ResponseEntity.ok("C");
-        else if (avrg >= 60) return ResponseEntity.ok("D");
-        else return ResponseEntity.ok("F");
+        return dashboardAnalyticsService.submit(() -> {
+            if (!dashboardAnalyticsService.childExists(childId)) {
+                return ResponseEntity.notFound().build();
+            }
+            double avrg = dashboardAnalyticsService.averageScore(childId, LocalDateTime.now().minusDays(30));
+            return ResponseEntity.ok().eTag(etag).body(DashboardAnalyticsService.grade(avrg));
+        });
     }
 
 }
@@ -1,18 +1,33 @@
 package com.example.HackathonServer.controllers;
 
+import com.example.HackathonServer.dto.SessionDTO;
+import com.example.HackathonServer.events.ChildEvent;
 import com.example.HackathonServer.models.Child;
 import com.example.HackathonServer.models.Session;
 import com.example.HackathonServer.repos.ChildRepo;
 import com.example.HackathonServer.repos.SessionRepo;
+import com.example.HackathonServer.services.ActiveUsersService;
+import com.example.HackathonServer.services.ActivityWatermarks;
+import com.example.HackathonServer.services.AdmissionControl;
+import com.example.HackathonServer.services.ChildSummaryProjector;
+import com.example.HackathonServer.services.DashboardAnalyticsService;
+import com.example.HackathonServer.services.IngestDeduplicator;
+import com.example.HackathonServer.services.ReadModelService;
+import com.example.HackathonServer.services.ScoringService;
+import com.example.HackathonServer.services.ShardDirectory;
+import com.example.HackathonServer.util.ETags;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/session")
@@ -22,81 +37,170 @@ public class SessionController {
     private SessionRepo sessionRepo;
     @Autowired
     private ChildRepo childRepo;
+    @Autowired
+    private ActiveUsersService activeUsersService;
+    @Autowired
+    private ScoringService scoringService;
+    @Autowired
+    private ReadModelService readModelService;
+    @Autowired
+    private IngestDeduplicator ingestDeduplicator;
+    @Autowired
+    private DashboardAnalyticsService dashboardAnalyticsService;
+    @Autowired
+    private AdmissionControl admissionControl;
+    @Autowired
+    private ActivityWatermarks activityWatermarks;
+    @Autowired
+    private ShardDirectory shardDirectory;
+    @Autowired
+    private ChildSummaryProjector childSummaryProjector;
+    @Autowired
+    private ApplicationEventPublisher events;
 
     @GetMapping
-    public List<Session> getAllSessions() {
-        return sessionRepo.findAll();
+    public List<SessionDTO> getAllSessions() {
+        return shardDirectory.scatter(readModelService::sessions);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Session> getSessionById(@PathVariable Long id) {
-        return ResponseEntity.of(sessionRepo.findById(id));
+    public ResponseEntity<SessionDTO> getSessionById(@PathVariable Long id) {
+        return ResponseEntity.of(readModelService.session(id));
     }
 
     @PostMapping
-    public Session createSession(@RequestBody Session session) {
-        return sessionRepo.save(session);
+    // a retried POST with the same clientEventId gets the original session back
+    public ResponseEntity<Session> createSession(@RequestBody Session session, HttpServletRequest request) {
+        shardDirectory.routeWrite(session.getChild() == null ? null : session.getChild().getId(), null);
+        long wait = admissionControl.acquire(session, request);
+        if (wait > 0) {
+            return AdmissionControl.tooManyRequests(wait);
+        }
+        String eventId = session.getClientEventId();
+        if (eventId != null && eventId.length() > IngestDeduplicator.MAX_EVENT_ID_LENGTH) {
+            return ResponseEntity.badRequest().build();
+        }
+        session.setScore(null); // written by /end from the answers, not by the client
+        IngestDeduplicator.Result<Session> result = ingestDeduplicator.insertOnce("session", eventId,
+                () -> sessionRepo.findByClientEventId(eventId), () -> sessionRepo.save(session));
+        Session saved = result.getValue();
+        if (result.isCreated()) {
+            activeUsersService.recordSessionStart(saved);
+            events.publishEvent(new ChildEvent.SessionStarted(saved.getChild() == null ? null : saved.getChild().getId(),
+                    saved.getId(), saved.getCreatedAt()));
+        }
+        return ResponseEntity.ok(saved);
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<Session> updateSession(@PathVariable Long id, @RequestBody Session session) {
-        if (!sessionRepo.existsById(id)) {
+    public ResponseEntity<Session> updateSession(@PathVariable Long id, @RequestBody Session session,
+                                                 HttpServletRequest request) {
+        long wait = admissionControl.acquire(session, request);
+        if (wait > 0) {
+            return AdmissionControl.tooManyRequests(wait);
+        }
+        Session existing = sessionRepo.findById(id).orElse(null);
+        if (existing == null) {
             return ResponseEntity.notFound().build();
         }
-        //session.setId(id);
-        return ResponseEntity.ok(sessionRepo.save(session));
+        List<ChildEvent> before = ChildSummaryProjector.sessionEvents(existing); // save merges into `existing`
+        session.setId(id);
+        session.setScore(existing.getScore()); // written by /end from the answers, not by the client
+        Session saved = sessionRepo.save(session);
+        ChildSummaryProjector.retract(events, before);
+        ChildSummaryProjector.sessionEvents(saved).forEach(events::publishEvent);
+        return ResponseEntity.ok(saved);
     }
 
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteSession(@PathVariable Long id) {
-        if (!sessionRepo.existsById(id)) {
+        Session existing = sessionRepo.findById(id).orElse(null);
+        if (existing == null) {
             return ResponseEntity.notFound().build();
         }
+        List<ChildEvent> removed = new ArrayList<>(ChildSummaryProjector.sessionEvents(existing));
+        removed.addAll(childSummaryProjector.sessionMoveEvents(id)); // deleted with the session
         sessionRepo.deleteById(id);
+        ChildSummaryProjector.retract(events, removed);
         return ResponseEntity.ok().build();
     }
     
+    @PostMapping("/{id}/answer")
+    public ResponseEntity<ScoringService.AnswerResult> submitAnswer(@PathVariable Long id,
+                                                                  @RequestBody ScoringService.AnswerRequest answer,
+                                                                  HttpServletRequest request) {
+        long wait = admissionControl.acquireForSession(id, request);
+        if (wait > 0) {
+            return AdmissionControl.tooManyRequests(wait);
+        }
+        try {
+            return ResponseEntity.ok(scoringService.recordAnswer(id, answer));
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // scores the session from its answers and closes it
+    @PostMapping("/{id}/end")
+    public ResponseEntity<Session> endSession(@PathVariable Long id, HttpServletRequest request) {
+        long wait = admissionControl.acquireForSession(id, request);
+        if (wait > 0) {
+            return AdmissionControl.tooManyRequests(wait);
+        }
+        Session ended;
+        try {
+            ended = scoringService.endSession(id);
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(ended);
+    }
+    
     @GetMapping("/{childId}/last-week/total-hour")
-    public ResponseEntity<Integer>getTotalHourLastWeek(@PathVariable Long childId)
-    {
-        Child child = childRepo.findById(childId).orElseThrow(()->{
-            return new RuntimeException("Child not found");
-        });
-        List<Session>sessions = child.getSessions();
-        int total = 0;
-        LocalDateTime sevenDaysAgo = LocalDateTime.now().minus(7, ChronoUnit.DAYS);
-        for(Session session:sessions)
-        {
-            if(session.getCreatedAt().isAfter(sevenDaysAgo)) continue;
-            total += Integer.parseInt(session.getDuration());
+    public CompletableFuture<ResponseEntity<Integer>> getTotalHourLastWeek(@PathVariable Long childId,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        String etag = activityWatermarks.etag(childId, "hours-week");
+        if (ETags.matches(ifNoneMatch, etag)) {
+            return CompletableFuture.completedFuture(ETags.notModified(etag));
         }
-        return ResponseEntity.ok(total);
-        
+        return dashboardAnalyticsService.submit(() -> {
+            if (!dashboardAnalyticsService.childExists(childId)) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok().eTag(etag).body(dashboardAnalyticsService.totalDuration(childId,
+                    LocalDateTime.now().minusDays(7)));
+        });
     }
 
     @GetMapping("/{childId}/last-month/total-hour")
-    public ResponseEntity<Integer> getTotalHourLastMonth(@PathVariable Long childId) {
-        Child child = childRepo.findById(childId).orElseThrow(() -> {
-            return new RuntimeException("Child not found");
-        });
-        List<Session> sessions = child.getSessions();
-        int total = 0;
-        LocalDateTime thirtyDaysAgo = LocalDateTime.now().minus(30, ChronoUnit.DAYS);
-        for (Session session : sessions) {
-            if (session.getCreatedAt().isAfter(thirtyDaysAgo)) continue;
-            total += Integer.parseInt(session.getDuration());
+    public CompletableFuture<ResponseEntity<Integer>> getTotalHourLastMonth(@PathVariable Long childId,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        String etag = activityWatermarks.etag(childId, "hours-month");
+        if (ETags.matches(ifNoneMatch, etag)) {
+            return CompletableFuture.completedFuture(ETags.notModified(etag));
         }
-        return ResponseEntity.ok(total);
+        return dashboardAnalyticsService.submit(() -> {
+            if (!dashboardAnalyticsService.childExists(childId)) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok().eTag(etag).body(dashboardAnalyticsService.totalDuration(childId,
+                    LocalDateTime.now().minusDays(30)));
+        });
     }
 
     @GetMapping("/{childId}/recent")
-    public ResponseEntity<List<Session>> getRecentSessions(@PathVariable Long childId) {
-        Child child = childRepo.findById(childId).orElseThrow(() -> {
-            return new RuntimeException("Child not found");
-        });
-        List<Session> sessions = child.getSessions();
-        Collections.reverse(sessions);
-        return ResponseEntity.ok(sessions);
+    public ResponseEntity<List<SessionDTO>> getRecentSessions(@PathVariable Long childId,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        String etag = activityWatermarks.etag(childId, "recent-sessions");
+        if (ETags.matches(ifNoneMatch, etag)) {
+            return ETags.notModified(etag);
+        }
+        if (!childRepo.existsById(childId)) {
+            throw new RuntimeException("Child not found");
+        }
+        return ResponseEntity.ok().eTag(etag).body(readModelService.recentSessions(childId));
     }
 
 
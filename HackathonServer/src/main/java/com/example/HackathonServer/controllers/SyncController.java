@@ -0,0 +1,27 @@
+package com.example.HackathonServer.controllers;
+
+import com.example.HackathonServer.repos.ChildRepo;
+import com.example.HackathonServer.services.SyncService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/sync")
+public class SyncController {
+
+    @Autowired
+    private SyncService syncService;
+    @Autowired
+    private ChildRepo childRepo;
+
+    // rows changed after the cursor; send back the returned cursor next time
+    @GetMapping
+    public ResponseEntity<SyncService.SyncResponse> sync(@RequestParam Long childId,
+                                                         @RequestParam(defaultValue = "0") long since) {
+        if (!childRepo.existsById(childId)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(syncService.changesFor(childId, since));
+    }
+}
@@ -1,7 +1,16 @@
 package com.example.HackathonServer.controllers;
 
+import com.example.HackathonServer.dto.VideoDTO;
 import com.example.HackathonServer.models.Video;
+import com.example.HackathonServer.repos.QuestionRepo;
 import com.example.HackathonServer.repos.VideoRepo;
+import com.example.HackathonServer.services.ReadModelService;
+import com.example.HackathonServer.services.ShardDirectory;
+import com.example.HackathonServer.services.SyncService;
+import com.example.HackathonServer.services.VideoCatalogService;
+import com.example.HackathonServer.services.VideoEngagementService;
+import com.example.HackathonServer.util.ChangeVersions;
+import com.example.HackathonServer.util.ETags;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -14,20 +23,52 @@ public class VideoController {
     
     @Autowired
     private VideoRepo videoRepo;
+    @Autowired
+    private ChangeVersions changeVersions;
+    @Autowired
+    private QuestionRepo questionRepo;
+    @Autowired
+    private ReadModelService readModelService;
+    @Autowired
+    private VideoEngagementService videoEngagementService;
+    @Autowired
+    private VideoCatalogService videoCatalogService;
+    @Autowired
+    private SyncService syncService;
+    @Autowired
+    private ShardDirectory shardDirectory;
 
     @GetMapping
-    public List<Video> getAllVideos() {
-        return videoRepo.findAll();
+    public ResponseEntity<List<VideoDTO>> getAllVideos(
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        // videos embed their questions, so both tables feed the tag
+        String etag = ETags.of("videos", String.join(".", shardDirectory.scatterEach(videoRepo::watermark)),
+                String.join(".", shardDirectory.scatterEach(questionRepo::watermark)));
+        if (ETags.matches(ifNoneMatch, etag)) {
+            return ETags.notModified(etag);
+        }
+        return ResponseEntity.ok().eTag(etag).body(shardDirectory.scatter(readModelService::videos));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Video> getVideoById(@PathVariable Long id) {
-        return ResponseEntity.of(videoRepo.findById(id));
+    public ResponseEntity<VideoDTO> getVideoById(@PathVariable Long id,
+                                              @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        Long version = videoRepo.findChangeVersionById(id).orElse(null);
+        if (version == null) {
+            return ResponseEntity.notFound().build();
+        }
+        String etag = ETags.of("video", id, version, questionRepo.watermarkForVideo(id));
+        if (ETags.matches(ifNoneMatch, etag)) {
+            return ETags.notModified(etag);
+        }
+        return readModelService.video(id)
+                .map(video -> ResponseEntity.ok().eTag(etag).body(video))
+                .orElse(ResponseEntity.notFound().build());
     }
 
     @PostMapping
     public Video createVideo(@RequestBody Video video) {
-        return videoRepo.save(video);
+        return videoCatalogService.findOrCreate(video.getTitle(), video.getUrl());
     }
 
     @PutMapping("/{id}")
@@ -37,7 +78,7 @@ public class VideoController {
             return ResponseEntity.notFound().build();
         }
         video.setId(id);
-        return ResponseEntity.ok(videoRepo.save(video));
+        return ResponseEntity.ok(changeVersions.save(videoRepo, video));
     }
 
     @DeleteMapping("/{id}")
@@ -46,8 +87,13 @@ public class VideoController {
             return ResponseEntity.notFound().build();
         }
         videoRepo.deleteById(id);
+        syncService.recordDeletion(SyncService.VIDEO, id, null);
         return ResponseEntity.ok().build();
     }
 
+    @GetMapping("/{id}/engagement")
+    public ResponseEntity<VideoEngagementService.EngagementCurve> getEngagement(@PathVariable Long id) {
+        return ResponseEntity.ok(videoEngagementService.curve(id));
+    }
 
 }
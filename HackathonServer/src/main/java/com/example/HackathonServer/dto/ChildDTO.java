@@ -0,0 +1,8 @@
+package com.example.HackathonServer.dto;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+public record ChildDTO(Long id, String fullName, LocalDate dateOfBirth, String age, String dp,
+                       LocalDateTime createdAt, String pin) {
+}
@@ -0,0 +1,4 @@
+package com.example.HackathonServer.dto;
+
+public record HomeworkDTO(Long id, String title, String url, Long videoId, String status) {
+}
@@ -0,0 +1,6 @@
+package com.example.HackathonServer.dto;
+
+import java.time.LocalDateTime;
+
+public record MoveDTO(Long id, Long sessionId, String type, Integer videoOffsetSeconds, LocalDateTime createdAt) {
+}
@@ -0,0 +1,5 @@
+package com.example.HackathonServer.dto;
+
+public record QuestionDTO(Long id, Long videoId, String question, String timeToStop,
+                          String optA, String optB, String optC, String correctAns) {
+}
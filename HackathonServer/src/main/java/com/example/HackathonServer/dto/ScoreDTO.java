@@ -0,0 +1,4 @@
+package com.example.HackathonServer.dto;
+
+public record ScoreDTO(Long id, Integer score, Double percentage) {
+}
@@ -0,0 +1,19 @@
+package com.example.HackathonServer.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public record SessionDTO(Long id, Long videoId, String status, LocalDateTime createdAt, LocalDateTime endedAt,
+                         String duration, ScoreDTO score, List<MoveDTO> moves) {
+
+    // projection constructor over "left join s.score"; moves are attached afterwards
+    public SessionDTO(Long id, Long videoId, String status, LocalDateTime createdAt, LocalDateTime endedAt,
+                      String duration, Long scoreId, Integer score, Double percentage) {
+        this(id, videoId, status, createdAt, endedAt, duration,
+                scoreId == null ? null : new ScoreDTO(scoreId, score, percentage), List.of());
+    }
+
+    public SessionDTO withMoves(List<MoveDTO> moves) {
+        return new SessionDTO(id, videoId, status, createdAt, endedAt, duration, score, List.copyOf(moves));
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.HackathonServer.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public record VideoDTO(Long id, String title, String url, String videoKey, LocalDateTime createdAt,
+                       List<QuestionDTO> questions) {
+
+    // projection constructor; questions are attached afterwards
+    public VideoDTO(Long id, String title, String url, String videoKey, LocalDateTime createdAt) {
+        this(id, title, url, videoKey, createdAt, List.of());
+    }
+
+    public VideoDTO withQuestions(List<QuestionDTO> questions) {
+        return new VideoDTO(id, title, url, videoKey, createdAt, List.copyOf(questions));
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.HackathonServer.events;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Domain events about a child's activity, published in-process with
+ * ApplicationEventPublisher after the write they describe has been stored.
+ * ChildSummaryProjector folds them into the child_summary read tables.
+ * Edits and deletes publish a {@link Retracted} of what the old rows stood
+ * for, followed by the events of the new rows, if any.
+ */
+public sealed interface ChildEvent {
+
+    Long childId();
+
+    record SessionStarted(Long childId, Long sessionId, LocalDateTime startedAt) implements ChildEvent {
+    }
+
+    // minutes is the stored session duration, null when it is not a whole number of minutes
+    record SessionEnded(Long childId, Long sessionId, LocalDateTime startedAt, Integer minutes) implements ChildEvent {
+    }
+
+    record MoveRecorded(Long childId, Long moveId, String type, LocalDateTime createdAt) implements ChildEvent {
+    }
+
+    record ScoreRecorded(Long childId, Long sessionId, Integer score, LocalDateTime sessionStartedAt)
+            implements ChildEvent {
+    }
+
+    record HomeworkCompleted(Long childId, Long homeworkId) implements ChildEvent {
+    }
+
+    // undoes earlier events of the child, folded with negative counts
+    record Retracted(Long childId, List<ChildEvent> events) implements ChildEvent {
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.HackathonServer.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(indexes = @Index(columnList = "sessionId"))
+public class Answer {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long sessionId;
+
+    @Column(nullable = false)
+    private Long questionId;
+
+    private String chosenOption;
+
+    private Integer latencyMs;
+
+    @Column(nullable = false)
+    private Boolean correct;
+
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        this.createdAt = LocalDateTime.now();
+    }
+}
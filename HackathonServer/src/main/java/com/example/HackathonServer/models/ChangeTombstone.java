@@ -0,0 +1,34 @@
+package com.example.HackathonServer.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// marks a deleted synced row so delta syncs can tell clients to drop it
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(indexes = @Index(columnList = "changeVersion"))
+public class ChangeTombstone {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String entityType; //HOMEWORK, VIDEO, QUESTION
+
+    @Column(nullable = false)
+    private Long entityId;
+
+    private Long scopeId; //child id for homework, video id for questions
+
+    @Column(nullable = false)
+    private Long changeVersion;
+
+    private LocalDateTime deletedAt;
+}
@@ -0,0 +1,20 @@
+package com.example.HackathonServer.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// the single row (id 1) change versions are allocated from; kept on shard 0, see ChangeVersions
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChangeVersionCounter {
+
+    @Id
+    private Integer id;
+
+    @Column(nullable = false)
+    private Long lastVersion;
+}
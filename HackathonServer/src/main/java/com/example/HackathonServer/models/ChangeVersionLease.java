@@ -0,0 +1,30 @@
+package com.example.HackathonServer.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// change versions taken by a transaction that has not completed yet; kept on shard 0, see ChangeVersions
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(indexes = {@Index(columnList = "firstVersion"), @Index(columnList = "takenAt")})
+public class ChangeVersionLease {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long firstVersion;
+
+    @Column(nullable = false)
+    private Long lastVersion;
+
+    @Column(nullable = false)
+    private LocalDateTime takenAt;
+}
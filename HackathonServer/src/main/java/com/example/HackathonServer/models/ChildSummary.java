@@ -0,0 +1,43 @@
+package com.example.HackathonServer.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// all-time activity counters of one child, maintained by ChildSummaryProjector
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChildSummary {
+
+    @Id
+    private Long childId;
+
+    @Column(nullable = false)
+    private Long jumps;
+    @Column(nullable = false)
+    private Long squats;
+    @Column(nullable = false)
+    private Long claps;
+    @Column(nullable = false)
+    private Long otherMoves;
+    @Column(nullable = false)
+    private Long sessionsStarted;
+    @Column(nullable = false)
+    private Long sessionsEnded;
+    @Column(nullable = false)
+    private Long minutesPlayed;
+    @Column(nullable = false)
+    private Long scoredSessions;
+    @Column(nullable = false)
+    private Long scoreSum;
+    @Column(nullable = false)
+    private Long homeworkCompleted;
+
+    private LocalDateTime lastActivityAt;
+    private LocalDateTime updatedAt;
+}
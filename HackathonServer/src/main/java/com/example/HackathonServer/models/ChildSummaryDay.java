@@ -0,0 +1,45 @@
+package com.example.HackathonServer.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+// one child's counters for one day (sessions by the day they started), for the "last N days" dashboards
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"childId", "day"}),
+        indexes = @Index(columnList = "day"))
+public class ChildSummaryDay {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long childId;
+
+    @Column(nullable = false)
+    private LocalDate day;
+
+    @Column(nullable = false)
+    private Long jumps;
+    @Column(nullable = false)
+    private Long squats;
+    @Column(nullable = false)
+    private Long claps;
+    @Column(nullable = false)
+    private Long otherMoves;
+    @Column(nullable = false)
+    private Long sessions;
+    @Column(nullable = false)
+    private Long minutesPlayed;
+    @Column(nullable = false)
+    private Long scoredSessions;
+    @Column(nullable = false)
+    private Long scoreSum;
+}
@@ -0,0 +1,43 @@
+package com.example.HackathonServer.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "cohort_weekly_sketch", uniqueConstraints = @UniqueConstraint(columnNames = {"ageBand", "metric", "week"}))
+public class CohortSketch {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String ageBand;
+
+    @Column(nullable = false)
+    private String metric; //WEEKLY_MOVES, AVERAGE_SCORE
+
+    @Lob
+    @Column(nullable = false)
+    private byte[] digest;
+
+    // the week (monday) whose children the digest samples
+    @Column(nullable = false)
+    private LocalDate week;
+
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        this.updatedAt = LocalDateTime.now();
+    }
+}
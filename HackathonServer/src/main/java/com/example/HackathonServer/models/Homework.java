@@ -1,17 +1,21 @@
 package com.example.HackathonServer.models;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.LocalDateTime;
+
 @Entity
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-public class Homework {
+@Table(indexes = @Index(columnList = "child_id, changeVersion"))
+public class Homework implements Versioned {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -19,7 +23,7 @@ public class Homework {
     @Column(nullable = false)
     private String title;
 
-    @OneToOne(fetch = FetchType.LAZY)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "video_id", nullable = false)
     private Video video;
 
@@ -35,8 +39,18 @@ public class Homework {
 
     private String status;
 
+    @JsonIgnore
+    private Long changeVersion;
+
+    // server clock; weekly reports count homework by these
+    @JsonIgnore
+    private LocalDateTime assignedAt;
+    @JsonIgnore
+    private LocalDateTime completedAt;
+
     @PrePersist
     protected void onCreate() {
         this.status = "Pending";
+        this.assignedAt = LocalDateTime.now();
     }
 }
@@ -0,0 +1,54 @@
+package com.example.HackathonServer.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+// a recurring assignment: HomeworkScheduler creates the child's homework at every nextRunAt
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(indexes = {@Index(columnList = "active, nextRunAt"), @Index(columnList = "parentId")})
+public class HomeworkSchedule {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long parentId;
+    @Column(nullable = false)
+    private Long childId;
+
+    @Column(nullable = false)
+    private String title;
+    @Column(nullable = false)
+    private String url;
+
+    @Column(nullable = false, length = 16)
+    private String frequency; //DAILY, WEEKLY
+
+    // WEEKLY only
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private DayOfWeek dayOfWeek;
+
+    @Column(nullable = false)
+    private LocalTime timeOfDay;
+
+    @Column(nullable = false)
+    private LocalDateTime nextRunAt;
+
+    private LocalDateTime lastRunAt;
+    private Long lastHomeworkId;
+
+    // false once the child is gone
+    @Column(nullable = false)
+    private Boolean active;
+}
@@ -7,25 +7,40 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.util.Map;
 
+// partitioned by month on created_at (MovePartitionService), which rules out foreign and unique keys here
 @Entity
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
+@Table(indexes = {@Index(name = "idx_move_child_created", columnList = "child_id, createdAt"),
+        @Index(name = "idx_move_session", columnList = "session_id"),
+        @Index(name = "idx_move_event", columnList = "clientEventId")})
 public class Move {
 
+    // the @Table indexes by name, in SQL column names, for MovePartitionService to recreate when converting
+    public static final Map<String, String> INDEXES = Map.of(
+            "idx_move_child_created", "child_id, created_at",
+            "idx_move_session", "session_id",
+            "idx_move_event", "client_event_id");
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     @ManyToOne
-    @JoinColumn(name = "child_id", nullable = false)
+    @JoinColumn(name = "child_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     @JsonBackReference(value = "child-move")
     private Child child;
-    @OneToOne
-    @JoinColumn(name = "session_id", nullable = false)
+    @ManyToOne
+    @JoinColumn(name = "session_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     @JsonBackReference(value = "session-move")
     private Session session;
     private String type; //jump,squat,clap
+    // client-generated id so retried POSTs are not inserted twice; uniqueness is enforced through MoveEvent
+    @Column(length = 64)
+    private String clientEventId;
+    private Integer videoOffsetSeconds; //playback position when the move was detected
     private LocalDateTime createdAt;
 
     @PrePersist
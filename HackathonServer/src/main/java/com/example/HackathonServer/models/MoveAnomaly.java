@@ -0,0 +1,42 @@
+package com.example.HackathonServer.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// one row per source (session, or child when the move has no session) per flush interval with over-rate moves
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(indexes = {@Index(columnList = "sessionId"), @Index(columnList = "lastSeenAt")})
+public class MoveAnomaly {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long sessionId;
+    private Long childId;
+
+    // FLAG, THROTTLE or DROP; see MoveRateGuard
+    @Column(nullable = false)
+    private String action;
+
+    // moves over the limit in this interval
+    @Column(nullable = false)
+    private Long events;
+
+    // highest move count seen in one sliding window
+    @Column(nullable = false)
+    private Integer peakPerWindow;
+
+    @Column(nullable = false)
+    private Integer windowMs;
+
+    private LocalDateTime firstSeenAt;
+    private LocalDateTime lastSeenAt;
+}
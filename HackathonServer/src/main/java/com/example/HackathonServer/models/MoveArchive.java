@@ -0,0 +1,33 @@
+package com.example.HackathonServer.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// one month of moves that left the move table for archive files (MoveArchiveService)
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MoveArchive {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // first day of the month
+    @Column(nullable = false, unique = true)
+    private LocalDate month;
+
+    @Column(nullable = false)
+    private Long moves;
+
+    @Column(nullable = false)
+    private Integer children;
+
+    private LocalDateTime archivedAt;
+}
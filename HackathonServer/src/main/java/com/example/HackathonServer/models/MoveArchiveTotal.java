@@ -0,0 +1,34 @@
+package com.example.HackathonServer.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+// per child, month and move type counts of archived moves, so totals do not have to open archive files
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"childId", "month", "type"}))
+public class MoveArchiveTotal {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long childId;
+
+    // first day of the month
+    @Column(nullable = false)
+    private LocalDate month;
+
+    @Column(nullable = false, length = 32)
+    private String type; //upper-cased
+
+    @Column(nullable = false)
+    private Long moves;
+}
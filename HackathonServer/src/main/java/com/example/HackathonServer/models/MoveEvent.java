@@ -0,0 +1,26 @@
+package com.example.HackathonServer.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// client event id of a stored move; the partitioned move table cannot hold a unique key on it (MovePartitionService)
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(indexes = @Index(columnList = "createdAt"))
+public class MoveEvent {
+
+    @Id
+    @Column(length = 64)
+    private String clientEventId;
+
+    @Column(nullable = false)
+    private Long moveId;
+
+    private LocalDateTime createdAt;
+}
@@ -28,6 +28,7 @@ public class Parent {
     @Column(nullable = false)
     private String password;
     private String dp;
+    private String region;
     private LocalDateTime createdAt;
     @OneToMany(mappedBy = "parent",cascade = CascadeType.ALL)
     @JsonManagedReference
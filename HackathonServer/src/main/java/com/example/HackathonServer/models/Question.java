@@ -1,6 +1,7 @@
 package com.example.HackathonServer.models;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -10,7 +11,8 @@ import lombok.NoArgsConstructor;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-public class Question {
+@Table(indexes = @Index(columnList = "video_id, changeVersion"))
+public class Question implements Versioned {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -37,4 +39,7 @@ public class Question {
 
     @Column(nullable = false)
     private String correctAns;
+
+    @JsonIgnore
+    private Long changeVersion;
 }
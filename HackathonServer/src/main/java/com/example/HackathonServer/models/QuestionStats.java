@@ -0,0 +1,33 @@
+package com.example.HackathonServer.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "question_stats", indexes = @Index(columnList = "videoId"))
+public class QuestionStats {
+
+    @Id
+    private Long questionId;
+
+    @Column(nullable = false)
+    private Long videoId;
+
+    private long attempts;
+    private long correct;
+    private long latencySumMs;
+    private long latencyCount;
+    private long optionA;
+    private long optionB;
+    private long optionC;
+    private long optionOther;
+
+    private LocalDateTime updatedAt;
+}
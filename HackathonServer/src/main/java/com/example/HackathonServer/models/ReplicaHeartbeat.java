@@ -0,0 +1,22 @@
+package com.example.HackathonServer.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// one row (id 1) stamped on the primary; how stale a replica's copy is measures its lag, see ReplicaLagMonitor
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReplicaHeartbeat {
+
+    @Id
+    private Integer id;
+
+    @Column(nullable = false)
+    private LocalDateTime beatAt;
+}
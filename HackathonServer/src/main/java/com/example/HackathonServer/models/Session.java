@@ -23,16 +23,19 @@ public class Session {
     @JoinColumn(name = "child_id", nullable = false)
     @JsonBackReference(value = "child-session")
     private Child child;
-    @OneToOne
+    @ManyToOne
     @JoinColumn(name = "video_id", nullable = false)
     @JsonBackReference(value = "video-session")
     private Video video;
     private String status;
+    // client-generated id so retried POSTs are not inserted twice
+    @Column(unique = true, length = 64)
+    private String clientEventId;
     private LocalDateTime createdAt;
     private LocalDateTime endedAt;
     private String duration;
     @OneToOne
-    @JoinColumn(name = "score_id", nullable = false)
+    @JoinColumn(name = "score_id")
     @JsonManagedReference(value = "session-score")
     private Score score;
 
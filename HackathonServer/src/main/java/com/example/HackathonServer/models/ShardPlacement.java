@@ -0,0 +1,34 @@
+package com.example.HackathonServer.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// a parent or child that no longer lives on the shard its id encodes; written by ReshardingService, kept on shard 0
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"entityType", "entityId"}),
+        indexes = @Index(columnList = "movedAt"))
+public class ShardPlacement {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // PARENT or CHILD
+    @Column(nullable = false, length = 16)
+    private String entityType;
+
+    @Column(nullable = false)
+    private Long entityId;
+
+    @Column(nullable = false)
+    private Integer shard;
+
+    private LocalDateTime movedAt;
+}
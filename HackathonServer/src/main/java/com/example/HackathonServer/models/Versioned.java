@@ -0,0 +1,7 @@
+package com.example.HackathonServer.models;
+
+// a row clients sync by change version; stamped by ChangeVersions when written, never by the entity itself
+public interface Versioned {
+
+    void setChangeVersion(Long changeVersion);
+}
@@ -1,6 +1,8 @@
 package com.example.HackathonServer.models;
 
+import com.example.HackathonServer.util.VideoUrls;
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
@@ -14,7 +16,8 @@ import java.util.List;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-public class Video {
+@Table(indexes = @Index(columnList = "changeVersion"))
+public class Video implements Versioned {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -26,14 +29,32 @@ public class Video {
     @Column(nullable = false)
     private String url;
 
+    // canonical form of url, e.g. yt:<id>; see VideoUrls
+    @Column(length = 2048)
+    private String videoKey;
+
+    @Column(length = 64, unique = true)
+    @JsonIgnore
+    private String keyHash;
+
     @OneToMany(mappedBy = "video", cascade = CascadeType.ALL)
     @JsonManagedReference(value = "video-question")
     private List<Question> questions;
     private LocalDateTime createdAt;
 
+    @JsonIgnore
+    private Long changeVersion;
+
     @PrePersist
     protected void onCreate() {
         this.createdAt = LocalDateTime.now();
+        onSave();
+    }
+
+    @PreUpdate
+    protected void onSave() {
+        this.videoKey = VideoUrls.canonicalKey(url);
+        this.keyHash = VideoUrls.keyHash(videoKey);
     }
 
 }
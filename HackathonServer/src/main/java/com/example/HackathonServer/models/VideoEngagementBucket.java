@@ -0,0 +1,35 @@
+package com.example.HackathonServer.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// move counts of one playback-offset bucket of a video, maintained by VideoEngagementService
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"videoId", "offsetSeconds"}))
+public class VideoEngagementBucket {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long videoId;
+
+    // start of the bucket; its width is engagement.bucket-seconds at the time of writing
+    @Column(nullable = false)
+    private Integer offsetSeconds;
+
+    private long jumps;
+    private long squats;
+    private long claps;
+    private long otherMoves;
+
+    private LocalDateTime updatedAt;
+}
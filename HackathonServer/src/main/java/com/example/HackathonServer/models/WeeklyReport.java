@@ -0,0 +1,59 @@
+package com.example.HackathonServer.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// one child's precomputed report for one Monday-to-Sunday week (WeeklyReportService)
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"childId", "weekStart"}),
+        indexes = @Index(columnList = "weekStart"))
+public class WeeklyReport {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long childId;
+
+    // the Monday the week starts on
+    @Column(nullable = false)
+    private LocalDate weekStart;
+
+    @Column(nullable = false)
+    private Long jumps;
+    @Column(nullable = false)
+    private Long squats;
+    @Column(nullable = false)
+    private Long claps;
+    @Column(nullable = false)
+    private Long otherMoves;
+    @Column(nullable = false)
+    private Long sessions;
+    @Column(nullable = false)
+    private Long minutesPlayed;
+    @Column(nullable = false)
+    private Long scoredSessions;
+
+    // null when no session of the week was scored
+    private Double averageScore;
+    @Column(length = 1)
+    private String grade;
+
+    // homework as it stood when the report was computed; homework carries no dates
+    @Column(nullable = false)
+    private Long homeworkAssigned;
+    @Column(nullable = false)
+    private Long homeworkCompleted;
+
+    @Column(nullable = false)
+    private LocalDateTime computedAt;
+}
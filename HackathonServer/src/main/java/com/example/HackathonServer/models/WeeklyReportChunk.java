@@ -0,0 +1,37 @@
+package com.example.HackathonServer.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// a child id range whose weekly reports are written; a rerun of the same week skips it
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"weekStart", "chunkStart"}))
+public class WeeklyReportChunk {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private LocalDate weekStart;
+
+    // child ids in [chunkStart, chunkEnd)
+    @Column(nullable = false)
+    private Long chunkStart;
+    @Column(nullable = false)
+    private Long chunkEnd;
+
+    @Column(nullable = false)
+    private Integer children;
+
+    @Column(nullable = false)
+    private LocalDateTime completedAt;
+}
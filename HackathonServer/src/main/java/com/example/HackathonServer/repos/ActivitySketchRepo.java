@@ -0,0 +1,21 @@
+package com.example.HackathonServer.repos;
+
+import com.example.HackathonServer.models.ActivitySketch;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ActivitySketchRepo extends JpaRepository<ActivitySketch, Long> {
+    Optional<ActivitySketch> findByDayAndSubjectAndRegion(LocalDate day, String subject, String region);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<ActivitySketch> findForUpdateByDayAndSubjectAndRegion(LocalDate day, String subject, String region);
+
+    List<ActivitySketch> findBySubjectAndRegionAndDayBetween(String subject, String region, LocalDate from, LocalDate to);
+}
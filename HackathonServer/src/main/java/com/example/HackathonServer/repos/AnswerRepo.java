@@ -0,0 +1,12 @@
+package com.example.HackathonServer.repos;
+
+import com.example.HackathonServer.models.Answer;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface AnswerRepo extends JpaRepository<Answer, Long> {
+    List<Answer> findBySessionIdOrderById(Long sessionId);
+}
@@ -1,8 +1,9 @@
 package com.example.HackathonServer.repos;
 
+import com.example.HackathonServer.dto.ChildDTO;
 import com.example.HackathonServer.models.Child;
-import io.micrometer.observation.ObservationFilter;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -13,4 +14,18 @@ public interface ChildRepo extends JpaRepository<Child, Long> {
     List<Child> findByParentId(Long parentId);
 
     Optional<Child> findByIdAndParentId(Long id, Long parentId);
+
+    boolean existsByIdAndParentId(Long id, Long parentId);
+
+    @Query("select c.parent.id from Child c where c.id = :id")
+    Optional<Long> findParentIdById(Long id);
+
+    String DTO = "select new com.example.HackathonServer.dto.ChildDTO(c.id, c.fullName, c.dateOfBirth, c.age, " +
+            "c.dp, c.createdAt, c.pin) from Child c ";
+
+    @Query(DTO + "where c.parent.id = :parentId order by c.id")
+    List<ChildDTO> findDTOsByParentId(Long parentId);
+
+    @Query(DTO + "where c.id = :id and c.parent.id = :parentId")
+    Optional<ChildDTO> findDTOByIdAndParentId(Long id, Long parentId);
 }
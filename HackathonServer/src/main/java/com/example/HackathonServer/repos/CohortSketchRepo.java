@@ -0,0 +1,15 @@
+package com.example.HackathonServer.repos;
+
+import com.example.HackathonServer.models.CohortSketch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface CohortSketchRepo extends JpaRepository<CohortSketch, Long> {
+    List<CohortSketch> findByWeek(LocalDate week);
+
+    List<CohortSketch> findByWeekGreaterThanEqual(LocalDate week);
+}
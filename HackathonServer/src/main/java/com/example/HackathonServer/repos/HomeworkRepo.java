@@ -1,7 +1,39 @@
 package com.example.HackathonServer.repos;
 
+import com.example.HackathonServer.dto.HomeworkDTO;
 import com.example.HackathonServer.models.Homework;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+import java.util.Optional;
 
 public interface HomeworkRepo extends JpaRepository<Homework, Long> {
+
+    // homework dtos embed the video url, so the video's version is part of the tag
+    @Query("select concat(cast(coalesce(h.changeVersion, 0) as String), '-', " +
+            "cast(coalesce(h.video.changeVersion, 0) as String)) from Homework h where h.id = :id")
+    Optional<String> findVersionById(Long id);
+
+    @Query("select concat(cast(count(h) as String), '-', cast(coalesce(max(h.changeVersion), 0) as String), '-', " +
+            "cast(coalesce(max(h.video.changeVersion), 0) as String)) from Homework h")
+    String watermark();
+
+    @Query("select concat(cast(count(h) as String), '-', cast(coalesce(max(h.changeVersion), 0) as String), '-', " +
+            "cast(coalesce(max(h.video.changeVersion), 0) as String)) from Homework h where h.child.id = :childId")
+    String watermarkForChild(Long childId);
+
+    // one joined select instead of a lazy video load per homework
+    String DTO = "select new com.example.HackathonServer.dto.HomeworkDTO(h.id, h.title, v.url, v.id, h.status) " +
+            "from Homework h join h.video v ";
+
+    @Query(DTO + "order by h.id")
+    List<HomeworkDTO> findAllDTOs();
+
+    @Query(DTO + "where h.id = :id")
+    Optional<HomeworkDTO> findDTOById(Long id);
+
+    // newest first
+    @Query(DTO + "where h.child.id = :childId order by h.id desc")
+    List<HomeworkDTO> findDTOsByChildId(Long childId);
 }
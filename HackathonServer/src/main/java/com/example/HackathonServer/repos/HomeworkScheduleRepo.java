@@ -0,0 +1,15 @@
+package com.example.HackathonServer.repos;
+
+import com.example.HackathonServer.models.HomeworkSchedule;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface HomeworkScheduleRepo extends JpaRepository<HomeworkSchedule, Long> {
+    List<HomeworkSchedule> findByParentIdOrderById(Long parentId);
+
+    Optional<HomeworkSchedule> findByIdAndParentId(Long id, Long parentId);
+}
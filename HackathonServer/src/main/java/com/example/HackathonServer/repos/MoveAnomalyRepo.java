@@ -0,0 +1,13 @@
+package com.example.HackathonServer.repos;
+
+import com.example.HackathonServer.models.MoveAnomaly;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface MoveAnomalyRepo extends JpaRepository<MoveAnomaly, Long> {
+    List<MoveAnomaly> findByLastSeenAtAfterOrderByLastSeenAtDesc(LocalDateTime after);
+}
@@ -1,14 +1,39 @@
 package com.example.HackathonServer.repos;
 
+import com.example.HackathonServer.dto.MoveDTO;
 import com.example.HackathonServer.models.Move;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface MoveRepo extends JpaRepository<Move,Long> {
+    Optional<Move> findByClientEventId(String clientEventId);
+
     List<Move> findByChildIdAndCreatedAtAfter(Long id, LocalDateTime weekAgo);
 
+    @Query("select count(m) from Move m where m.child.id = :childId and m.createdAt >= :from and m.createdAt < :to")
+    long countByChildBetween(Long childId, LocalDateTime from, LocalDateTime to);
+
+    String DTO = "select new com.example.HackathonServer.dto.MoveDTO(m.id, m.session.id, m.type, " +
+            "m.videoOffsetSeconds, m.createdAt) from Move m ";
+
+    @Query(DTO + "order by m.id")
+    List<MoveDTO> findAllDTOs();
+
+    @Query(DTO + "where m.id = :id")
+    Optional<MoveDTO> findDTOById(Long id);
+
+    @Query(DTO + "where m.session.id = :sessionId order by m.id")
+    List<MoveDTO> findDTOsBySessionId(Long sessionId);
+
+    @Query(DTO + "where m.session.child.id = :childId order by m.id")
+    List<MoveDTO> findDTOsBySessionChildId(Long childId);
+
+    @Query(DTO + "where m.child.id = :childId and m.createdAt > :after order by m.id")
+    List<MoveDTO> findDTOsByChildIdAndCreatedAtAfter(Long childId, LocalDateTime after);
 }
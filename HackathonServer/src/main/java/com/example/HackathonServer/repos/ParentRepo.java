@@ -9,4 +9,6 @@ import java.util.Optional;
 @Repository
 public interface ParentRepo extends JpaRepository<Parent, Long> {
     Optional<Parent> findByEmailAndPassword(String email, String password);
+
+    boolean existsByEmail(String email);
 }
@@ -1,9 +1,37 @@
 package com.example.HackathonServer.repos;
 
+import com.example.HackathonServer.dto.QuestionDTO;
 import com.example.HackathonServer.models.Question;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface QuestionRepo extends JpaRepository<Question, Long> {
+    List<Question> findByVideoId(Long videoId);
+
+    @Query("select coalesce(q.changeVersion, 0) from Question q where q.id = :id")
+    Optional<Long> findChangeVersionById(Long id);
+
+    @Query("select concat(cast(count(q) as String), '-', cast(coalesce(max(q.changeVersion), 0) as String)) from Question q")
+    String watermark();
+
+    String DTO = "select new com.example.HackathonServer.dto.QuestionDTO(q.id, q.video.id, q.question, " +
+            "q.timeToStop, q.optA, q.optB, q.optC, q.correctAns) from Question q ";
+
+    @Query(DTO + "order by q.id")
+    List<QuestionDTO> findAllDTOs();
+
+    @Query(DTO + "where q.id = :id")
+    Optional<QuestionDTO> findDTOById(Long id);
+
+    @Query(DTO + "where q.video.id = :videoId order by q.id")
+    List<QuestionDTO> findDTOsByVideoId(Long videoId);
+
+    @Query("select concat(cast(count(q) as String), '-', cast(coalesce(max(q.changeVersion), 0) as String)) " +
+            "from Question q where q.video.id = :videoId")
+    String watermarkForVideo(Long videoId);
 }
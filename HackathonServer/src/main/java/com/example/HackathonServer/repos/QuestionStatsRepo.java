@@ -0,0 +1,12 @@
+package com.example.HackathonServer.repos;
+
+import com.example.HackathonServer.models.QuestionStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface QuestionStatsRepo extends JpaRepository<QuestionStats, Long> {
+    List<QuestionStats> findByVideoIdOrderByQuestionId(Long videoId);
+}
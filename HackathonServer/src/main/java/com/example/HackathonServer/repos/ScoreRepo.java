@@ -1,9 +1,20 @@
 package com.example.HackathonServer.repos;
 
+import com.example.HackathonServer.dto.ScoreDTO;
 import com.example.HackathonServer.models.Score;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface ScoreRepo extends JpaRepository<Score, Long> {
+
+    @Query("select new com.example.HackathonServer.dto.ScoreDTO(s.id, s.score, s.percentage) from Score s order by s.id")
+    List<ScoreDTO> findAllDTOs();
+
+    @Query("select new com.example.HackathonServer.dto.ScoreDTO(s.id, s.score, s.percentage) from Score s where s.id = :id")
+    Optional<ScoreDTO> findDTOById(Long id);
 }
@@ -1,7 +1,43 @@
 package com.example.HackathonServer.repos;
 
+import com.example.HackathonServer.dto.SessionDTO;
 import com.example.HackathonServer.models.Session;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
 
 public interface SessionRepo extends JpaRepository<Session, Long> {
+
+    Optional<Session> findByClientEventId(String clientEventId);
+
+    @Query("select s.child.id from Session s where s.id = :id")
+    Optional<Long> findChildIdById(Long id);
+
+    // [childId, sum(percentage), count(score)]
+    @Query("select avg(sc.percentage) from Session s join s.score sc " +
+            "where s.child.id = :childId and s.createdAt >= :from and s.createdAt < :to")
+    Double averageScoreOfChildBetween(Long childId, LocalDateTime from, LocalDateTime to);
+
+    @Query("select count(distinct s.child.id) from Session s where s.createdAt >= :from and s.createdAt < :to " +
+            "and (:region is null or upper(s.child.parent.region) = :region)")
+    long countDistinctChildren(LocalDateTime from, LocalDateTime to, String region);
+
+    @Query("select count(distinct s.child.parent.id) from Session s where s.createdAt >= :from and s.createdAt < :to " +
+            "and (:region is null or upper(s.child.parent.region) = :region)")
+    long countDistinctParents(LocalDateTime from, LocalDateTime to, String region);
+
+    String DTO = "select new com.example.HackathonServer.dto.SessionDTO(s.id, s.video.id, s.status, s.createdAt, " +
+            "s.endedAt, s.duration, sc.id, sc.score, sc.percentage) from Session s left join s.score sc ";
+
+    @Query(DTO + "order by s.id")
+    List<SessionDTO> findAllDTOs();
+
+    @Query(DTO + "where s.id = :id")
+    Optional<SessionDTO> findDTOById(Long id);
+
+    @Query(DTO + "where s.child.id = :childId order by s.id desc")
+    List<SessionDTO> findDTOsByChildIdNewestFirst(Long childId);
 }
@@ -0,0 +1,12 @@
+package com.example.HackathonServer.repos;
+
+import com.example.HackathonServer.models.VideoEngagementBucket;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface VideoEngagementBucketRepo extends JpaRepository<VideoEngagementBucket, Long> {
+    List<VideoEngagementBucket> findByVideoIdOrderByOffsetSeconds(Long videoId);
+}
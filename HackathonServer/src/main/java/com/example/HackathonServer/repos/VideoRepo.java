@@ -1,9 +1,30 @@
 package com.example.HackathonServer.repos;
 
+import com.example.HackathonServer.dto.VideoDTO;
 import com.example.HackathonServer.models.Video;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface VideoRepo extends JpaRepository<Video, Long> {
+    Optional<Video> findByKeyHash(String keyHash);
+
+    @Query("select coalesce(v.changeVersion, 0) from Video v where v.id = :id")
+    Optional<Long> findChangeVersionById(Long id);
+
+    // count + highest change version; changes on any insert, update or delete
+    @Query("select concat(cast(count(v) as String), '-', cast(coalesce(max(v.changeVersion), 0) as String)) from Video v")
+    String watermark();
+
+    @Query("select new com.example.HackathonServer.dto.VideoDTO(v.id, v.title, v.url, v.videoKey, v.createdAt) " +
+            "from Video v order by v.id")
+    List<VideoDTO> findAllDTOs();
+
+    @Query("select new com.example.HackathonServer.dto.VideoDTO(v.id, v.title, v.url, v.videoKey, v.createdAt) " +
+            "from Video v where v.id = :id")
+    Optional<VideoDTO> findDTOById(Long id);
 }
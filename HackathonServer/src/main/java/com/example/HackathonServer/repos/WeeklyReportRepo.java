@@ -0,0 +1,13 @@
+package com.example.HackathonServer.repos;
+
+import com.example.HackathonServer.models.WeeklyReport;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface WeeklyReportRepo extends JpaRepository<WeeklyReport, Long> {
+    List<WeeklyReport> findByChildIdOrderByWeekStartDesc(Long childId, Pageable pageable);
+}
@@ -0,0 +1,221 @@
+package com.example.HackathonServer.services;
+
+import com.example.HackathonServer.models.ActivitySketch;
+import com.example.HackathonServer.models.Child;
+import com.example.HackathonServer.models.Session;
+import com.example.HackathonServer.repos.ActivitySketchRepo;
+import com.example.HackathonServer.repos.ChildRepo;
+import com.example.HackathonServer.repos.SessionRepo;
+import com.example.HackathonServer.util.HyperLogLog;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Distinct active children/parents per day, overall and per parent region,
+ * kept as HyperLogLog sketches. Session starts update today's sketches in
+ * memory; dirty sketches are flushed to activity_sketch on a schedule. A
+ * flush merges with the stored registers (register-wise max) under a row
+ * lock, so instances flushing the same day add to each other's counts.
+ * Weekly and monthly counts merge the daily registers instead of running
+ * COUNT(DISTINCT) over the session table.
+ */
+@Slf4j
+@Service
+public class ActiveUsersService {
+
+    public static final String CHILD = "CHILD";
+    public static final String PARENT = "PARENT";
+    public static final String ALL_REGIONS = "ALL";
+    private static final String UNKNOWN_REGION = "UNKNOWN";
+
+    @Autowired
+    private ActivitySketchRepo activitySketchRepo;
+    @Autowired
+    private ChildRepo childRepo;
+    @Autowired
+    private SessionRepo sessionRepo;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${active-users.precision:14}")
+    private int precision;
+
+    private final Map<String, HyperLogLog> sketches = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    // childId -> {parentId, region}; avoids a lookup per session start
+    private final Map<Long, Object[]> childOwners = new ConcurrentHashMap<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ActiveCounts {
+        private LocalDate date;
+        private String region;
+        private long dailyChildren;
+        private long weeklyChildren;
+        private long monthlyChildren;
+        private long dailyParents;
+        private long weeklyParents;
+        private long monthlyParents;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ActiveCountsComparison {
+        private LocalDate from;
+        private LocalDate to;
+        private String region;
+        private long sketchChildren;
+        private long exactChildren;
+        private double childrenErrorPercent;
+        private long sketchParents;
+        private long exactParents;
+        private double parentsErrorPercent;
+        private double sketchMillis;
+        private double exactMillis;
+    }
+
+    public void recordSessionStart(Session session) {
+        Child child = session.getChild();
+        if (child == null || child.getId() == null) {
+            return;
+        }
+        Object[] owner = childOwners.computeIfAbsent(child.getId(), id -> childRepo.findById(id)
+                .map(c -> new Object[]{c.getParent().getId(), regionOf(c.getParent().getRegion())})
+                .orElse(null));
+        if (owner == null) {
+            return;
+        }
+        LocalDate day = session.getCreatedAt() != null ? session.getCreatedAt().toLocalDate() : LocalDate.now();
+        String region = (String) owner[1];
+        record(day, CHILD, ALL_REGIONS, child.getId());
+        record(day, CHILD, region, child.getId());
+        record(day, PARENT, ALL_REGIONS, (Long) owner[0]);
+        record(day, PARENT, region, (Long) owner[0]);
+    }
+
+    public ActiveCounts activeCounts(LocalDate date, String region) {
+        String key = region == null ? ALL_REGIONS : regionOf(region);
+        return new ActiveCounts(date, key,
+                distinct(CHILD, key, date, date),
+                distinct(CHILD, key, date.minusDays(6), date),
+                distinct(CHILD, key, date.minusDays(29), date),
+                distinct(PARENT, key, date, date),
+                distinct(PARENT, key, date.minusDays(6), date),
+                distinct(PARENT, key, date.minusDays(29), date));
+    }
+
+    /** Times the sketch merge against COUNT(DISTINCT) over the same range and reports the error. */
+    public ActiveCountsComparison compareWithExact(LocalDate from, LocalDate to, String region) {
+        String key = region == null ? ALL_REGIONS : regionOf(region);
+        long start = System.nanoTime();
+        long sketchChildren = distinct(CHILD, key, from, to);
+        long sketchParents = distinct(PARENT, key, from, to);
+        double sketchMillis = (System.nanoTime() - start) / 1e6;
+
+        start = System.nanoTime();
+        String exactRegion = ALL_REGIONS.equals(key) ? null : key;
+        long exactChildren = sessionRepo.countDistinctChildren(from.atStartOfDay(), to.plusDays(1).atStartOfDay(), exactRegion);
+        long exactParents = sessionRepo.countDistinctParents(from.atStartOfDay(), to.plusDays(1).atStartOfDay(), exactRegion);
+        double exactMillis = (System.nanoTime() - start) / 1e6;
+
+        return new ActiveCountsComparison(from, to, key,
+                sketchChildren, exactChildren, errorPercent(sketchChildren, exactChildren),
+                sketchParents, exactParents, errorPercent(sketchParents, exactParents),
+                sketchMillis, exactMillis);
+    }
+
+    @Scheduled(fixedDelayString = "${active-users.flush-interval-ms:60000}")
+    public void flush() {
+        LocalDate today = LocalDate.now();
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        for (String key : dirty) {
+            dirty.remove(key);
+            HyperLogLog sketch = sketches.get(key);
+            try {
+                transaction.executeWithoutResult(status -> store(key, sketch));
+            } catch (RuntimeException e) {
+                // typically two instances creating the same day's row at once; the next flush merges again
+                dirty.add(key);
+                log.warn("Could not flush activity sketch {}", key, e);
+            }
+        }
+        // past days are closed; keep at most a month of them cached
+        sketches.keySet().removeIf(key -> !dirty.contains(key)
+                && LocalDate.parse(key.substring(0, key.indexOf('|'))).isBefore(today.minusDays(31)));
+    }
+
+    private void store(String key, HyperLogLog sketch) {
+        String[] parts = key.split("\\|");
+        LocalDate day = LocalDate.parse(parts[0]);
+        ActivitySketch row = activitySketchRepo.findForUpdateByDayAndSubjectAndRegion(day, parts[1], parts[2])
+                .orElseGet(ActivitySketch::new);
+        byte[] registers;
+        synchronized (sketch) {
+            if (row.getRegisters() != null) {
+                sketch.merge(HyperLogLog.fromBytes(row.getRegisters())); // other instances' registers
+            }
+            registers = sketch.toBytes();
+        }
+        row.setDay(day);
+        row.setSubject(parts[1]);
+        row.setRegion(parts[2]);
+        row.setRegisters(registers);
+        activitySketchRepo.save(row);
+    }
+
+    private void record(LocalDate day, String subject, String region, long id) {
+        String key = key(day, subject, region);
+        HyperLogLog sketch = sketch(key, day, subject, region);
+        boolean changed;
+        synchronized (sketch) {
+            changed = sketch.add(id);
+        }
+        if (changed) {
+            dirty.add(key);
+        }
+    }
+
+    private long distinct(String subject, String region, LocalDate from, LocalDate to) {
+        HyperLogLog union = new HyperLogLog(precision);
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            HyperLogLog sketch = sketch(key(day, subject, region), day, subject, region);
+            synchronized (sketch) {
+                union.merge(sketch);
+            }
+        }
+        return union.estimate();
+    }
+
+    private HyperLogLog sketch(String key, LocalDate day, String subject, String region) {
+        return sketches.computeIfAbsent(key, k -> activitySketchRepo.findByDayAndSubjectAndRegion(day, subject, region)
+                .map(row -> HyperLogLog.fromBytes(row.getRegisters()))
+                .orElseGet(() -> new HyperLogLog(precision)));
+    }
+
+    private static double errorPercent(long estimate, long exact) {
+        return exact == 0 ? (estimate == 0 ? 0 : 100) : Math.abs(estimate - exact) * 100.0 / exact;
+    }
+
+    private static String regionOf(String region) {
+        return region == null || region.isBlank() ? UNKNOWN_REGION : region.trim().toUpperCase();
+    }
+
+    private static String key(LocalDate day, String subject, String region) {
+        return day + "|" + subject + "|" + region;
+    }
+}
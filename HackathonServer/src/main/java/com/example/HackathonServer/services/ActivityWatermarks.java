@@ -0,0 +1,35 @@
+package com.example.HackathonServer.services;
+
+import com.example.HackathonServer.util.ETags;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * ETag watermarks for the move/session/score summaries, read from the child's
+ * child_summary.updated_at. Every projected event moves it (edits and deletes
+ * publish retractions), so does a rebuild, and deleting the child's rows
+ * removes it, so a tag changes whichever instance or job did the write and
+ * stays valid across restarts. The date is included because
+ * the "last N days" windows move every day even without writes.
+ */
+@Service
+public class ActivityWatermarks {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public String etag(Long childId, String resource) {
+        List<Timestamp> updated = jdbcTemplate.queryForList(
+                "select updated_at from child_summary where child_id = ?", Timestamp.class, childId);
+        Object watermark = updated.isEmpty() || updated.get(0) == null ? "none"
+                : ChronoUnit.MICROS.between(Instant.EPOCH, updated.get(0).toInstant());
+        return ETags.of(resource, childId, watermark, LocalDate.now());
+    }
+}
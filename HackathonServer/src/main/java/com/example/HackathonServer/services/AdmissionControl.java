@@ -0,0 +1,157 @@
+package com.example.HackathonServer.services;
+
+import com.example.HackathonServer.models.Child;
+import com.example.HackathonServer.models.Move;
+import com.example.HackathonServer.models.Session;
+import com.example.HackathonServer.repos.ChildRepo;
+import com.example.HackathonServer.repos.SessionRepo;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token-bucket admission for gameplay writes, one bucket per child and one
+ * per parent (per client address when the write names no child). Buckets are
+ * kept in the GCRA form: a single AtomicLong holding the theoretical arrival
+ * time of the next request, advanced with a CAS. That is equivalent to a
+ * token bucket of the same rate and burst but needs no refill thread and no
+ * lock; the ConcurrentHashMap holding the buckets is itself striped.
+ */
+@Service
+public class AdmissionControl {
+
+    private static final int LOOKUP_CACHE_LIMIT = 50_000;
+
+    @Autowired
+    private ChildRepo childRepo;
+    @Autowired
+    private SessionRepo sessionRepo;
+
+    @Value("${admission.child.rate-per-second:20}")
+    private double childRate;
+    @Value("${admission.child.burst:40}")
+    private int childBurst;
+    @Value("${admission.parent.rate-per-second:60}")
+    private double parentRate;
+    @Value("${admission.parent.burst:120}")
+    private int parentBurst;
+
+    private final Map<Long, AtomicLong> childBuckets = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicLong> parentBuckets = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> addressBuckets = new ConcurrentHashMap<>();
+    private final Map<Long, Long> parentOfChild = new ConcurrentHashMap<>();
+    private final Map<Long, Long> childOfSession = new ConcurrentHashMap<>();
+
+    /** @return 0 when admitted, otherwise nanoseconds until the next write would be */
+    public long acquire(Long childId, HttpServletRequest request) {
+        long now = System.nanoTime();
+        if (childId == null) {
+            return take(addressBuckets.computeIfAbsent(request.getRemoteAddr(), a -> new AtomicLong(now)),
+                    now, childRate, childBurst);
+        }
+        long wait = take(childBuckets.computeIfAbsent(childId, id -> new AtomicLong(now)), now, childRate, childBurst);
+        if (wait > 0) {
+            return wait;
+        }
+        Long parentId = parentOf(childId);
+        return parentId == null ? 0
+                : take(parentBuckets.computeIfAbsent(parentId, id -> new AtomicLong(now)), now, parentRate, parentBurst);
+    }
+
+    // writes that cannot be tied to a child, e.g. bare score rows
+    public long acquire(HttpServletRequest request) {
+        return acquire((Long) null, request);
+    }
+
+    public long acquire(Move move, HttpServletRequest request) {
+        Child child = move.getChild() != null ? move.getChild()
+                : move.getSession() != null ? move.getSession().getChild() : null;
+        return acquire(child != null ? child.getId() : childOfSession(move.getSession()), request);
+    }
+
+    public long acquire(Session session, HttpServletRequest request) {
+        return acquire(session.getChild() != null ? session.getChild().getId() : childOfSession(session), request);
+    }
+
+    public long acquireForSession(Long sessionId, HttpServletRequest request) {
+        return acquire(childOfSession(sessionId), request);
+    }
+
+    public static <T> ResponseEntity<T> tooManyRequests(long waitNanos) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(
+                        waitNanos + TimeUnit.SECONDS.toNanos(1) - 1))))
+                .build();
+    }
+
+    // GCRA: admit if the bucket's arrival time is at most `burst` intervals ahead of now
+    private static long take(AtomicLong bucket, long now, double ratePerSecond, int burst) {
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+        long tolerance = interval * (burst - 1L);
+        while (true) {
+            long tat = bucket.get();
+            long start = tat - now > 0 ? tat : now;
+            long ahead = start - now;
+            if (ahead > tolerance) {
+                return ahead - tolerance;
+            }
+            if (bucket.compareAndSet(tat, start + interval)) {
+                return 0;
+            }
+        }
+    }
+
+    private Long parentOf(Long childId) {
+        Long parentId = parentOfChild.get(childId);
+        if (parentId == null) {
+            parentId = childRepo.findParentIdById(childId).orElse(null);
+            if (parentId != null) {
+                if (parentOfChild.size() > LOOKUP_CACHE_LIMIT) {
+                    parentOfChild.clear();
+                }
+                parentOfChild.put(childId, parentId);
+            }
+        }
+        return parentId;
+    }
+
+    private Long childOfSession(Session session) {
+        return session == null ? null : childOfSession(session.getId());
+    }
+
+    private Long childOfSession(Long sessionId) {
+        if (sessionId == null) {
+            return null;
+        }
+        Long childId = childOfSession.get(sessionId);
+        if (childId == null) {
+            childId = sessionRepo.findChildIdById(sessionId).orElse(null);
+            if (childId != null) {
+                if (childOfSession.size() > LOOKUP_CACHE_LIMIT) {
+                    childOfSession.clear();
+                }
+                childOfSession.put(sessionId, childId);
+            }
+        }
+        return childId;
+    }
+
+    // buckets whose arrival time is in the past are full again and can be dropped
+    @Scheduled(fixedDelayString = "${admission.evict-interval-ms:60000}")
+    public void evictIdle() {
+        long now = System.nanoTime();
+        childBuckets.values().removeIf(bucket -> bucket.get() - now < 0);
+        parentBuckets.values().removeIf(bucket -> bucket.get() - now < 0);
+        addressBuckets.values().removeIf(bucket -> bucket.get() - now < 0);
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.HackathonServer.services;
+
+import com.example.HackathonServer.models.Question;
+import com.example.HackathonServer.repos.QuestionRepo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Answer keys per video, loaded with one query on first use and dropped
+ * whenever a question of that video is edited.
+ */
+@Service
+public class AnswerKeyCache {
+
+    private static final String[] LETTERS = {"a", "b", "c"};
+
+    @Autowired
+    private QuestionRepo questionRepo;
+
+    private final Map<Long, Map<Long, AnswerKey>> keys = new ConcurrentHashMap<>();
+
+    /**
+     * Options of one question, lower-cased. Clients may answer with the
+     * option letter ("a"/"optA") or the option text.
+     */
+    public static class AnswerKey {
+        private final String[] options;
+        private final String correctAns;
+        private final int correctOption; //-1 if correctAns matches no option
+
+        AnswerKey(Question question) {
+            this.options = new String[]{normalize(question.getOptA()), normalize(question.getOptB()),
+                    normalize(question.getOptC())};
+            this.correctAns = normalize(question.getCorrectAns());
+            this.correctOption = optionIndex(correctAns);
+        }
+
+        /** @return 0..2 for options A..C, -1 if the answer matches none of them */
+        public int optionIndex(String answer) {
+            String chosen = normalize(answer);
+            for (int i = 0; i < LETTERS.length; i++) {
+                if (chosen.equals(LETTERS[i]) || chosen.equals("opt" + LETTERS[i]) || chosen.equals(options[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        public boolean isCorrect(String answer) {
+            if (correctOption < 0) {
+                return normalize(answer).equals(correctAns);
+            }
+            return optionIndex(answer) == correctOption;
+        }
+
+        private static String normalize(String value) {
+            return value == null ? "" : value.trim().toLowerCase();
+        }
+    }
+
+    public Map<Long, AnswerKey> forVideo(Long videoId) {
+        return keys.computeIfAbsent(videoId, this::load);
+    }
+
+    public void invalidate(Long videoId) {
+        if (videoId != null) {
+            keys.remove(videoId);
+        }
+    }
+
+    private Map<Long, AnswerKey> load(Long videoId) {
+        Map<Long, AnswerKey> key = new HashMap<>();
+        for (Question question : questionRepo.findByVideoId(videoId)) {
+            key.put(question.getId(), new AnswerKey(question));
+        }
+        return Map.copyOf(key);
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.HackathonServer.services;
+
+import com.example.HackathonServer.config.ShardRoutingDataSource;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Full history of one child as a zip of NDJSON files, written straight to the
+ * response. Every file is a streamed query (MySQL sends rows one at a time)
+ * serialized row by row, and archived moves are read one month at a time, so
+ * memory does not grow with the child's history. All files come from one
+ * read-only transaction and therefore one snapshot.
+ */
+@Service
+public class ChildExportService {
+
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private MoveArchiveService moveArchiveService;
+
+    /** Runs on the caller's thread against the given shard; the caller checks ownership first. */
+    public void export(int shard, Long childId, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        JsonGenerator json = objectMapper.getFactory().createGenerator(zip)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .setRootValueSeparator(null);
+        JdbcTemplate streaming = new JdbcTemplate(dataSource);
+        streaming.setFetchSize(Integer.MIN_VALUE);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        try {
+            ShardRoutingDataSource.on(shard, () -> transaction.execute(status -> {
+                try {
+                    writeAll(zip, json, streaming, childId);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return null;
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        zip.finish();
+        zip.flush();
+    }
+
+    private void writeAll(ZipOutputStream zip, JsonGenerator json, JdbcTemplate streaming, Long childId)
+            throws IOException {
+        writeQuery(zip, json, streaming, "child.ndjson", "select id, full_name as fullName, " +
+                "date_of_birth as dateOfBirth, created_at as createdAt from child where id = ?", childId);
+        writeQuery(zip, json, streaming, "homework.ndjson", "select h.id, h.title, h.status, h.video_id as videoId, " +
+                "v.title as videoTitle, v.url as videoUrl from homework h left join video v on v.id = h.video_id " +
+                "where h.child_id = ? order by h.id", childId);
+        writeQuery(zip, json, streaming, "sessions.ndjson", "select id, video_id as videoId, status, " +
+                "created_at as createdAt, ended_at as endedAt, duration from session where child_id = ? order by id",
+                childId);
+        writeQuery(zip, json, streaming, "scores.ndjson", "select sc.id, s.id as sessionId, sc.score, sc.percentage " +
+                "from session s join score sc on sc.id = s.score_id where s.child_id = ? order by s.id", childId);
+
+        // archived months first, then the live rows past the horizon, so moves come out oldest first
+        zip.putNextEntry(new ZipEntry("moves.ndjson"));
+        for (LocalDate month : moveArchiveService.archivedMonths(childId)) {
+            try {
+                moveArchiveService.forEach(childId, YearMonth.from(month), null, move -> {
+                    try {
+                        json.writeObject(move.toDTO());
+                        json.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause(); // the client went away, or the archive file could not be read
+            }
+            json.flush();
+        }
+        LocalDateTime horizon = moveArchiveService.horizon();
+        streamRows(json, streaming, "select id, session_id as sessionId, type, video_offset_seconds as videoOffsetSeconds, " +
+                        "created_at as createdAt from move where child_id = ? and created_at >= ? order by created_at, id",
+                childId, Timestamp.valueOf(horizon == null ? LocalDateTime.of(1970, 1, 1, 0, 0) : horizon));
+        zip.closeEntry();
+    }
+
+    private void writeQuery(ZipOutputStream zip, JsonGenerator json, JdbcTemplate streaming, String entry,
+                            String sql, Object... args) throws IOException {
+        zip.putNextEntry(new ZipEntry(entry));
+        streamRows(json, streaming, sql, args);
+        zip.closeEntry();
+    }
+
+    // one JSON object per row, keyed by column label
+    private void streamRows(JsonGenerator json, JdbcTemplate streaming, String sql, Object... args) throws IOException {
+        try {
+            streaming.query(sql, rs -> {
+                try {
+                    writeRow(json, rs);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, args);
+        } catch (UncheckedIOException e) {
+            throw e.getCause(); // the client went away; stop reading rows
+        }
+        json.flush();
+    }
+
+    private static void writeRow(JsonGenerator json, ResultSet rs) throws SQLException, IOException {
+        ResultSetMetaData columns = rs.getMetaData();
+        json.writeStartObject();
+        for (int i = 1; i <= columns.getColumnCount(); i++) {
+            Object value = rs.getObject(i);
+            if (value instanceof Timestamp timestamp) {
+                value = timestamp.toLocalDateTime();
+            } else if (value instanceof Date date) {
+                value = date.toLocalDate();
+            }
+            json.writeFieldName(columns.getColumnLabel(i));
+            json.writeObject(value);
+        }
+        json.writeEndObject();
+        json.writeRaw('\n');
+    }
+}
@@ -0,0 +1,375 @@
+package com.example.HackathonServer.services;
+
+import com.example.HackathonServer.config.ShardRoutingDataSource;
+import com.example.HackathonServer.events.ChildEvent;
+import com.example.HackathonServer.models.Move;
+import com.example.HackathonServer.models.Session;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains child_summary (all-time counters) and child_summary_day (per-day
+ * counters, kept for child-summary.days-kept days) from {@link ChildEvent}s.
+ * Events are handled synchronously on the publishing thread, so they land on
+ * the request's shard. Edits and deletes arrive as {@link ChildEvent.Retracted}
+ * and are folded with negative counts, so the rows stay right without
+ * rescanning history.
+ * <p>
+ * A rebuild replays one child's events from the source tables (sessions,
+ * scores, completed homework and moves, streamed) through the same fold and
+ * replaces the child's rows; archived moves enter as their monthly totals.
+ * It runs on demand (POST /admin/child-summary/rebuild), once per shard on the
+ * first start, and every child-summary.repair-interval-ms for the children an
+ * event failed to update. Writes that land while a child is being rebuilt can
+ * be counted twice or missed.
+ */
+@Slf4j
+@Service
+public class ChildSummaryProjector {
+
+    private static final String[] SUMMARY_COLUMNS = {"jumps", "squats", "claps", "other_moves", "sessions_started",
+            "sessions_ended", "minutes_played", "scored_sessions", "score_sum", "homework_completed"};
+    private static final String[] DAY_COLUMNS = {"jumps", "squats", "claps", "other_moves", "sessions",
+            "minutes_played", "scored_sessions", "score_sum"};
+    // SUMMARY_COLUMNS indexes; the four move columns have the same index in DAY_COLUMNS
+    private static final int OTHER_MOVES = 3;
+    private static final int SESSIONS_STARTED = 4;
+    private static final int SESSIONS_ENDED = 5;
+    private static final int MINUTES = 6;
+    private static final int SCORED = 7;
+    private static final int SCORE_SUM = 8;
+    private static final int HOMEWORK = 9;
+    // DAY_COLUMNS indexes
+    private static final int DAY_SESSIONS = 4;
+    private static final int DAY_MINUTES = 5;
+    private static final int DAY_SCORED = 6;
+    private static final int DAY_SCORE_SUM = 7;
+
+    private static final String UPSERT_SUMMARY = upsert("child_summary", "child_id", SUMMARY_COLUMNS,
+            ", last_activity_at, updated_at", ", ?, ?",
+            ", last_activity_at = greatest(coalesce(last_activity_at, values(last_activity_at)), " +
+                    "coalesce(values(last_activity_at), last_activity_at)), updated_at = values(updated_at)");
+    private static final String UPSERT_DAY = upsert("child_summary_day", "child_id, day", DAY_COLUMNS, "", ", ?", "");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ShardDirectory shardDirectory;
+
+    @Value("${child-summary.days-kept:40}")
+    private int daysKept;
+
+    // children an event could not be projected for, rebuilt by repair()
+    private record Stale(int shard, Long childId) {
+    }
+
+    private final Set<Stale> stale = ConcurrentHashMap.newKeySet();
+
+    // counter deltas of one child: all-time, per day, and the latest activity seen
+    private static class Delta {
+        final long[] total = new long[SUMMARY_COLUMNS.length];
+        final Map<LocalDate, long[]> days = new HashMap<>();
+        LocalDateTime lastActivityAt;
+
+        long[] day(LocalDateTime at) {
+            return at == null ? new long[DAY_COLUMNS.length]
+                    : days.computeIfAbsent(at.toLocalDate(), d -> new long[DAY_COLUMNS.length]);
+        }
+
+        void touch(LocalDateTime at) {
+            if (at != null && (lastActivityAt == null || at.isAfter(lastActivityAt))) {
+                lastActivityAt = at;
+            }
+        }
+    }
+
+    @EventListener
+    public void on(ChildEvent event) {
+        if (event.childId() == null) {
+            return;
+        }
+        Delta delta = new Delta();
+        fold(event, delta, 1);
+        try {
+            write(event.childId(), delta);
+        } catch (DataAccessException e) {
+            stale.add(new Stale(ShardRoutingDataSource.current(), event.childId()));
+            log.warn("Could not project {}; child {} will be rebuilt", event, event.childId(), e);
+        }
+    }
+
+    // sign -1 takes the event back out; the latest activity is only ever moved forward
+    private static void fold(ChildEvent event, Delta delta, int sign) {
+        if (event instanceof ChildEvent.MoveRecorded move) {
+            int column = moveColumn(move.type());
+            delta.total[column] += sign;
+            delta.day(move.createdAt())[column] += sign;
+            if (sign > 0) {
+                delta.touch(move.createdAt());
+            }
+        } else if (event instanceof ChildEvent.SessionStarted started) {
+            delta.total[SESSIONS_STARTED] += sign;
+            delta.day(started.startedAt())[DAY_SESSIONS] += sign;
+            if (sign > 0) {
+                delta.touch(started.startedAt());
+            }
+        } else if (event instanceof ChildEvent.SessionEnded ended) {
+            delta.total[SESSIONS_ENDED] += sign;
+            if (ended.minutes() != null) {
+                delta.total[MINUTES] += sign * ended.minutes();
+                delta.day(ended.startedAt())[DAY_MINUTES] += sign * ended.minutes();
+            }
+        } else if (event instanceof ChildEvent.ScoreRecorded score) {
+            int points = score.score() == null ? 0 : score.score();
+            delta.total[SCORED] += sign;
+            delta.total[SCORE_SUM] += sign * points;
+            long[] day = delta.day(score.sessionStartedAt());
+            day[DAY_SCORED] += sign;
+            day[DAY_SCORE_SUM] += sign * points;
+        } else if (event instanceof ChildEvent.HomeworkCompleted) {
+            delta.total[HOMEWORK] += sign;
+        } else if (event instanceof ChildEvent.Retracted retracted) {
+            retracted.events().forEach(undone -> fold(undone, delta, -sign));
+        }
+    }
+
+    // 0 jumps, 1 squats, 2 claps, 3 anything else; WeeklyReportService counts moves the same way
+    static int moveColumn(String type) {
+        if (type == null) {
+            return OTHER_MOVES;
+        }
+        return switch (type.toUpperCase()) {
+            case "JUMP" -> 0;
+            case "SQUAT" -> 1;
+            case "CLAP" -> 2;
+            default -> OTHER_MOVES;
+        };
+    }
+
+    private void write(Long childId, Delta delta) {
+        List<Object> args = new ArrayList<>();
+        args.add(childId);
+        Arrays.stream(delta.total).forEach(args::add);
+        args.add(delta.lastActivityAt == null ? null : Timestamp.valueOf(delta.lastActivityAt));
+        args.add(Timestamp.valueOf(LocalDateTime.now()));
+        jdbcTemplate.update(UPSERT_SUMMARY, args.toArray());
+
+        LocalDate oldestKept = LocalDate.now().minusDays(daysKept);
+        List<Object[]> days = new ArrayList<>();
+        delta.days.forEach((day, counters) -> {
+            if (!day.isBefore(oldestKept)) {
+                List<Object> row = new ArrayList<>();
+                row.add(childId);
+                row.add(Date.valueOf(day));
+                Arrays.stream(counters).forEach(row::add);
+                days.add(row.toArray());
+            }
+        });
+        if (!days.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT_DAY, days);
+        }
+    }
+
+    /** Replaces the child's summary rows with a fold of its replayed events; returns the number of events. */
+    public long rebuild(Long childId) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        Long events = transaction.execute(status -> {
+            Delta delta = new Delta();
+            long[] count = {0};
+            replay(childId, event -> {
+                fold(event, delta, 1);
+                count[0]++;
+            });
+            jdbcTemplate.query("select upper(type) as type, sum(moves) as moves from move_archive_total " +
+                    "where child_id = ? group by upper(type)", rs -> {
+                delta.total[moveColumn(rs.getString("type"))] += rs.getLong("moves");
+            }, childId);
+            jdbcTemplate.update("delete from child_summary_day where child_id = ?", childId);
+            jdbcTemplate.update("delete from child_summary where child_id = ?", childId);
+            write(childId, delta);
+            return count[0];
+        });
+        return events == null ? 0 : events;
+    }
+
+    /** The child's events as stored in the source tables, sessions and their scores first, then moves. */
+    public void replay(Long childId, Consumer<ChildEvent> sink) {
+        jdbcTemplate.query("select s.id, s.created_at, s.ended_at, s.duration, sc.score from session s " +
+                "left join score sc on sc.id = s.score_id where s.child_id = ? order by s.id", rs -> {
+            Timestamp created = rs.getTimestamp("created_at");
+            sessionEvents(childId, rs.getLong("id"), created == null ? null : created.toLocalDateTime(),
+                    rs.getTimestamp("ended_at") != null, rs.getString("duration"), rs.getObject("score", Integer.class))
+                    .forEach(sink);
+        }, childId);
+        jdbcTemplate.query("select id from homework where child_id = ? and lower(status) = 'completed'", rs -> {
+            sink.accept(new ChildEvent.HomeworkCompleted(childId, rs.getLong("id")));
+        }, childId);
+        JdbcTemplate streaming = new JdbcTemplate(dataSource);
+        streaming.setFetchSize(Integer.MIN_VALUE);
+        streaming.query("select id, type, created_at from move where child_id = ? order by created_at, id", rs -> {
+            Timestamp created = rs.getTimestamp("created_at");
+            sink.accept(new ChildEvent.MoveRecorded(childId, rs.getLong("id"), rs.getString("type"),
+                    created == null ? null : created.toLocalDateTime()));
+        }, childId);
+    }
+
+    /** The event a stored move stands for; edits and deletes retract it. */
+    public static ChildEvent.MoveRecorded moveEvent(Move move) {
+        return new ChildEvent.MoveRecorded(move.getChild() == null ? null : move.getChild().getId(), move.getId(),
+                move.getType(), move.getCreatedAt());
+    }
+
+    /** The events a stored session stands for, its score's included, as replay() reads them. */
+    public static List<ChildEvent> sessionEvents(Session session) {
+        return sessionEvents(session.getChild() == null ? null : session.getChild().getId(), session.getId(),
+                session.getCreatedAt(), session.getEndedAt() != null, session.getDuration(),
+                session.getScore() == null ? null : session.getScore().getScore());
+    }
+
+    private static List<ChildEvent> sessionEvents(Long childId, Long sessionId, LocalDateTime startedAt, boolean ended,
+                                                  String duration, Integer score) {
+        List<ChildEvent> events = new ArrayList<>(3);
+        events.add(new ChildEvent.SessionStarted(childId, sessionId, startedAt));
+        if (ended) {
+            events.add(new ChildEvent.SessionEnded(childId, sessionId, startedAt, minutes(duration)));
+        }
+        if (score != null) {
+            events.add(new ChildEvent.ScoreRecorded(childId, sessionId, score, startedAt));
+        }
+        return events;
+    }
+
+    /** The moves of a session, read before deleting it: they are deleted with it. */
+    public List<ChildEvent> sessionMoveEvents(Long sessionId) {
+        return jdbcTemplate.query("select id, child_id, type, created_at from move where session_id = ?", (rs, i) -> {
+            Timestamp created = rs.getTimestamp("created_at");
+            return new ChildEvent.MoveRecorded(rs.getObject("child_id", Long.class), rs.getLong("id"),
+                    rs.getString("type"), created == null ? null : created.toLocalDateTime());
+        }, sessionId);
+    }
+
+    /** The score as recorded for the session pointing at it; empty when no session does. */
+    public List<ChildEvent> scoreEvents(Long scoreId) {
+        return jdbcTemplate.query("select s.id, s.child_id, s.created_at, sc.score from session s " +
+                "join score sc on sc.id = s.score_id where sc.id = ?", (rs, i) -> {
+            Timestamp created = rs.getTimestamp("created_at");
+            return new ChildEvent.ScoreRecorded(rs.getObject("child_id", Long.class), rs.getLong("id"),
+                    rs.getObject("score", Integer.class), created == null ? null : created.toLocalDateTime());
+        }, scoreId);
+    }
+
+    /** Publishes the retraction of events, one per child they belong to. */
+    public static void retract(ApplicationEventPublisher publisher, List<ChildEvent> events) {
+        events.stream().filter(event -> event.childId() != null)
+                .collect(Collectors.groupingBy(ChildEvent::childId, LinkedHashMap::new, Collectors.toList()))
+                .forEach((childId, undone) -> publisher.publishEvent(new ChildEvent.Retracted(childId, undone)));
+    }
+
+    // children whose event failed to project, one rebuild each on its shard
+    @Scheduled(fixedDelayString = "${child-summary.repair-interval-ms:60000}")
+    public void repair() {
+        for (Stale child : List.copyOf(stale)) {
+            try {
+                ShardRoutingDataSource.on(child.shard(), () -> rebuild(child.childId()));
+                stale.remove(child);
+            } catch (RuntimeException e) {
+                log.warn("Could not rebuild the summary of child {}", child.childId(), e);
+            }
+        }
+    }
+
+    // day rows past the retention; the "last N days" reads never reach them
+    @Scheduled(cron = "${child-summary.prune-cron:0 30 3 * * *}")
+    public void prune() {
+        Date oldestKept = Date.valueOf(LocalDate.now().minusDays(daysKept));
+        for (int shard = 0; shard < shardDirectory.shardCount(); shard++) {
+            try {
+                ShardRoutingDataSource.on(shard, () -> jdbcTemplate.update(
+                        "delete from child_summary_day where day < ?", oldestKept));
+            } catch (RuntimeException e) {
+                log.warn("Could not prune child summary days on shard {}", shard, e);
+            }
+        }
+    }
+
+    // first start with the read model: fill it from history before the dashboards read it
+    @EventListener(ApplicationReadyEvent.class)
+    public void bootstrap() {
+        for (int shard = 0; shard < shardDirectory.shardCount(); shard++) {
+            ShardRoutingDataSource.on(shard, () -> {
+                Integer summaries = jdbcTemplate.queryForObject("select count(*) from child_summary", Integer.class);
+                Integer children = jdbcTemplate.queryForObject("select count(*) from child", Integer.class);
+                if (summaries != null && summaries == 0 && children != null && children > 0) {
+                    rebuildShard();
+                }
+                return null;
+            });
+        }
+    }
+
+    private void rebuildShard() {
+        long started = System.currentTimeMillis();
+        List<Long> childIds = jdbcTemplate.queryForList("select id from child", Long.class);
+        long events = 0;
+        for (Long childId : childIds) {
+            events += rebuild(childId);
+        }
+        jdbcTemplate.update("delete from child_summary where child_id not in (select id from child)");
+        jdbcTemplate.update("delete from child_summary_day where day < ?",
+                Date.valueOf(LocalDate.now().minusDays(daysKept)));
+        log.info("Rebuilt child summaries of {} children from {} events in {} ms on shard {}", childIds.size(), events,
+                System.currentTimeMillis() - started, ShardRoutingDataSource.current());
+    }
+
+    /** Whole minutes from a stored session duration, null when it is not a plain number. */
+    public static Integer minutes(String duration) {
+        if (duration == null || duration.isBlank() || !duration.trim().chars().allMatch(Character::isDigit)) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(duration.trim());
+        } catch (NumberFormatException e) {
+            return null; // too long for an int
+        }
+    }
+
+    private static String upsert(String table, String keyColumns, String[] counters, String extraColumns,
+                                 String extraValues, String extraUpdates) {
+        return "insert into " + table + " (" + keyColumns + ", " + String.join(", ", counters) + extraColumns
+                + ") values (" + String.join(", ", Collections.nCopies(keyColumns.split(",").length + counters.length, "?"))
+                + extraValues + ") on duplicate key update "
+                + Arrays.stream(counters).map(c -> c + " = " + c + " + values(" + c + ")").collect(Collectors.joining(", "))
+                + extraUpdates;
+    }
+}
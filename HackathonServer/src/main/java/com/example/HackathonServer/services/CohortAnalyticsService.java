@@ -0,0 +1,272 @@
+package com.example.HackathonServer.services;
+
+import com.example.HackathonServer.models.Child;
+import com.example.HackathonServer.models.CohortSketch;
+import com.example.HackathonServer.repos.ChildRepo;
+import com.example.HackathonServer.repos.CohortSketchRepo;
+import com.example.HackathonServer.repos.MoveRepo;
+import com.example.HackathonServer.repos.SessionRepo;
+import com.example.HackathonServer.util.TDigest;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps one t-digest per (age band, metric, week) describing how active
+ * children of that age were in a closed week. Once a week has closed, the
+ * checkpoint folds it from the database - every child that existed by then is
+ * one sample, zero if it did not move - and stores its digests in
+ * cohort_weekly_sketch; an instance that finds the week already stored by
+ * another loads those digests instead, so every instance holds the same
+ * digests. A lookup places the child's last closed week, read from the
+ * child's shard, in the merge of the cohort.retained-weeks weeks up to that
+ * one, merged in week order; an instance whose merge does not end at the last
+ * closed week catches up first, so any instance answers the same. Older weeks
+ * are pruned.
+ */
+@Slf4j
+@Service
+public class CohortAnalyticsService {
+
+    public static final String WEEKLY_MOVES = "WEEKLY_MOVES";
+    public static final String AVERAGE_SCORE = "AVERAGE_SCORE";
+
+    @Autowired
+    private CohortSketchRepo cohortSketchRepo;
+    @Autowired
+    private ChildRepo childRepo;
+    @Autowired
+    private MoveRepo moveRepo;
+    @Autowired
+    private SessionRepo sessionRepo;
+    @Autowired
+    private ShardDirectory shardDirectory;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${cohort.compression:100}")
+    private double compression;
+    @Value("${cohort.retained-weeks:12}")
+    private int retainedWeeks;
+
+    // folded weeks in week order, so every instance merges them alike; guarded by itself
+    private final Map<LocalDate, Map<String, TDigest>> weeks = new TreeMap<>();
+    private volatile Cohorts cohorts = new Cohorts(null, Map.of());
+    // cleared every week, so a child moves to the next band once they are old enough
+    private final Map<Long, String> childBands = new ConcurrentHashMap<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CohortPercentile {
+        private Long childId;
+        private String ageBand;
+        private LocalDate week;
+        private long weeklyMoves;
+        private Double movesPercentile;
+        private Double averageScore;
+        private Double scorePercentile;
+        private Double cohortMedianMoves;
+        private long cohortSamples;
+    }
+
+    // the retained weeks up to lastWeek merged, per band and metric
+    private record Cohorts(LocalDate lastWeek, Map<String, TDigest> digests) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        synchronized (weeks) {
+            for (CohortSketch sketch : cohortSketchRepo.findByWeekGreaterThanEqual(oldestRetained())) {
+                weeks.computeIfAbsent(sketch.getWeek(), week -> new HashMap<>())
+                        .put(key(sketch.getAgeBand(), sketch.getMetric()), TDigest.fromBytes(sketch.getDigest()));
+            }
+        }
+        checkpoint(); // folds the weeks that closed while no instance was running
+        log.info("Loaded cohort sketches of {} weeks", weeks.size());
+    }
+
+    public CohortPercentile percentileOf(Child child) {
+        LocalDate week = lastClosedWeek();
+        if (!week.equals(cohorts.lastWeek())) {
+            checkpoint();
+        }
+        String band = bandOf(child, week);
+        // the closed week the digests sample, from the child's rows rather than any instance's memory
+        Long childId = child.getId();
+        long weeklyMoves = shardDirectory.onShard(shardDirectory.shardOf(ShardDirectory.CHILD, childId), true,
+                () -> moveRepo.countByChildBetween(childId, week.atStartOfDay(), week.plusWeeks(1).atStartOfDay()));
+        Double averageScore = shardDirectory.onShard(shardDirectory.shardOf(ShardDirectory.CHILD, childId), true,
+                () -> sessionRepo.averageScoreOfChildBetween(childId, week.atStartOfDay(),
+                        week.plusWeeks(1).atStartOfDay()));
+
+        Map<String, TDigest> merged = cohorts.digests();
+        TDigest movesDigest = merged.get(key(band, WEEKLY_MOVES));
+        TDigest scoreDigest = merged.get(key(band, AVERAGE_SCORE));
+        CohortPercentile result = new CohortPercentile();
+        result.setChildId(child.getId());
+        result.setAgeBand(band);
+        result.setWeek(week);
+        result.setWeeklyMoves(weeklyMoves);
+        result.setAverageScore(averageScore);
+        if (movesDigest != null) {
+            synchronized (movesDigest) {
+                result.setMovesPercentile(movesDigest.cdf(weeklyMoves) * 100);
+                result.setCohortMedianMoves(movesDigest.quantile(0.5));
+                result.setCohortSamples((long) movesDigest.size());
+            }
+        }
+        if (scoreDigest != null && averageScore != null) {
+            synchronized (scoreDigest) {
+                result.setScorePercentile(scoreDigest.cdf(averageScore) * 100);
+            }
+        }
+        return result;
+    }
+
+    /** Folds closed weeks that are not stored yet, prunes weeks past retention and re-merges the lookups. */
+    @Scheduled(fixedDelayString = "${cohort.checkpoint-interval-ms:300000}")
+    public void checkpoint() {
+        LocalDate oldest = oldestRetained();
+        LocalDate lastClosed = lastClosedWeek();
+        synchronized (weeks) {
+            boolean changed = weeks.keySet().removeIf(week -> week.isBefore(oldest));
+            for (LocalDate week = oldest; !week.isAfter(lastClosed); week = week.plusWeeks(1)) {
+                if (!weeks.containsKey(week)) {
+                    weeks.put(week, foldWeek(week));
+                    changed = true;
+                }
+            }
+            if (!changed && lastClosed.equals(cohorts.lastWeek())) {
+                return;
+            }
+            Map<String, TDigest> merged = new HashMap<>();
+            for (Map<String, TDigest> week : weeks.values()) {
+                week.forEach((key, digest) -> merged.computeIfAbsent(key, k -> new TDigest(compression)).merge(digest));
+            }
+            if (!lastClosed.equals(cohorts.lastWeek())) {
+                childBands.clear();
+            }
+            cohorts = new Cohorts(lastClosed, merged);
+        }
+        jdbcTemplate.update("delete from cohort_weekly_sketch where week < ?", oldest);
+    }
+
+    // the week's stored digests, or ones sampled from the database and stored now
+    private Map<String, TDigest> foldWeek(LocalDate week) {
+        List<CohortSketch> stored = cohortSketchRepo.findByWeek(week);
+        if (stored.isEmpty()) {
+            Map<String, TDigest> sampled = sample(week);
+            List<CohortSketch> rows = new ArrayList<>();
+            sampled.forEach((key, digest) -> {
+                String[] parts = key.split("\\|");
+                rows.add(new CohortSketch(null, parts[0], parts[1], digest.toBytes(), week, null));
+            });
+            try {
+                // read back from the stored bytes, like an instance that loads the week does
+                stored = cohortSketchRepo.saveAll(rows);
+            } catch (DataIntegrityViolationException e) {
+                // another instance stored the week first; it sampled the same rows
+                stored = cohortSketchRepo.findByWeek(week);
+            }
+        }
+        Map<String, TDigest> digests = new HashMap<>();
+        stored.forEach(sketch -> digests.put(key(sketch.getAgeBand(), sketch.getMetric()),
+                TDigest.fromBytes(sketch.getDigest())));
+        return digests;
+    }
+
+    private Map<String, TDigest> sample(LocalDate week) {
+        Timestamp from = Timestamp.valueOf(week.atStartOfDay());
+        Timestamp to = Timestamp.valueOf(week.plusWeeks(1).atStartOfDay());
+        Map<String, TDigest> digests = new HashMap<>();
+        // every child that existed by the end of the week, with zero moves as well
+        List<Object[]> moves = shardDirectory.scatter(() -> jdbcTemplate.query("select c.date_of_birth, " +
+                "count(m.id) from child c left join move m on m.child_id = c.id and m.created_at >= ? " +
+                "and m.created_at < ? where c.created_at is null or c.created_at < ? group by c.id, c.date_of_birth",
+                (rs, i) -> new Object[]{rs.getDate(1).toLocalDate(), (double) rs.getLong(2)}, from, to, to));
+        for (Object[] row : moves) {
+            addSample(digests, ageBand((LocalDate) row[0], week), WEEKLY_MOVES, (Double) row[1]);
+        }
+        // only children with a scored session have an average
+        List<Object[]> scores = shardDirectory.scatter(() -> jdbcTemplate.query("select c.date_of_birth, " +
+                "sum(sc.percentage) / count(sc.id) from session s join child c on c.id = s.child_id " +
+                "join score sc on sc.id = s.score_id where s.created_at >= ? and s.created_at < ? " +
+                "group by c.id, c.date_of_birth",
+                (rs, i) -> new Object[]{rs.getDate(1).toLocalDate(), rs.getObject(2) == null ? null : rs.getDouble(2)},
+                from, to));
+        for (Object[] row : scores) {
+            addSample(digests, ageBand((LocalDate) row[0], week), AVERAGE_SCORE, (Double) row[1]);
+        }
+        return digests;
+    }
+
+    private void addSample(Map<String, TDigest> digests, String band, String metric, Double value) {
+        if (value == null) {
+            return;
+        }
+        digests.computeIfAbsent(key(band, metric), k -> new TDigest(compression)).add(value);
+    }
+
+    // the band the child was in during the given week, as sample() counted them
+    private String bandOf(Child child, LocalDate week) {
+        return childBands.computeIfAbsent(child.getId(), id -> {
+            LocalDate dateOfBirth = child.getDateOfBirth() != null ? child.getDateOfBirth()
+                    : shardDirectory.onShard(shardDirectory.shardOf(ShardDirectory.CHILD, id), true,
+                            () -> childRepo.findById(id).map(Child::getDateOfBirth).orElse(null));
+            return dateOfBirth == null ? null : ageBand(dateOfBirth, week);
+        });
+    }
+
+    public static String ageBand(LocalDate dateOfBirth) {
+        return ageBand(dateOfBirth, LocalDate.now());
+    }
+
+    /** The band a child born on dateOfBirth was in on the given day. */
+    public static String ageBand(LocalDate dateOfBirth, LocalDate on) {
+        int years = Period.between(dateOfBirth, on).getYears();
+        if (years < 5) return "0-4";
+        else if (years < 7) return "5-6";
+        else if (years < 9) return "7-8";
+        else if (years < 11) return "9-10";
+        else if (years < 13) return "11-12";
+        else return "13+";
+    }
+
+    private LocalDate oldestRetained() {
+        return weekStart(LocalDate.now()).minusWeeks(retainedWeeks);
+    }
+
+    private static LocalDate lastClosedWeek() {
+        return weekStart(LocalDate.now()).minusWeeks(1);
+    }
+
+    private static LocalDate weekStart(LocalDate date) {
+        return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    }
+
+    private static String key(String band, String metric) {
+        return band + "|" + metric;
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.HackathonServer.services;
+
+import com.example.HackathonServer.config.ShardRoutingDataSource;
+import com.example.HackathonServer.models.ChildSummary;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.sql.Date;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * The analytics side of the ingest/analytics bulkhead. Dashboard summaries
+ * are single-row reads of the child_summary tables (ChildSummaryProjector)
+ * run on a bounded executor against the analytics pool of the request's
+ * shard (DataSourceConfig), and the controllers return them as
+ * CompletableFutures so the Tomcat thread goes straight back to serving
+ * ingest. When the analytics queue is full the request is shed with 503
+ * rather than waiting; ingest never queues behind it.
+ */
+@Slf4j
+@Service
+public class DashboardAnalyticsService {
+
+    @Autowired
+    @Qualifier("analyticsDataSource")
+    private ShardRoutingDataSource analyticsDataSource;
+
+    @Value("${analytics.executor.threads:4}")
+    private int threads;
+    @Value("${analytics.executor.queue-capacity:200}")
+    private int queueCapacity;
+
+    private NamedParameterJdbcTemplate jdbc;
+    private ThreadPoolTaskExecutor executor;
+
+    @PostConstruct
+    void init() {
+        jdbc = new NamedParameterJdbcTemplate(analyticsDataSource);
+        executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("analytics-");
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.initialize();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    public <T> CompletableFuture<ResponseEntity<T>> submit(Supplier<ResponseEntity<T>> query) {
+        int shard = ShardRoutingDataSource.current(); // the request's shard, carried over to the analytics thread
+        try {
+            return CompletableFuture.supplyAsync(() -> ShardRoutingDataSource.on(shard, query), executor);
+        } catch (TaskRejectedException e) {
+            log.debug("Analytics queue full, shedding request");
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1").<T>build());
+        }
+    }
+
+    public boolean childExists(Long childId) {
+        Integer count = jdbc.queryForObject("select count(*) from child where id = :childId",
+                new MapSqlParameterSource("childId", childId), Integer.class);
+        return count != null && count > 0;
+    }
+
+    /**
+     * @param since null for all time; otherwise whole days after since's date are counted, so the last 7
+     *              days are today and the six days before it
+     */
+    public Map<String, Integer> moveTotals(Long childId, LocalDateTime since) {
+        Map<String, Integer> totals = new LinkedHashMap<>();
+        totals.put("jump", 0);
+        totals.put("squat", 0);
+        totals.put("clap", 0);
+        String sql = since == null
+                ? "select jumps, squats, claps from child_summary where child_id = :childId"
+                : "select sum(jumps) as jumps, sum(squats) as squats, sum(claps) as claps from child_summary_day " +
+                "where child_id = :childId and day > :sinceDay";
+        jdbc.query(sql, params(childId, since), rs -> {
+            totals.put("jump", rs.getInt("jumps"));
+            totals.put("squat", rs.getInt("squats"));
+            totals.put("clap", rs.getInt("claps"));
+        });
+        totals.put("totalMoves", totals.get("jump") + totals.get("squat") + totals.get("clap"));
+        return totals;
+    }
+
+    // mean session score x 100 over scored sessions started after since's date, 0 when there are none
+    public double averageScore(Long childId, LocalDateTime since) {
+        Map<String, Object> sums = jdbc.queryForMap("select sum(score_sum) as score_sum, sum(scored_sessions) as scored " +
+                "from child_summary_day where child_id = :childId and day > :sinceDay", params(childId, since));
+        Number scored = (Number) sums.get("scored");
+        if (scored == null || scored.longValue() == 0) {
+            return 0.0;
+        }
+        return ((Number) sums.get("score_sum")).doubleValue() / scored.longValue() * 100;
+    }
+
+    // minutes played in sessions started after since's date
+    public int totalDuration(Long childId, LocalDateTime since) {
+        Integer total = jdbc.queryForObject("select coalesce(sum(minutes_played), 0) from child_summary_day " +
+                "where child_id = :childId and day > :sinceDay", params(childId, since), Integer.class);
+        return total == null ? 0 : total;
+    }
+
+    /** The child's all-time summary row; null before the child has any activity. */
+    public ChildSummary summary(Long childId) {
+        List<ChildSummary> rows = jdbc.query("select * from child_summary where child_id = :childId",
+                params(childId, null), new BeanPropertyRowMapper<>(ChildSummary.class));
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    public static String grade(double average) {
+        if (average >= 90) return "A";
+        else if (average >= 80) return "B";
+        else if (average >= 70) return "C";
+        else if (average >= 60) return "D";
+        else return "F";
+    }
+
+    private static MapSqlParameterSource params(Long childId, LocalDateTime since) {
+        return new MapSqlParameterSource()
+                .addValue("childId", childId)
+                .addValue("sinceDay", since == null ? null : Date.valueOf(since.toLocalDate()));
+    }
+}
@@ -0,0 +1,251 @@
+package com.example.HackathonServer.services;
+
+import com.example.HackathonServer.config.ShardRoutingDataSource;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Deletes a parent or a child with everything under it using set-based
+ * DELETE ... LIMIT statements, leaves first (answers, move events, moves,
+ * anomalies, scores, sessions, homework schedules, homework, archived moves,
+ * summaries, weekly reports, children, parent), instead of letting JPA cascades load and remove every entity. Each chunk
+ * commits on its own, on an autocommit connection of the job's own, so undo
+ * logs and locks stay small however many moves a family has. Foreign key
+ * checks stay on: a failed run leaves a consistent remainder that a second
+ * delete finishes. A parent's children are listed by the job itself, again
+ * until none are left, so a child added meanwhile is not orphaned. Jobs run
+ * inline or on a small executor, reporting rows deleted per table as they go.
+ */
+@Slf4j
+@Service
+public class FamilyDeletionService {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private SyncService syncService;
+    @Autowired
+    private MoveArchiveService moveArchiveService;
+
+    @Value("${family-deletion.chunk-size:5000}")
+    private int chunkSize;
+    @Value("${family-deletion.threads:1}")
+    private int threads;
+    @Value("${family-deletion.keep-finished-minutes:60}")
+    private int keepFinishedMinutes;
+
+    private final Map<String, DeletionJob> jobs = new ConcurrentHashMap<>();
+    private ThreadPoolTaskExecutor executor;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class DeletionJob {
+        private String id;
+        private String scope; // PARENT or CHILD
+        private Long entityId;
+        private volatile String status; // QUEUED, RUNNING, DONE, FAILED
+        private volatile String table; // table being deleted from
+        private Map<String, Long> deleted;
+        private LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+        private volatile String error;
+    }
+
+    @PostConstruct
+    void init() {
+        executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("family-delete-");
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(100);
+        executor.initialize();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    /** Returns null when the parent does not exist on the current shard. */
+    public DeletionJob deleteParent(Long parentId, boolean async) {
+        Integer found = jdbcTemplate.queryForObject("select count(*) from parent where id = ?", Integer.class, parentId);
+        if (found == null || found == 0) {
+            return null;
+        }
+        return start("PARENT", parentId, async, deletion -> {
+            MapSqlParameterSource parent = new MapSqlParameterSource("parentId", parentId);
+            List<Long> childIds;
+            do { // until a pass finds no children; one added after the last pass makes the parent delete fail
+                childIds = deletion.named.queryForList("select id from child where parent_id = :parentId", parent,
+                        Long.class);
+                deleteChildren(deletion, childIds, parentId);
+            } while (!childIds.isEmpty());
+            deletion.chunked("parent", "delete from parent where id = :parentId", parent);
+        });
+    }
+
+    /** Returns null when the child does not exist or belongs to another parent. */
+    public DeletionJob deleteChild(Long parentId, Long childId, boolean async) {
+        Integer found = jdbcTemplate.queryForObject("select count(*) from child where id = ? and parent_id = ?",
+                Integer.class, childId, parentId);
+        if (found == null || found == 0) {
+            return null;
+        }
+        return start("CHILD", childId, async, deletion -> deleteChildren(deletion, List.of(childId), null));
+    }
+
+    public DeletionJob job(String id) {
+        return jobs.get(id);
+    }
+
+    private interface Steps {
+        void run(Deletion deletion);
+    }
+
+    private DeletionJob start(String scope, Long entityId, boolean async, Steps steps) {
+        LocalDateTime expired = LocalDateTime.now().minusMinutes(keepFinishedMinutes);
+        jobs.values().removeIf(j -> j.getFinishedAt() != null && j.getFinishedAt().isBefore(expired));
+        DeletionJob job = new DeletionJob(UUID.randomUUID().toString(), scope, entityId, "QUEUED", null,
+                new ConcurrentHashMap<>(), LocalDateTime.now(), null, null);
+        if (!async) {
+            execute(job, steps);
+            return job;
+        }
+        int shard = ShardRoutingDataSource.current(); // the job runs on another thread
+        jobs.put(job.getId(), job);
+        executor.execute(() -> ShardRoutingDataSource.on(shard, () -> {
+            try {
+                execute(job, steps);
+            } catch (RuntimeException e) {
+                // recorded on the job
+            }
+            return null;
+        }));
+        return job;
+    }
+
+    // a connection of its own in autocommit mode, even when called inside a transaction, so every chunk commits
+    private void execute(DeletionJob job, Steps steps) {
+        job.setStatus("RUNNING");
+        try {
+            try (Connection connection = dataSource.getConnection()) {
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(true);
+                try {
+                    JdbcTemplate single = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+                    steps.run(new Deletion(new NamedParameterJdbcTemplate(single), job));
+                } finally {
+                    connection.setAutoCommit(autoCommit);
+                }
+            } catch (SQLException e) {
+                throw new DataAccessResourceFailureException("Family deletion connection failed", e);
+            }
+            job.setTable(null);
+            job.setStatus("DONE");
+            log.info("Deleted {} {}: {}", job.getScope().toLowerCase(), job.getEntityId(), job.getDeleted());
+        } catch (RuntimeException e) {
+            job.setStatus("FAILED");
+            job.setError(e.getMessage());
+            log.warn("Deleting {} {} failed after {}", job.getScope().toLowerCase(), job.getEntityId(), job.getDeleted(), e);
+            throw e;
+        } finally {
+            job.setFinishedAt(LocalDateTime.now());
+        }
+    }
+
+    private void deleteChildren(Deletion deletion, List<Long> childIds, Long parentId) {
+        MapSqlParameterSource params = new MapSqlParameterSource("children", childIds.isEmpty() ? List.of(-1L) : childIds)
+                .addValue("parentId", parentId);
+        deletion.chunked("answer", "delete from answer where session_id in " +
+                "(select id from session where child_id in (:children))", params);
+        deletion.chunked("move_event", "delete from move_event where move_id in " +
+                "(select id from move where child_id in (:children))", params);
+        deletion.chunked("move", "delete from move where child_id in (:children)", params);
+        deletion.chunked("move_anomaly", "delete from move_anomaly where child_id in (:children)", params);
+        // sessions and scores point at each other: unlink before deleting either
+        deletion.unlinked("session", "update session set score_id = null where child_id in (:children) " +
+                "and score_id is not null", params);
+        deletion.chunked("score", "delete from score where session_id in " +
+                "(select id from session where child_id in (:children))", params);
+        deletion.chunked("session", "delete from session where child_id in (:children)", params);
+
+        deletion.chunked("homework_schedule", "delete from homework_schedule where child_id in (:children)", params);
+
+        // homework deletions are synced to devices, so each chunk's ids are read first and tombstoned
+        String homework = "child_id in (:children)" + (parentId != null ? " or parent_id = :parentId" : "");
+        while (true) {
+            List<Long[]> chunk = deletion.named.query("select id, child_id from homework where " + homework
+                    + " limit " + chunkSize, params, (rs, i) -> new Long[]{rs.getLong("id"), rs.getLong("child_id")});
+            if (chunk.isEmpty()) {
+                break;
+            }
+            syncService.recordDeletions(SyncService.HOMEWORK, chunk);
+            deletion.progress("homework", deletion.named.update("delete from homework where id in (:ids)",
+                    new MapSqlParameterSource("ids", chunk.stream().map(row -> row[0]).toList())));
+        }
+
+        for (Long childId : childIds) {
+            deletion.progress("move_archive_total", moveArchiveService.deleteChild(childId));
+        }
+        deletion.chunked("child_summary_day", "delete from child_summary_day where child_id in (:children)", params);
+        deletion.chunked("child_summary", "delete from child_summary where child_id in (:children)", params);
+        deletion.chunked("weekly_report", "delete from weekly_report where child_id in (:children)", params);
+        deletion.chunked("child", "delete from child where id in (:children)", params);
+    }
+
+    private class Deletion {
+        final NamedParameterJdbcTemplate named;
+        final DeletionJob job;
+
+        Deletion(NamedParameterJdbcTemplate named, DeletionJob job) {
+            this.named = named;
+            this.job = job;
+        }
+
+        void chunked(String table, String sql, MapSqlParameterSource params) {
+            int deleted;
+            do {
+                deleted = named.update(sql + " limit " + chunkSize, params);
+                progress(table, deleted);
+            } while (deleted >= chunkSize);
+        }
+
+        // like chunked, for updates that must finish before a delete; not counted as deleted rows
+        void unlinked(String table, String sql, MapSqlParameterSource params) {
+            job.setTable(table);
+            while (named.update(sql + " limit " + chunkSize, params) >= chunkSize) {
+                // next chunk
+            }
+        }
+
+        void progress(String table, long rows) {
+            job.setTable(table);
+            job.getDeleted().merge(table, rows, Long::sum);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.HackathonServer.services;
+
+import com.example.HackathonServer.models.Video;
+import com.example.HackathonServer.util.ChangeVersions;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Assigns one video to many children of a parent. Ownership is checked with a
+ * single IN query and all homework rows go in as one multi-row INSERT, so the
+ * cost is a handful of statements regardless of how many children there are.
+ * The new ids are read back by their change versions, which the insert
+ * reserved one per row: the driver's generated keys for a multi-row insert
+ * assume consecutive ids, which sharded servers (auto_increment_increment
+ * &gt; 1) do not hand out.
+ */
+@Service
+public class HomeworkAssignmentService {
+
+    public static final int MAX_CHILDREN = 500;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    @Autowired
+    private VideoCatalogService videoCatalogService;
+    @Autowired
+    private ChangeVersions changeVersions;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class AssignmentResult {
+        private Long childId;
+        private Long homeworkId;
+        private String status; //CREATED, NOT_FOUND
+    }
+
+    @Transactional
+    public List<AssignmentResult> assign(Long parentId, String title, String url, List<Long> childIds) {
+        Set<Long> requested = new LinkedHashSet<>(childIds);
+        requested.remove(null);
+        Set<Long> owned = new HashSet<>(namedParameterJdbcTemplate.queryForList(
+                "select id from child where parent_id = :parentId and id in (:childIds)",
+                new MapSqlParameterSource().addValue("parentId", parentId).addValue("childIds", requested),
+                Long.class));
+        List<Long> targets = requested.stream().filter(owned::contains).toList();
+
+        Map<Long, Long> homeworkIds = new HashMap<>(); // by child
+        if (!targets.isEmpty()) {
+            Video video = videoCatalogService.findOrCreate(title, url);
+            String sql = "insert into homework (title, video_id, child_id, parent_id, status, change_version, " +
+                    "assigned_at) values " + String.join(", ", Collections.nCopies(targets.size(), "(?, ?, ?, ?, ?, ?, ?)"));
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            long firstVersion = changeVersions.reserve(targets.size());
+            jdbcTemplate.update(connection -> {
+                PreparedStatement ps = connection.prepareStatement(sql);
+                int i = 1;
+                long version = firstVersion;
+                for (Long childId : targets) {
+                    ps.setString(i++, title);
+                    ps.setLong(i++, video.getId());
+                    ps.setLong(i++, childId);
+                    ps.setLong(i++, parentId);
+                    ps.setString(i++, "Pending");
+                    ps.setLong(i++, version++);
+                    ps.setTimestamp(i++, now);
+                }
+                return ps;
+            });
+            namedParameterJdbcTemplate.query("select id, child_id from homework where child_id in (:childIds) " +
+                            "and change_version between :first and :last",
+                    new MapSqlParameterSource().addValue("childIds", targets).addValue("first", firstVersion)
+                            .addValue("last", firstVersion + targets.size() - 1),
+                    rs -> {
+                        homeworkIds.put(rs.getLong("child_id"), rs.getLong("id"));
+                    });
+        }
+
+        List<AssignmentResult> results = new ArrayList<>(requested.size());
+        for (Long childId : requested) {
+            if (owned.contains(childId)) {
+                results.add(new AssignmentResult(childId, homeworkIds.get(childId), "CREATED"));
+            } else {
+                results.add(new AssignmentResult(childId, null, "NOT_FOUND"));
+            }
+        }
+        return results;
+    }
+}
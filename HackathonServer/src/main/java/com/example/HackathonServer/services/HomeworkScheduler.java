@@ -0,0 +1,244 @@
+package com.example.HackathonServer.services;
+
+import com.example.HackathonServer.config.ShardRoutingDataSource;
+import com.example.HackathonServer.models.HomeworkSchedule;
+import com.example.HackathonServer.repos.HomeworkScheduleRepo;
+import com.example.HackathonServer.util.TimingWheel;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Recurring homework ("every Monday at 8:00", "daily at 7:30"). Schedules
+ * live in homework_schedule with the time they are next due. The ones due
+ * within homework.schedule.horizon-minutes sit in an in-memory
+ * {@link TimingWheel}, refilled by a range scan on (active, next_run_at) every
+ * homework.schedule.refill-interval-ms, so the table is never polled as a
+ * whole and a tick only touches what is due.
+ * <p>
+ * A due entry claims its schedule by moving next_run_at forward with a
+ * compare-and-set update and creates the homework in the same transaction.
+ * The database stays the source of truth: a stale wheel entry (the schedule
+ * was deleted or already ran), a second instance or a reload after a restart
+ * finds next_run_at changed and does nothing. After downtime an overdue
+ * schedule is assigned once, not once per missed occurrence. Schedules made on
+ * another instance, or moved here by resharding, are picked up by the next
+ * refill.
+ * <p>
+ * Ticks and refills run on the scheduler's own threads rather than the
+ * shared @Scheduled one, which the nightly jobs hold for minutes; there a run
+ * would fire as late as the longest of them.
+ */
+@Slf4j
+@Service
+public class HomeworkScheduler {
+
+    public static final String DAILY = "DAILY";
+    public static final String WEEKLY = "WEEKLY";
+
+    @Autowired
+    private HomeworkScheduleRepo homeworkScheduleRepo;
+    @Autowired
+    private HomeworkAssignmentService homeworkAssignmentService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ShardDirectory shardDirectory;
+
+    @Value("${homework.schedule.tick-ms:1000}")
+    private long tickMillis;
+    @Value("${homework.schedule.slots:60}")
+    private int slots;
+    @Value("${homework.schedule.horizon-minutes:60}")
+    private int horizonMinutes;
+    @Value("${homework.schedule.refill-interval-ms:300000}")
+    private long refillIntervalMs;
+
+    // one run of one schedule; runAt is the next_run_at it claims
+    private record Due(int shard, long scheduleId, LocalDateTime runAt) {
+    }
+
+    private TimingWheel<Due> wheel;
+    private final Set<Due> pending = new HashSet<>(); // in the wheel or ready, so a refill does not add twice
+    private final ArrayDeque<Due> ready = new ArrayDeque<>(); // overdue when loaded
+    private final Object lock = new Object();
+    private ThreadPoolTaskScheduler scheduler;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class WheelStats {
+        private int scheduled;
+        private int ready;
+        private int levels;
+        private int horizonMinutes;
+    }
+
+    @PostConstruct
+    void init() {
+        wheel = new TimingWheel<>(tickMillis, slots, System.currentTimeMillis());
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setThreadNamePrefix("homework-schedule-");
+        scheduler.setPoolSize(2); // a slow refill scan does not hold up the tick
+        scheduler.initialize();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdown();
+    }
+
+    /** Validates the schedule, sets its first run and starts tracking it; the caller checks ownership. */
+    public HomeworkSchedule create(HomeworkSchedule schedule) {
+        if (schedule.getTitle() == null || schedule.getUrl() == null || schedule.getTimeOfDay() == null
+                || !(DAILY.equals(schedule.getFrequency()) || WEEKLY.equals(schedule.getFrequency()))
+                || (WEEKLY.equals(schedule.getFrequency()) && schedule.getDayOfWeek() == null)) {
+            throw new IllegalArgumentException("title, url, timeOfDay and frequency DAILY or WEEKLY (with dayOfWeek) are required");
+        }
+        schedule.setId(null);
+        if (DAILY.equals(schedule.getFrequency())) {
+            schedule.setDayOfWeek(null);
+        }
+        schedule.setTimeOfDay(schedule.getTimeOfDay().truncatedTo(ChronoUnit.MINUTES));
+        schedule.setNextRunAt(nextRun(schedule, LocalDateTime.now()));
+        schedule.setActive(true);
+        HomeworkSchedule saved = homeworkScheduleRepo.save(schedule);
+        track(new Due(ShardRoutingDataSource.current(), saved.getId(), saved.getNextRunAt()));
+        return saved;
+    }
+
+    /** The first run of the schedule strictly after `after`. */
+    public static LocalDateTime nextRun(HomeworkSchedule schedule, LocalDateTime after) {
+        LocalDateTime candidate = after.toLocalDate().atTime(schedule.getTimeOfDay());
+        if (WEEKLY.equals(schedule.getFrequency())) {
+            candidate = candidate.with(TemporalAdjusters.nextOrSame(schedule.getDayOfWeek()));
+            return candidate.isAfter(after) ? candidate : candidate.plusWeeks(1);
+        }
+        return candidate.isAfter(after) ? candidate : candidate.plusDays(1);
+    }
+
+    public WheelStats stats() {
+        synchronized (lock) {
+            return new WheelStats(wheel.size(), ready.size(), wheel.levels(), horizonMinutes);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        refill();
+        WheelStats stats = stats();
+        log.info("Loaded {} homework schedules due in the next {} minutes", stats.getScheduled() + stats.getReady(),
+                horizonMinutes);
+        scheduler.scheduleWithFixedDelay(this::tick, Duration.ofMillis(tickMillis));
+        scheduler.scheduleWithFixedDelay(this::refill, Instant.now().plusMillis(refillIntervalMs),
+                Duration.ofMillis(refillIntervalMs));
+    }
+
+    // schedules due before the end of the horizon, overdue ones included, on every shard
+    public void refill() {
+        Timestamp until = Timestamp.valueOf(LocalDateTime.now().plusMinutes(horizonMinutes));
+        for (int shard = 0; shard < shardDirectory.shardCount(); shard++) {
+            int s = shard;
+            try {
+                ShardRoutingDataSource.on(shard, () -> {
+                    jdbcTemplate.query("select id, next_run_at from homework_schedule where active = true " +
+                            "and next_run_at < ?", rs -> {
+                        track(new Due(s, rs.getLong("id"), rs.getTimestamp("next_run_at").toLocalDateTime()));
+                    }, until);
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                log.warn("Could not load homework schedules of shard {}", shard, e);
+            }
+        }
+    }
+
+    public void tick() {
+        List<Due> due = new ArrayList<>();
+        synchronized (lock) {
+            due.addAll(ready);
+            ready.clear();
+            wheel.advance(System.currentTimeMillis(), due::add);
+            due.forEach(pending::remove);
+        }
+        for (Due run : due) {
+            try {
+                LocalDateTime next = ShardRoutingDataSource.on(run.shard(), () -> assign(run));
+                if (next != null) {
+                    track(new Due(run.shard(), run.scheduleId(), next));
+                }
+            } catch (RuntimeException e) {
+                // next_run_at did not move; the next refill brings the run back
+                log.warn("Scheduled homework {} due {} failed", run.scheduleId(), run.runAt(), e);
+            }
+        }
+    }
+
+    private void track(Due due) {
+        if (due.runAt().isAfter(LocalDateTime.now().plusMinutes(horizonMinutes))) {
+            return; // a later refill loads it
+        }
+        long deadline = due.runAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        synchronized (lock) {
+            if (pending.add(due) && !wheel.add(deadline, due)) {
+                ready.add(due);
+            }
+        }
+    }
+
+    // claims the run and creates the homework; returns the schedule's next run, or null when there is nothing to do
+    private LocalDateTime assign(Due run) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        return transaction.execute(status -> {
+            HomeworkSchedule schedule = homeworkScheduleRepo.findById(run.scheduleId()).orElse(null);
+            if (schedule == null || !schedule.getActive() || !run.runAt().equals(schedule.getNextRunAt())) {
+                return null; // deleted, or this run was already made
+            }
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime next = nextRun(schedule, run.runAt().isAfter(now) ? run.runAt() : now);
+            int claimed = jdbcTemplate.update("update homework_schedule set next_run_at = ?, last_run_at = ? " +
+                            "where id = ? and active = true and next_run_at = ?", Timestamp.valueOf(next),
+                    Timestamp.valueOf(run.runAt()), run.scheduleId(), Timestamp.valueOf(run.runAt()));
+            if (claimed == 0) {
+                return null; // another instance got there first
+            }
+            HomeworkAssignmentService.AssignmentResult result = homeworkAssignmentService.assign(schedule.getParentId(),
+                    schedule.getTitle(), schedule.getUrl(), List.of(schedule.getChildId())).get(0);
+            if (!"CREATED".equals(result.getStatus())) {
+                jdbcTemplate.update("update homework_schedule set active = false where id = ?", run.scheduleId());
+                log.info("Homework schedule {} stopped: child {} is gone", run.scheduleId(), schedule.getChildId());
+                return null;
+            }
+            jdbcTemplate.update("update homework_schedule set last_homework_id = ? where id = ?",
+                    result.getHomeworkId(), run.scheduleId());
+            return next;
+        });
+    }
+}
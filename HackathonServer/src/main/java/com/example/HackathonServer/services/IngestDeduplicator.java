@@ -0,0 +1,105 @@
+package com.example.HackathonServer.services;
+
+import com.example.HackathonServer.util.BloomFilter;
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Idempotent inserts keyed by a client event id. The unique index on
+ * client_event_id is what actually rejects duplicates; the ring of per-window
+ * Bloom filters in front of it only decides whether the pre-insert lookup is
+ * worth doing. An id none of the recent windows has seen is inserted
+ * straight away (the common case), a possible repeat is looked up first, and
+ * an insert that still collides - a retry older than the ring, or one after
+ * a restart - falls back to returning the stored row.
+ */
+@Service
+public class IngestDeduplicator {
+
+    public static final int MAX_EVENT_ID_LENGTH = 64;
+
+    @Value("${ingest.dedup.window-minutes:10}")
+    private int windowMinutes;
+    @Value("${ingest.dedup.windows:6}")
+    private int windowCount;
+    @Value("${ingest.dedup.expected-per-window:200000}")
+    private long expectedPerWindow;
+
+    private BloomFilter[] windows;
+    private long currentWindow;
+
+    @Data
+    @AllArgsConstructor
+    public static class Result<T> {
+        private T value;
+        private boolean created;
+    }
+
+    @PostConstruct
+    void init() {
+        windows = new BloomFilter[windowCount];
+        for (int i = 0; i < windowCount; i++) {
+            windows[i] = new BloomFilter(expectedPerWindow, 0.01);
+        }
+        currentWindow = windowOf(System.currentTimeMillis());
+    }
+
+    /**
+     * @param namespace keeps ids of different entity types apart, e.g. "move"
+     * @param eventId   null means the client sent none; the insert then runs unconditionally
+     * @param existing  lookup by event id
+     * @param insert    performs the insert; must hit the unique index on a duplicate
+     */
+    public <T> Result<T> insertOnce(String namespace, String eventId, Supplier<Optional<T>> existing,
+                                    Supplier<T> insert) {
+        if (eventId == null) {
+            return new Result<>(insert.get(), true);
+        }
+        String key = namespace + ":" + eventId;
+        BloomFilter current = rotate();
+        if (mightHaveSeen(key)) {
+            Optional<T> stored = existing.get();
+            if (stored.isPresent()) {
+                return new Result<>(stored.get(), false);
+            }
+        }
+        try {
+            T created = insert.get();
+            current.put(key);
+            return new Result<>(created, true);
+        } catch (DataIntegrityViolationException e) {
+            current.put(key);
+            return new Result<>(existing.get().orElseThrow(() -> e), false);
+        }
+    }
+
+    private boolean mightHaveSeen(String key) {
+        for (BloomFilter window : windows) {
+            if (window.mightContain(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // clears windows that fell out of the ring and returns the one for "now"
+    private synchronized BloomFilter rotate() {
+        long now = windowOf(System.currentTimeMillis());
+        for (long w = Math.max(currentWindow + 1, now - windowCount + 1); w <= now; w++) {
+            windows[(int) (w % windowCount)].clear();
+        }
+        currentWindow = Math.max(currentWindow, now);
+        return windows[(int) (currentWindow % windowCount)];
+    }
+
+    private long windowOf(long millis) {
+        return millis / (windowMinutes * 60_000L);
+    }
+}
@@ -0,0 +1,457 @@
+package com.example.HackathonServer.services;
+
+import com.example.HackathonServer.dto.MoveDTO;
+import com.example.HackathonServer.dto.SessionDTO;
+import com.example.HackathonServer.repos.MoveRepo;
+import com.example.HackathonServer.util.MoveSegment;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Moves older than the retention age, one {@link MoveSegment} file per child
+ * and month under moves.archive.dir/yyyy-MM/, holding the moves and the
+ * sessions they belong to. move_archive lists the archived months of a shard
+ * and move_archive_total keeps per-type counts, so totals never open a file.
+ * The read methods put archived moves in front of live ones for ranges that
+ * reach back past the archive horizon (the end of the newest archived month),
+ * which is how the move endpoints keep answering for old ranges after their
+ * partitions are dropped. Months archived before segments existed are gzipped
+ * NDJSON; they stay readable and the compactor rewrites them as segments.
+ */
+@Slf4j
+@Service
+public class MoveArchiveService {
+
+    private static final String LEGACY_EXTENSION = ".ndjson.gz";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private MoveRepo moveRepo;
+    @Autowired
+    private ShardDirectory shardDirectory;
+
+    @Value("${moves.archive.dir:move-archive}")
+    private Path archiveDir;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ArchivedMove {
+        private Long id;
+        private Long childId;
+        private Long sessionId;
+        private String type;
+        private Integer videoOffsetSeconds;
+        private LocalDateTime createdAt;
+
+        MoveDTO toDTO() {
+            return new MoveDTO(id, sessionId, type, videoOffsetSeconds, createdAt);
+        }
+    }
+
+    /**
+     * Writes every row of one month's partition to per-child segments and
+     * records the month. Rows arrive ordered by child, so only one child's
+     * moves are held at a time; each segment is written to a temp file and
+     * renamed, so a rerun after a failure simply replaces it.
+     */
+    public long archive(YearMonth month, String partition) {
+        Path dir = monthDir(month);
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Map<Long, MoveSegment.SessionEntry> sessions = new HashMap<>();
+        jdbcTemplate.query("select id, video_id, created_at, ended_at from session where id in " +
+                "(select distinct session_id from move partition (" + partition + "))", rs -> {
+            MoveSegment.SessionEntry session = sessionEntry(rs.getLong("id"), rs.getObject("video_id", Long.class),
+                    rs.getTimestamp("created_at"), rs.getTimestamp("ended_at"));
+            sessions.put(session.id(), session);
+        });
+
+        JdbcTemplate streaming = new JdbcTemplate(dataSource);
+        streaming.setFetchSize(Integer.MIN_VALUE); // MySQL streams rows one at a time instead of buffering the month
+        Map<Long, Map<String, Long>> totals = new HashMap<>();
+        LocalDateTime monthStart = month.atDay(1).atStartOfDay();
+        ChildSegmentWriter writer = new ChildSegmentWriter(dir, sessions);
+        streaming.query("select id, child_id, session_id, type, video_offset_seconds, created_at from move partition ("
+                + partition + ") order by child_id, created_at, id", rs -> {
+            Long childId = rs.getLong("child_id");
+            Timestamp createdAt = rs.getTimestamp("created_at");
+            String type = rs.getString("type");
+            writer.add(childId, new MoveSegment.Row(rs.getLong("id"), rs.getObject("session_id", Long.class), type,
+                    rs.getObject("video_offset_seconds", Integer.class),
+                    createdAt == null ? monthStart : createdAt.toLocalDateTime()));
+            totals.computeIfAbsent(childId, id -> new HashMap<>())
+                    .merge(type == null ? "" : type.toUpperCase(), 1L, Long::sum);
+        });
+        writer.flush();
+
+        Date monthDate = Date.valueOf(month.atDay(1));
+        jdbcTemplate.update("delete from move_archive_total where month = ?", monthDate);
+        List<Object[]> rows = new ArrayList<>();
+        totals.forEach((childId, byType) -> byType.forEach((type, count) ->
+                rows.add(new Object[]{childId, monthDate, type, count})));
+        jdbcTemplate.batchUpdate("insert into move_archive_total (child_id, month, type, moves) values (?, ?, ?, ?)", rows);
+        jdbcTemplate.update("insert into move_archive (month, moves, children, archived_at) values (?, ?, ?, ?) " +
+                        "on duplicate key update moves = values(moves), children = values(children), archived_at = values(archived_at)",
+                monthDate, writer.written, totals.size(), Timestamp.valueOf(LocalDateTime.now()));
+        return writer.written;
+    }
+
+    /**
+     * Rewrites gzipped NDJSON months as segments. Session details come from
+     * the child's shard; sessions deleted since archiving are kept as bare ids.
+     */
+    @Scheduled(initialDelayString = "${moves.archive.compact-initial-delay-ms:120000}",
+            fixedDelayString = "${moves.archive.compact-interval-ms:3600000}")
+    public void compact() {
+        if (!Files.isDirectory(archiveDir)) {
+            return;
+        }
+        int compacted = 0;
+        try (DirectoryStream<Path> months = Files.newDirectoryStream(archiveDir, Files::isDirectory)) {
+            for (Path dir : months) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "child-*" + LEGACY_EXTENSION)) {
+                    for (Path legacy : files) {
+                        try {
+                            if (compactFile(legacy)) {
+                                compacted++;
+                            }
+                        } catch (RuntimeException | IOException e) {
+                            log.warn("Could not compact move archive {}", legacy, e);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Move archive compaction stopped", e);
+        }
+        if (compacted > 0) {
+            log.info("Compacted {} move archive files into segments", compacted);
+        }
+    }
+
+    private boolean compactFile(Path legacy) throws IOException {
+        String name = legacy.getFileName().toString();
+        Long childId = Long.valueOf(name.substring("child-".length(), name.length() - LEGACY_EXTENSION.length()));
+        List<ArchivedMove> moves = readLegacy(legacy);
+        if (moves.stream().anyMatch(m -> m.getCreatedAt() == null)) {
+            log.warn("Leaving {} as NDJSON: it has moves without createdAt", legacy);
+            return false;
+        }
+        List<Long> sessionIds = moves.stream().map(ArchivedMove::getSessionId).filter(Objects::nonNull)
+                .distinct().toList();
+        List<MoveSegment.SessionEntry> sessions = sessionIds.isEmpty() ? List.of() : shardDirectory.onShard(
+                shardDirectory.shardOf(ShardDirectory.CHILD, childId), true, () -> namedParameterJdbcTemplate.query(
+                        "select id, video_id, created_at, ended_at from session where id in (:ids)",
+                        new MapSqlParameterSource("ids", sessionIds),
+                        (rs, i) -> sessionEntry(rs.getLong("id"), rs.getObject("video_id", Long.class),
+                                rs.getTimestamp("created_at"), rs.getTimestamp("ended_at"))));
+        List<MoveSegment.Row> rows = moves.stream().map(m -> new MoveSegment.Row(m.getId(), m.getSessionId(),
+                m.getType(), m.getVideoOffsetSeconds(), m.getCreatedAt())).toList();
+        writeSegment(legacy.getParent(), childId, rows, sessions);
+        Files.delete(legacy);
+        return true;
+    }
+
+    /** Removes the child's archive files and totals; returns the number of total rows deleted. */
+    public int deleteChild(Long childId) {
+        for (LocalDate month : archivedMonths(childId)) {
+            Path dir = monthDir(YearMonth.from(month));
+            try {
+                Files.deleteIfExists(segmentFile(dir, childId));
+                Files.deleteIfExists(legacyFile(dir, childId));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return jdbcTemplate.update("delete from move_archive_total where child_id = ?", childId);
+    }
+
+    /**
+     * Archives one child's month that the current shard archived before the child arrived (ReshardingService):
+     * writes the segment, with sessions from the current shard, and the month's totals. The child must have no
+     * file for the month yet.
+     */
+    public void archiveChildMonth(Long childId, YearMonth month, List<MoveSegment.Row> rows) {
+        Path dir = monthDir(month);
+        if (Files.exists(segmentFile(dir, childId)) || Files.exists(legacyFile(dir, childId))) {
+            throw new IllegalStateException("Child " + childId + " already has an archive for " + month);
+        }
+        List<Long> sessionIds = rows.stream().map(MoveSegment.Row::sessionId).filter(Objects::nonNull)
+                .distinct().toList();
+        List<MoveSegment.SessionEntry> sessions = sessionIds.isEmpty() ? List.of() : namedParameterJdbcTemplate.query(
+                "select id, video_id, created_at, ended_at from session where id in (:ids)",
+                new MapSqlParameterSource("ids", sessionIds),
+                (rs, i) -> sessionEntry(rs.getLong("id"), rs.getObject("video_id", Long.class),
+                        rs.getTimestamp("created_at"), rs.getTimestamp("ended_at")));
+        try {
+            Files.createDirectories(dir);
+            writeSegment(dir, childId, rows, sessions);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Map<String, Long> byType = rows.stream().collect(Collectors.groupingBy(
+                row -> row.type() == null ? "" : row.type().toUpperCase(), Collectors.counting()));
+        Date monthDate = Date.valueOf(month.atDay(1));
+        List<Object[]> totals = new ArrayList<>();
+        byType.forEach((type, count) -> totals.add(new Object[]{childId, monthDate, type, count}));
+        jdbcTemplate.batchUpdate("insert into move_archive_total (child_id, month, type, moves) values (?, ?, ?, ?) " +
+                "on duplicate key update moves = values(moves)", totals);
+    }
+
+    /** Removes the child's file for one month; its totals are the caller's. */
+    public void deleteChildMonth(Long childId, YearMonth month) {
+        Path dir = monthDir(month);
+        try {
+            Files.deleteIfExists(segmentFile(dir, childId));
+            Files.deleteIfExists(legacyFile(dir, childId));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Start of the first month still in the move table, or null when nothing is archived. */
+    public LocalDateTime horizon() {
+        LocalDate newest = jdbcTemplate.queryForObject("select max(month) from move_archive", LocalDate.class);
+        return newest == null ? null : newest.plusMonths(1).atStartOfDay();
+    }
+
+    public List<ArchivedMove> read(Long childId, YearMonth month) {
+        return read(childId, month, null);
+    }
+
+    /** Moves of the child's month created at or after `from` (null for the whole month), oldest first. */
+    public List<ArchivedMove> read(Long childId, YearMonth month, LocalDateTime from) {
+        List<ArchivedMove> moves = new ArrayList<>();
+        forEach(childId, month, from, moves::add);
+        return moves;
+    }
+
+    /** The moves {@link #read(Long, YearMonth, LocalDateTime)} returns, streamed to the sink instead of collected. */
+    public void forEach(Long childId, YearMonth month, LocalDateTime from, Consumer<ArchivedMove> sink) {
+        Path dir = monthDir(month);
+        // the compactor writes the segment before deleting the NDJSON file, so look again if that file vanishes
+        for (int attempt = 0; ; attempt++) {
+            MoveSegment.Reader segment = openSegment(dir, childId);
+            if (segment != null) {
+                segment.forEach(from, null, row -> sink.accept(new ArchivedMove(row.id(), childId,
+                        row.sessionId(), row.type(), row.videoOffsetSeconds(), row.createdAt())));
+                return;
+            }
+            try {
+                forEachLegacy(legacyFile(dir, childId), m -> {
+                    if (from == null || m.getCreatedAt() == null || !m.getCreatedAt().isBefore(from)) {
+                        sink.accept(m);
+                    }
+                });
+                return;
+            } catch (NoSuchFileException e) {
+                if (attempt > 0) {
+                    return;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /** Archived moves of a child created at or after `from` (null for all), oldest month first. */
+    public List<MoveDTO> archivedMoves(Long childId, LocalDateTime from) {
+        List<MoveDTO> moves = new ArrayList<>();
+        for (LocalDate month : archivedMonths(childId)) {
+            if (from != null && month.plusMonths(1).atStartOfDay().isBefore(from)) {
+                continue;
+            }
+            read(childId, YearMonth.from(month), from).forEach(move -> moves.add(move.toDTO()));
+        }
+        return moves;
+    }
+
+    /** Same as MoveRepo.findDTOsByChildIdAndCreatedAtAfter, plus whatever of the range was archived. */
+    public List<MoveDTO> movesSince(Long childId, LocalDateTime since) {
+        List<MoveDTO> live = moveRepo.findDTOsByChildIdAndCreatedAtAfter(childId, since);
+        LocalDateTime horizon = horizon();
+        if (horizon == null || !since.isBefore(horizon)) {
+            return live;
+        }
+        List<MoveDTO> moves = new ArrayList<>();
+        archivedMoves(childId, since).stream().filter(m -> m.createdAt() == null || m.createdAt().isAfter(since))
+                .forEach(moves::add);
+        moves.addAll(live);
+        return moves;
+    }
+
+    /** Archived moves of those of the child's sessions that started before the horizon. */
+    public List<MoveDTO> archivedMovesOfSessions(Long childId, List<SessionDTO> sessions) {
+        LocalDateTime horizon = horizon();
+        if (horizon == null || childId == null) {
+            return List.of();
+        }
+        Set<Long> old = sessions.stream()
+                .filter(s -> s.createdAt() != null && s.createdAt().isBefore(horizon))
+                .map(SessionDTO::id)
+                .collect(Collectors.toSet());
+        if (old.isEmpty()) {
+            return List.of();
+        }
+        LocalDate from = sessions.stream().filter(s -> old.contains(s.id())).map(SessionDTO::createdAt)
+                .min(LocalDateTime::compareTo).orElseThrow().toLocalDate().withDayOfMonth(1);
+        List<MoveDTO> moves = new ArrayList<>();
+        for (LocalDate month : archivedMonths(childId)) {
+            if (month.isBefore(from)) {
+                continue;
+            }
+            MoveSegment.Reader segment = openSegment(monthDir(YearMonth.from(month)), childId);
+            if (segment != null && old.stream().noneMatch(segment::containsSession)) {
+                continue; // none of these sessions had moves that month
+            }
+            read(childId, YearMonth.from(month)).stream().filter(m -> old.contains(m.getSessionId()))
+                    .forEach(m -> moves.add(m.toDTO()));
+        }
+        return moves;
+    }
+
+    /** First days of the months in which the child has archived moves, oldest first. */
+    public List<LocalDate> archivedMonths(Long childId) {
+        return jdbcTemplate.queryForList(
+                "select distinct month from move_archive_total where child_id = ? order by month", LocalDate.class, childId);
+    }
+
+    private MoveSegment.Reader openSegment(Path dir, Long childId) {
+        try {
+            return MoveSegment.open(segmentFile(dir, childId));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private List<ArchivedMove> readLegacy(Path file) throws IOException {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file));
+             MappingIterator<ArchivedMove> lines = objectMapper.readerFor(ArchivedMove.class).readValues(in)) {
+            return lines.readAll();
+        }
+    }
+
+    // the file is opened before the first move is handed over, so a missing file fails before any output
+    private void forEachLegacy(Path file, Consumer<ArchivedMove> sink) throws IOException {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file));
+             MappingIterator<ArchivedMove> lines = objectMapper.readerFor(ArchivedMove.class).readValues(in)) {
+            while (lines.hasNextValue()) {
+                sink.accept(lines.nextValue());
+            }
+        }
+    }
+
+    private void writeSegment(Path dir, Long childId, List<MoveSegment.Row> rows,
+                              List<MoveSegment.SessionEntry> sessions) throws IOException {
+        Path temp = Files.createTempFile(dir, "child-" + childId, ".tmp");
+        try {
+            MoveSegment.write(temp, rows, sessions);
+            Files.move(temp, segmentFile(dir, childId), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    private Path monthDir(YearMonth month) {
+        return archiveDir.resolve(month.toString());
+    }
+
+    private static Path segmentFile(Path dir, Long childId) {
+        return dir.resolve("child-" + childId + MoveSegment.EXTENSION);
+    }
+
+    private static Path legacyFile(Path dir, Long childId) {
+        return dir.resolve("child-" + childId + LEGACY_EXTENSION);
+    }
+
+    private static MoveSegment.SessionEntry sessionEntry(long id, Long videoId, Timestamp createdAt, Timestamp endedAt) {
+        return new MoveSegment.SessionEntry(id, videoId, createdAt == null ? null : createdAt.toLocalDateTime(),
+                endedAt == null ? null : endedAt.toLocalDateTime());
+    }
+
+    private class ChildSegmentWriter {
+        final Path dir;
+        final Map<Long, MoveSegment.SessionEntry> sessions;
+        final List<MoveSegment.Row> rows = new ArrayList<>();
+        Long childId;
+        long written;
+
+        ChildSegmentWriter(Path dir, Map<Long, MoveSegment.SessionEntry> sessions) {
+            this.dir = dir;
+            this.sessions = sessions;
+        }
+
+        void add(Long childId, MoveSegment.Row row) {
+            if (!childId.equals(this.childId)) {
+                flush();
+                this.childId = childId;
+            }
+            rows.add(row);
+        }
+
+        void flush() {
+            if (rows.isEmpty()) {
+                return;
+            }
+            List<MoveSegment.SessionEntry> childSessions = rows.stream().map(MoveSegment.Row::sessionId)
+                    .filter(sessions::containsKey).distinct().map(sessions::get).toList();
+            try {
+                writeSegment(dir, childId, rows, childSessions);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            written += rows.size();
+            rows.clear();
+        }
+    }
+}
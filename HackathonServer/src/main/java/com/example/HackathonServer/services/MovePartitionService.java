@@ -0,0 +1,164 @@
+package com.example.HackathonServer.services;
+
+import com.example.HackathonServer.config.ShardRoutingDataSource;
+import com.example.HackathonServer.models.Move;
+import com.example.HackathonServer.repos.MoveRepo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps the move table RANGE-partitioned by month of created_at. The first
+ * run converts the plain table (MySQL wants the partition column in every
+ * unique key and allows no foreign keys on partitioned tables, so the primary
+ * key becomes (id, created_at), client event ids move to move_event, and the
+ * foreign keys go). Every run then adds partitions moves.partition.months-ahead
+ * months out by splitting the catch-all pfuture, and hands months older than
+ * moves.retention.months to MoveArchiveService before dropping them, which
+ * is a metadata change rather than a mass DELETE.
+ */
+@Slf4j
+@Service
+public class MovePartitionService {
+
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'uuuuMM");
+    private static final String FUTURE = "pfuture";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private MoveRepo moveRepo;
+    @Autowired
+    private MoveArchiveService moveArchiveService;
+    @Autowired
+    private ShardDirectory shardDirectory;
+
+    @Value("${moves.partition.enabled:true}")
+    private boolean enabled;
+    @Value("${moves.partition.months-ahead:2}")
+    private int monthsAhead;
+    @Value("${moves.retention.months:12}")
+    private int retentionMonths;
+
+    /** Stores a move and claims its client event id in the same transaction; a taken id rolls both back. */
+    @Transactional
+    public Move insert(Move move) {
+        Move saved = moveRepo.saveAndFlush(move);
+        if (saved.getClientEventId() != null) {
+            jdbcTemplate.update("insert into move_event (client_event_id, move_id, created_at) values (?, ?, ?)",
+                    saved.getClientEventId(), saved.getId(), Timestamp.valueOf(saved.getCreatedAt()));
+        }
+        return saved;
+    }
+
+    @Scheduled(initialDelayString = "${moves.partition.initial-delay-ms:60000}",
+            fixedDelayString = "${moves.partition.interval-ms:3600000}")
+    public void maintain() {
+        if (!enabled) {
+            return;
+        }
+        for (int shard = 0; shard < shardDirectory.shardCount(); shard++) {
+            try {
+                ShardRoutingDataSource.on(shard, () -> {
+                    maintainShard();
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                log.warn("Move partition maintenance failed on shard {}", shard, e);
+            }
+        }
+    }
+
+    private void maintainShard() {
+        YearMonth current = YearMonth.now();
+        TreeMap<YearMonth, String> partitions = partitions();
+        if (partitions.isEmpty()) {
+            convert(current);
+            partitions = partitions();
+        }
+        for (YearMonth month = partitions.lastKey().plusMonths(1); !month.isAfter(current.plusMonths(monthsAhead));
+             month = month.plusMonths(1)) {
+            jdbcTemplate.execute("alter table move reorganize partition " + FUTURE + " into (" + partition(month)
+                    + ", partition " + FUTURE + " values less than (maxvalue))");
+        }
+
+        YearMonth oldestKept = current.minusMonths(retentionMonths);
+        for (Map.Entry<YearMonth, String> entry : partitions.headMap(oldestKept).entrySet()) {
+            if (entry.getKey().equals(partitions.lastKey())) {
+                break; // never drop the last month partition; pfuture would then take its range
+            }
+            long archived = moveArchiveService.archive(entry.getKey(), entry.getValue());
+            jdbcTemplate.execute("alter table move drop partition " + entry.getValue());
+            jdbcTemplate.update("delete from move_event where created_at < ?",
+                    Timestamp.valueOf(entry.getKey().plusMonths(1).atDay(1).atStartOfDay()));
+            log.info("Archived {} moves of {} and dropped partition {}", archived, entry.getKey(), entry.getValue());
+        }
+    }
+
+    // month -> partition name of the month partitions; empty when the table is not partitioned yet
+    private TreeMap<YearMonth, String> partitions() {
+        TreeMap<YearMonth, String> partitions = new TreeMap<>();
+        jdbcTemplate.query("select partition_name from information_schema.partitions where table_schema = database() " +
+                "and table_name = 'move' and partition_name is not null", rs -> {
+            String name = rs.getString("partition_name");
+            if (!FUTURE.equals(name)) {
+                partitions.put(YearMonth.parse(name, PARTITION_NAME), name);
+            }
+        });
+        return partitions;
+    }
+
+    private void convert(YearMonth current) {
+        log.info("Partitioning the move table by month");
+        for (String fk : jdbcTemplate.queryForList("select constraint_name from information_schema.referential_constraints " +
+                "where constraint_schema = database() and table_name = 'move'", String.class)) {
+            jdbcTemplate.execute("alter table move drop foreign key `" + fk + "`");
+        }
+        for (String index : jdbcTemplate.queryForList("select distinct index_name from information_schema.statistics " +
+                "where table_schema = database() and table_name = 'move' and non_unique = 0 and index_name <> 'PRIMARY'",
+                String.class)) {
+            jdbcTemplate.execute("alter table move drop index `" + index + "`");
+        }
+        // claim the ids the dropped unique key used to guard; the earliest row keeps a duplicated id
+        jdbcTemplate.update("insert ignore into move_event (client_event_id, move_id, created_at) " +
+                "select client_event_id, id, created_at from move where client_event_id is not null order by id");
+        // the unique key on session_id that stood in for an index is gone; put plain ones in its place
+        Move.INDEXES.forEach((name, columns) -> {
+            Integer present = jdbcTemplate.queryForObject("select count(*) from information_schema.statistics " +
+                    "where table_schema = database() and table_name = 'move' and index_name = ?", Integer.class, name);
+            if (present == null || present == 0) {
+                jdbcTemplate.execute("alter table move add index " + name + " (" + columns + ")");
+            }
+        });
+        jdbcTemplate.update("update move set created_at = now(6) where created_at is null");
+        jdbcTemplate.execute("alter table move modify created_at datetime(6) not null, " +
+                "drop primary key, add primary key (id, created_at)");
+
+        LocalDateTime oldest = jdbcTemplate.queryForObject("select min(created_at) from move", LocalDateTime.class);
+        YearMonth first = oldest == null ? current : YearMonth.from(oldest);
+        List<String> definitions = new ArrayList<>();
+        for (YearMonth month = first; !month.isAfter(current.plusMonths(monthsAhead)); month = month.plusMonths(1)) {
+            definitions.add(partition(month));
+        }
+        definitions.add("partition " + FUTURE + " values less than (maxvalue)");
+        jdbcTemplate.execute("alter table move partition by range columns (created_at) (" +
+                String.join(", ", definitions) + ")");
+    }
+
+    private static String partition(YearMonth month) {
+        return "partition " + PARTITION_NAME.format(month) + " values less than ('" + month.plusMonths(1).atDay(1) + "')";
+    }
+}
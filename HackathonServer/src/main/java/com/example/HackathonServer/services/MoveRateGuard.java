@@ -0,0 +1,184 @@
+package com.example.HackathonServer.services;
+
+import com.example.HackathonServer.models.Move;
+import com.example.HackathonServer.models.MoveAnomaly;
+import com.example.HackathonServer.repos.MoveAnomalyRepo;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sliding-window move rate per session (per child for moves that arrive
+ * without a session). The window is split into fixed sub-windows; each is one
+ * long packing (tick &lt;&lt; 24 | count), bumped with a CAS, so the ingest path
+ * is a map lookup plus a handful of atomic ops and never locks. Moves beyond
+ * the configured rate are flagged (stored, and only recorded as an anomaly;
+ * the default), throttled (429) or dropped; over-rate counts are aggregated
+ * in memory and written to move_anomaly periodically. Callers check a move
+ * only once it is known to be new, so retries of a stored move never count.
+ */
+@Slf4j
+@Service
+public class MoveRateGuard {
+
+    public enum Action { ALLOW, FLAG, THROTTLE, DROP }
+
+    private static final int COUNT_BITS = 24;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    @Autowired
+    private MoveAnomalyRepo moveAnomalyRepo;
+
+    @Value("${moves.rate.window-ms:2000}")
+    private int windowMs;
+    @Value("${moves.rate.slots:10}")
+    private int slots;
+    // ~8 moves/s; fast clapping peaks around there, jumps and squats far below
+    @Value("${moves.rate.max-per-window:16}")
+    private int maxPerWindow;
+    @Value("${moves.rate.action:FLAG}")
+    private Action overLimitAction;
+
+    private long slotMs;
+    private final Map<Long, RateWindow> bySession = new ConcurrentHashMap<>();
+    private final Map<Long, RateWindow> byChild = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        slotMs = Math.max(10, windowMs / slots); // keeps tick << COUNT_BITS inside a long
+        if (overLimitAction == Action.ALLOW) {
+            overLimitAction = Action.FLAG;
+        }
+    }
+
+    private final class RateWindow {
+        final Long sessionId;
+        final Long childId;
+        final AtomicLongArray counts = new AtomicLongArray(slots);
+        volatile long lastTick;
+        // anomaly tally since the last flush
+        final LongAdder overLimit = new LongAdder();
+        final LongAccumulator peak = new LongAccumulator(Math::max, 0);
+        final AtomicLong firstOverMs = new AtomicLong(); // 0 until the first over-rate move since the last flush
+        volatile long lastOverMs;
+
+        RateWindow(Long sessionId, Long childId) {
+            this.sessionId = sessionId;
+            this.childId = childId;
+        }
+
+        // returns the number of moves in the window ending at tick, including this one
+        long increment(long tick) {
+            lastTick = tick;
+            int slot = (int) (tick % slots);
+            long packed;
+            long next;
+            do {
+                packed = counts.get(slot);
+                next = (packed >>> COUNT_BITS) == tick ? packed + 1 : (tick << COUNT_BITS) | 1;
+            } while (!counts.compareAndSet(slot, packed, next));
+            long total = 0;
+            for (int i = 0; i < slots; i++) {
+                long value = counts.get(i);
+                long slotTick = value >>> COUNT_BITS;
+                if (slotTick > tick - slots && slotTick <= tick) {
+                    total += value & COUNT_MASK;
+                }
+            }
+            return total;
+        }
+    }
+
+    public Action check(Move move) {
+        Long sessionId = move.getSession() == null ? null : move.getSession().getId();
+        Long childId = move.getChild() != null ? move.getChild().getId()
+                : move.getSession() != null && move.getSession().getChild() != null
+                ? move.getSession().getChild().getId() : null;
+        RateWindow window;
+        if (sessionId != null) {
+            window = bySession.computeIfAbsent(sessionId, id -> new RateWindow(id, childId));
+        } else if (childId != null) {
+            window = byChild.computeIfAbsent(childId, id -> new RateWindow(null, id));
+        } else {
+            return Action.ALLOW;
+        }
+        long now = System.currentTimeMillis();
+        long inWindow = window.increment(now / slotMs);
+        if (inWindow <= maxPerWindow) {
+            return Action.ALLOW;
+        }
+        window.firstOverMs.compareAndSet(0, now);
+        window.overLimit.increment();
+        window.peak.accumulate(inWindow);
+        window.lastOverMs = now;
+        return overLimitAction;
+    }
+
+    /** How long a throttled client should wait: until the oldest sub-window leaves the window. */
+    public long retryAfterSeconds() {
+        return Math.max(1, (slotMs + 999) / 1000);
+    }
+
+    @Scheduled(fixedDelayString = "${moves.rate.flush-interval-ms:30000}")
+    public void flush() {
+        long staleBefore = System.currentTimeMillis() / slotMs - 2L * slots;
+        List<MoveAnomaly> rows = new ArrayList<>();
+        List<Runnable> undo = new ArrayList<>();
+        for (Map<Long, RateWindow> windows : List.of(bySession, byChild)) {
+            windows.values().removeIf(window -> {
+                // first before the count: a move racing the flush then lands in this tally or in a fresh one
+                long first = window.firstOverMs.getAndSet(0);
+                long events = window.overLimit.sumThenReset();
+                long peak = window.peak.getThenReset();
+                if (events > 0) {
+                    long firstMs = first != 0 ? first : window.lastOverMs;
+                    rows.add(new MoveAnomaly(null, window.sessionId, window.childId, overLimitAction.name(), events,
+                            (int) peak, windowMs, toLocal(firstMs), toLocal(window.lastOverMs)));
+                    undo.add(() -> {
+                        window.firstOverMs.accumulateAndGet(firstMs, MoveRateGuard::earliest);
+                        window.overLimit.add(events);
+                        window.peak.accumulate(peak);
+                    });
+                    return false;
+                }
+                if (first != 0) {
+                    window.firstOverMs.accumulateAndGet(first, MoveRateGuard::earliest);
+                }
+                return window.lastTick < staleBefore;
+            });
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            moveAnomalyRepo.saveAll(rows);
+        } catch (DataAccessException e) {
+            log.warn("Move anomaly flush failed, keeping {} tallies for the next run", rows.size(), e);
+            undo.forEach(Runnable::run);
+        }
+    }
+
+    private static long earliest(long current, long restored) {
+        return current == 0 ? restored : Math.min(current, restored);
+    }
+
+    private static LocalDateTime toLocal(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+}
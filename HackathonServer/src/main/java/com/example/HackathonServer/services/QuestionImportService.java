@@ -0,0 +1,274 @@
+package com.example.HackathonServer.services;
+
+import com.example.HackathonServer.models.Question;
+import com.example.HackathonServer.repos.QuestionRepo;
+import com.example.HackathonServer.util.ChangeVersions;
+import com.example.HackathonServer.util.CsvReader;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Replaces the question set of one or many videos. Incoming questions are
+ * matched to existing rows by id, or by (question, timeToStop) when no id is
+ * given; the difference is applied as three JDBC batches (insert, update,
+ * delete) inside one transaction, so re-running the same import is a no-op.
+ */
+@Service
+public class QuestionImportService {
+
+    private static final String SELECT_EXISTING = "select id, video_id, question, time_to_stop, opt_a, opt_b, opt_c, " +
+            "correct_ans from question where video_id in (:videoIds)";
+    private static final String INSERT = "insert into question (video_id, question, time_to_stop, opt_a, opt_b, " +
+            "opt_c, correct_ans, change_version) values (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE = "update question set question = ?, time_to_stop = ?, opt_a = ?, opt_b = ?, " +
+            "opt_c = ?, correct_ans = ?, change_version = ? where id = ?";
+    private static final String DELETE = "delete from question where id = ?";
+    private static final String[] CSV_COLUMNS = {"videoId", "id", "question", "timeToStop", "optA", "optB", "optC", "correctAns"};
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    @Autowired
+    private QuestionRepo questionRepo;
+    @Autowired
+    private AnswerKeyCache answerKeyCache;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private SyncService syncService;
+    @Autowired
+    private ChangeVersions changeVersions;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class QuestionRow {
+        private Long videoId;
+        private Long id;
+        private String question;
+        private String timeToStop;
+        private String optA;
+        private String optB;
+        private String optC;
+        private String correctAns;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ImportResult {
+        private Long videoId;
+        private int inserted;
+        private int updated;
+        private int deleted;
+        private int unchanged;
+        private String error;
+    }
+
+    /** @throws IllegalArgumentException naming the problem when the set is invalid; nothing is changed then */
+    @Transactional
+    public List<Question> replaceQuestionSet(Long videoId, List<Question> questions) {
+        List<QuestionRow> rows = new ArrayList<>(questions.size());
+        for (Question q : questions) {
+            rows.add(new QuestionRow(videoId, q.getId(), q.getQuestion(), q.getTimeToStop(),
+                    q.getOptA(), q.getOptB(), q.getOptC(), q.getCorrectAns()));
+        }
+        Map<Long, List<QuestionRow>> sets = new HashMap<>();
+        sets.put(videoId, rows);
+        for (ImportResult result : apply(sets)) {
+            if (result.getError() != null) {
+                throw new IllegalArgumentException(result.getError());
+            }
+        }
+        return questionRepo.findByVideoId(videoId);
+    }
+
+    @Transactional
+    public List<ImportResult> importJson(InputStream body) throws IOException {
+        Map<Long, List<QuestionRow>> sets = new LinkedHashMap<>();
+        ObjectReader reader = objectMapper.readerFor(QuestionRow.class);
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("Expected a JSON array of questions");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                QuestionRow row = reader.readValue(parser);
+                sets.computeIfAbsent(row.getVideoId(), id -> new ArrayList<>()).add(row);
+            }
+        }
+        return apply(sets);
+    }
+
+    /** CSV with a header row naming the columns: videoId,id,question,timeToStop,optA,optB,optC,correctAns */
+    @Transactional
+    public List<ImportResult> importCsv(InputStream body) throws IOException {
+        Map<Long, List<QuestionRow>> sets = new LinkedHashMap<>();
+        CsvReader csv = new CsvReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        List<String> header = csv.next();
+        if (header == null) {
+            return List.of();
+        }
+        int[] index = new int[CSV_COLUMNS.length];
+        for (int i = 0; i < CSV_COLUMNS.length; i++) {
+            index[i] = indexOfIgnoreCase(header, CSV_COLUMNS[i]);
+        }
+        if (index[0] < 0 || index[2] < 0) {
+            throw new IllegalArgumentException("CSV header must contain videoId and question");
+        }
+        for (List<String> record = csv.next(); record != null; record = csv.next()) {
+            QuestionRow row = new QuestionRow(parseLong(field(record, index[0])), parseLong(field(record, index[1])),
+                    field(record, index[2]), field(record, index[3]), field(record, index[4]),
+                    field(record, index[5]), field(record, index[6]), field(record, index[7]));
+            sets.computeIfAbsent(row.getVideoId(), id -> new ArrayList<>()).add(row);
+        }
+        return apply(sets);
+    }
+
+    private List<ImportResult> apply(Map<Long, List<QuestionRow>> sets) {
+        List<ImportResult> results = new ArrayList<>();
+        sets.remove(null);
+        if (sets.isEmpty()) {
+            return results;
+        }
+        Set<Long> knownVideos = new HashSet<>(namedParameterJdbcTemplate.queryForList(
+                "select id from video where id in (:videoIds)",
+                new MapSqlParameterSource("videoIds", sets.keySet()), Long.class));
+        Map<Long, List<QuestionRow>> existing = new HashMap<>();
+        if (!knownVideos.isEmpty()) {
+            namedParameterJdbcTemplate.query(SELECT_EXISTING, new MapSqlParameterSource("videoIds", knownVideos),
+                    rs -> {
+                        QuestionRow row = new QuestionRow(rs.getLong("video_id"), rs.getLong("id"),
+                                rs.getString("question"), rs.getString("time_to_stop"), rs.getString("opt_a"),
+                                rs.getString("opt_b"), rs.getString("opt_c"), rs.getString("correct_ans"));
+                        existing.computeIfAbsent(row.getVideoId(), id -> new ArrayList<>()).add(row);
+                    });
+        }
+
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        List<Long[]> tombstones = new ArrayList<>();
+        for (Map.Entry<Long, List<QuestionRow>> set : sets.entrySet()) {
+            Long videoId = set.getKey();
+            ImportResult result = new ImportResult();
+            result.setVideoId(videoId);
+            results.add(result);
+            if (!knownVideos.contains(videoId)) {
+                result.setError("Video not found");
+                continue;
+            }
+            String invalid = validate(set.getValue());
+            if (invalid != null) {
+                result.setError(invalid);
+                continue;
+            }
+            Map<Long, QuestionRow> byId = new HashMap<>();
+            Map<String, QuestionRow> byNaturalKey = new HashMap<>();
+            for (QuestionRow row : existing.getOrDefault(videoId, List.of())) {
+                byId.put(row.getId(), row);
+                byNaturalKey.putIfAbsent(naturalKey(row), row);
+            }
+            for (QuestionRow row : set.getValue()) {
+                QuestionRow match = row.getId() != null ? byId.get(row.getId()) : byNaturalKey.get(naturalKey(row));
+                if (match == null) {
+                    inserts.add(new Object[]{videoId, row.getQuestion(), row.getTimeToStop(), row.getOptA(),
+                            row.getOptB(), row.getOptC(), row.getCorrectAns(), changeVersions.next()});
+                    result.inserted++;
+                    continue;
+                }
+                byId.remove(match.getId());
+                byNaturalKey.remove(naturalKey(match));
+                if (sameContent(match, row)) {
+                    result.unchanged++;
+                } else {
+                    updates.add(new Object[]{row.getQuestion(), row.getTimeToStop(), row.getOptA(), row.getOptB(),
+                            row.getOptC(), row.getCorrectAns(), changeVersions.next(), match.getId()});
+                    result.updated++;
+                }
+            }
+            for (Long staleId : byId.keySet()) {
+                deletes.add(new Object[]{staleId});
+                tombstones.add(new Long[]{staleId, videoId});
+                result.deleted++;
+            }
+        }
+        if (!deletes.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE, deletes);
+            syncService.recordDeletions(SyncService.QUESTION, tombstones);
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE, updates);
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT, inserts);
+        }
+        results.stream().filter(r -> r.getError() == null).forEach(r -> answerKeyCache.invalidate(r.getVideoId()));
+        return results;
+    }
+
+    private static String validate(List<QuestionRow> rows) {
+        for (QuestionRow row : rows) {
+            if (row.getQuestion() == null || row.getTimeToStop() == null || row.getOptA() == null
+                    || row.getOptB() == null || row.getOptC() == null || row.getCorrectAns() == null) {
+                return "Question, timeToStop, optA, optB, optC and correctAns are required";
+            }
+        }
+        return null;
+    }
+
+    private static String naturalKey(QuestionRow row) {
+        return row.getQuestion().trim().toLowerCase() + "\u0000" + row.getTimeToStop().trim();
+    }
+
+    private static boolean sameContent(QuestionRow a, QuestionRow b) {
+        return Objects.equals(a.getQuestion(), b.getQuestion()) && Objects.equals(a.getTimeToStop(), b.getTimeToStop())
+                && Objects.equals(a.getOptA(), b.getOptA()) && Objects.equals(a.getOptB(), b.getOptB())
+                && Objects.equals(a.getOptC(), b.getOptC()) && Objects.equals(a.getCorrectAns(), b.getCorrectAns());
+    }
+
+    private static int indexOfIgnoreCase(List<String> header, String column) {
+        for (int i = 0; i < header.size(); i++) {
+            if (header.get(i).trim().equalsIgnoreCase(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String field(List<String> record, int index) {
+        if (index < 0 || index >= record.size()) {
+            return null;
+        }
+        String value = record.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static Long parseLong(String value) {
+        return value == null ? null : Long.valueOf(value);
+    }
+}
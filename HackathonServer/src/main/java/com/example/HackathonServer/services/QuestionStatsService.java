@@ -0,0 +1,197 @@
+package com.example.HackathonServer.services;
+
+import com.example.HackathonServer.models.QuestionStats;
+import com.example.HackathonServer.repos.QuestionStatsRepo;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-question answer outcomes. Scoring bumps LongAdder counters (striped, so
+ * concurrent answers to the same question do not contend); a scheduled flush
+ * drains the deltas and adds them to question_stats in one JDBC batch.
+ * Reads combine the stored row with whatever has not been flushed yet.
+ */
+@Slf4j
+@Service
+public class QuestionStatsService {
+
+    private static final String UPSERT = "insert into question_stats " +
+            "(question_id, video_id, attempts, correct, latency_sum_ms, latency_count, " +
+            "option_a, option_b, option_c, option_other, updated_at) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "on duplicate key update attempts = attempts + values(attempts), correct = correct + values(correct), " +
+            "latency_sum_ms = latency_sum_ms + values(latency_sum_ms), latency_count = latency_count + values(latency_count), " +
+            "option_a = option_a + values(option_a), option_b = option_b + values(option_b), " +
+            "option_c = option_c + values(option_c), option_other = option_other + values(option_other), " +
+            "updated_at = values(updated_at)";
+
+    @Autowired
+    private QuestionStatsRepo questionStatsRepo;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final Map<Long, Counters> pending = new ConcurrentHashMap<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class QuestionStatsDTO {
+        private Long questionId;
+        private long attempts;
+        private long correct;
+        private double correctRate;
+        private Double meanLatencyMs;
+        private Map<String, Long> options;
+    }
+
+    private static class Counters {
+        final Long videoId;
+        final LongAdder attempts = new LongAdder();
+        final LongAdder correct = new LongAdder();
+        final LongAdder latencySumMs = new LongAdder();
+        final LongAdder latencyCount = new LongAdder();
+        final LongAdder[] options = {new LongAdder(), new LongAdder(), new LongAdder(), new LongAdder()};
+
+        Counters(Long videoId) {
+            this.videoId = videoId;
+        }
+
+        // [attempts, correct, latencySum, latencyCount, a, b, c, other]
+        long[] drain() {
+            return new long[]{attempts.sumThenReset(), correct.sumThenReset(), latencySumMs.sumThenReset(),
+                    latencyCount.sumThenReset(), options[0].sumThenReset(), options[1].sumThenReset(),
+                    options[2].sumThenReset(), options[3].sumThenReset()};
+        }
+
+        long[] peek() {
+            return new long[]{attempts.sum(), correct.sum(), latencySumMs.sum(), latencyCount.sum(),
+                    options[0].sum(), options[1].sum(), options[2].sum(), options[3].sum()};
+        }
+
+        void restore(long[] delta) {
+            attempts.add(delta[0]);
+            correct.add(delta[1]);
+            latencySumMs.add(delta[2]);
+            latencyCount.add(delta[3]);
+            for (int i = 0; i < options.length; i++) {
+                options[i].add(delta[4 + i]);
+            }
+        }
+    }
+
+    /** @param option 0..2 for options A..C, -1 for anything else */
+    public void record(Long videoId, Long questionId, boolean correct, int option, Integer latencyMs) {
+        Counters counters = pending.computeIfAbsent(questionId, id -> new Counters(videoId));
+        counters.attempts.increment();
+        if (correct) {
+            counters.correct.increment();
+        }
+        if (latencyMs != null && latencyMs >= 0) {
+            counters.latencySumMs.add(latencyMs);
+            counters.latencyCount.increment();
+        }
+        counters.options[option >= 0 && option < 3 ? option : 3].increment();
+    }
+
+    public List<QuestionStatsDTO> statsForVideo(Long videoId) {
+        Map<Long, long[]> totals = new LinkedHashMap<>();
+        for (QuestionStats row : questionStatsRepo.findByVideoIdOrderByQuestionId(videoId)) {
+            totals.put(row.getQuestionId(), new long[]{row.getAttempts(), row.getCorrect(), row.getLatencySumMs(),
+                    row.getLatencyCount(), row.getOptionA(), row.getOptionB(), row.getOptionC(), row.getOptionOther()});
+        }
+        pending.forEach((questionId, counters) -> {
+            if (!videoId.equals(counters.videoId)) {
+                return;
+            }
+            long[] delta = counters.peek();
+            long[] total = totals.computeIfAbsent(questionId, id -> new long[delta.length]);
+            for (int i = 0; i < delta.length; i++) {
+                total[i] += delta[i];
+            }
+        });
+        List<QuestionStatsDTO> stats = new ArrayList<>();
+        totals.forEach((questionId, t) -> {
+            Map<String, Long> options = new LinkedHashMap<>();
+            options.put("a", t[4]);
+            options.put("b", t[5]);
+            options.put("c", t[6]);
+            options.put("other", t[7]);
+            stats.add(new QuestionStatsDTO(questionId, t[0], t[1], t[0] > 0 ? (double) t[1] / t[0] : 0.0,
+                    t[3] > 0 ? (double) t[2] / t[3] : null, options));
+        });
+        return stats;
+    }
+
+    /**
+     * For merged videos: moves each question's stored and unflushed stats to
+     * the question it maps to (itself when the question only changes video),
+     * filed under videoId.
+     */
+    public void merge(Map<Long, Long> questions, Long videoId) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        questions.forEach((from, to) -> {
+            if (from.equals(to)) {
+                jdbcTemplate.update("update question_stats set video_id = ? where question_id = ?", videoId, from);
+            } else {
+                for (QuestionStats row : questionStatsRepo.findAllById(List.of(from))) {
+                    jdbcTemplate.update(UPSERT, to, videoId, row.getAttempts(), row.getCorrect(), row.getLatencySumMs(),
+                            row.getLatencyCount(), row.getOptionA(), row.getOptionB(), row.getOptionC(),
+                            row.getOptionOther(), now);
+                }
+                jdbcTemplate.update("delete from question_stats where question_id = ?", from);
+            }
+            Counters unflushed = pending.remove(from);
+            if (unflushed != null) {
+                pending.computeIfAbsent(to, id -> new Counters(videoId)).restore(unflushed.drain());
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${question-stats.flush-interval-ms:15000}")
+    public void flush() {
+        List<Long> questionIds = new ArrayList<>();
+        List<long[]> deltas = new ArrayList<>();
+        pending.forEach((questionId, counters) -> {
+            long[] delta = counters.drain();
+            if (delta[0] > 0) {
+                questionIds.add(questionId);
+                deltas.add(delta);
+            } else {
+                counters.restore(delta); //raced with a record() in progress
+            }
+        });
+        if (questionIds.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> batch = new ArrayList<>(questionIds.size());
+        for (int i = 0; i < questionIds.size(); i++) {
+            long[] d = deltas.get(i);
+            batch.add(new Object[]{questionIds.get(i), pending.get(questionIds.get(i)).videoId,
+                    d[0], d[1], d[2], d[3], d[4], d[5], d[6], d[7], now});
+        }
+        try {
+            jdbcTemplate.batchUpdate(UPSERT, batch);
+        } catch (DataAccessException e) {
+            log.warn("Question stats flush failed, keeping {} deltas for the next run", questionIds.size(), e);
+            for (int i = 0; i < questionIds.size(); i++) {
+                pending.get(questionIds.get(i)).restore(deltas.get(i));
+            }
+        }
+    }
+}
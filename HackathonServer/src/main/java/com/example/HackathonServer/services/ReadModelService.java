@@ -0,0 +1,82 @@
+package com.example.HackathonServer.services;
+
+import com.example.HackathonServer.dto.MoveDTO;
+import com.example.HackathonServer.dto.QuestionDTO;
+import com.example.HackathonServer.dto.SessionDTO;
+import com.example.HackathonServer.dto.VideoDTO;
+import com.example.HackathonServer.repos.MoveRepo;
+import com.example.HackathonServer.repos.QuestionRepo;
+import com.example.HackathonServer.repos.SessionRepo;
+import com.example.HackathonServer.repos.VideoRepo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Read side of the video and session endpoints. Each response is built from
+ * constructor-expression queries (one for the parents, one for the children,
+ * grouped in memory), so serialization only ever sees plain records and never
+ * walks a lazy association. Sessions older than the move archive horizon get
+ * their moves from MoveArchiveService.
+ */
+@Service
+@Transactional(readOnly = true)
+public class ReadModelService {
+
+    @Autowired
+    private VideoRepo videoRepo;
+    @Autowired
+    private QuestionRepo questionRepo;
+    @Autowired
+    private SessionRepo sessionRepo;
+    @Autowired
+    private MoveRepo moveRepo;
+    @Autowired
+    private MoveArchiveService moveArchiveService;
+
+    public List<VideoDTO> videos() {
+        Map<Long, List<QuestionDTO>> questions = questionRepo.findAllDTOs().stream()
+                .filter(q -> q.videoId() != null)
+                .collect(Collectors.groupingBy(QuestionDTO::videoId));
+        return videoRepo.findAllDTOs().stream()
+                .map(v -> v.withQuestions(questions.getOrDefault(v.id(), List.of())))
+                .toList();
+    }
+
+    public Optional<VideoDTO> video(Long id) {
+        return videoRepo.findDTOById(id).map(v -> v.withQuestions(questionRepo.findDTOsByVideoId(id)));
+    }
+
+    public List<SessionDTO> sessions() {
+        return withMoves(sessionRepo.findAllDTOs(), moveRepo.findAllDTOs());
+    }
+
+    public Optional<SessionDTO> session(Long id) {
+        return sessionRepo.findDTOById(id).map(s -> {
+            List<MoveDTO> moves = new ArrayList<>(moveArchiveService.archivedMovesOfSessions(
+                    sessionRepo.findChildIdById(id).orElse(null), List.of(s)));
+            moves.addAll(moveRepo.findDTOsBySessionId(id));
+            return s.withMoves(moves);
+        });
+    }
+
+    public List<SessionDTO> recentSessions(Long childId) {
+        List<SessionDTO> sessions = sessionRepo.findDTOsByChildIdNewestFirst(childId);
+        List<MoveDTO> moves = new ArrayList<>(moveArchiveService.archivedMovesOfSessions(childId, sessions));
+        moves.addAll(moveRepo.findDTOsBySessionChildId(childId));
+        return withMoves(sessions, moves);
+    }
+
+    private static List<SessionDTO> withMoves(List<SessionDTO> sessions, List<MoveDTO> moves) {
+        Map<Long, List<MoveDTO>> bySession = moves.stream().collect(Collectors.groupingBy(MoveDTO::sessionId));
+        return sessions.stream()
+                .map(s -> s.withMoves(bySession.getOrDefault(s.id(), List.of())))
+                .toList();
+    }
+}
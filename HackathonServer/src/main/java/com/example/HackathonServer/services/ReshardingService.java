@@ -0,0 +1,448 @@
+package com.example.HackathonServer.services;
+
+import com.example.HackathonServer.config.ShardRoutingDataSource;
+import com.example.HackathonServer.util.MoveSegment;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Moves one parent, with their children, homework and homework schedules,
+ * sessions, scores, moves, answers and the rows derived from them (move
+ * dedup keys, rate anomalies, archive totals, child summaries, weekly reports
+ * and homework tombstones), to another shard. Rows keep their ids, so the
+ * parent and children are listed in the shard directory (their ids still
+ * name the old shard) and the directory finds the rest from there.
+ * The videos and questions they point at are copied too when the target
+ * lacks them; a video whose URL key is already taken there goes in without a
+ * key and is merged by the next /admin/videos/dedup on that shard.
+ * <p>
+ * Order: fingerprint the family on the source (per table, the row count and
+ * a sum of CRC32s over every column), copy to the target, publish the new
+ * placements, then in one source transaction lock the family's rows,
+ * fingerprint them again and delete them. Any insert, update or delete made
+ * while copying changes the fingerprint; the copies and placements are then
+ * undone and the move is reported as ABORTED; run it again. The locks keep
+ * writes out between the second fingerprint and the delete. Other instances pick up the placements within
+ * sharding.directory.refresh-ms, so move parents while they are idle.
+ * <p>
+ * Rows are copied table by table in keyset-paged chunks of
+ * resharding.chunk-size (read a page on the source, insert it on the target)
+ * and deleted in chunks of the same size, so memory does not grow with the
+ * family's history.
+ * <p>
+ * Archived moves follow the target's archive horizon (MoveArchiveService):
+ * live moves from months the target has already archived are written to
+ * segment files for the target, and months the source archived but the
+ * target still keeps live are read back from their files into the target's
+ * move table; those files are removed once the source is cleared.
+ */
+@Slf4j
+@Service
+public class ReshardingService {
+
+    private static final String CHILDREN = "select id from child where parent_id = ?";
+    private static final String SESSIONS = "select s.id from session s join child c on c.id = s.child_id " +
+            "where c.parent_id = ?";
+
+    private static final String MOVES = "select m.id from move m join child c on c.id = m.child_id " +
+            "where c.parent_id = ?";
+
+    // one table of a family: its key for paging and the rows that belong to the parent (each ? is the parent id)
+    private record Part(String table, String key, String where) {
+
+        Object[] args(Long parentId, Object... more) {
+            List<Object> args = new ArrayList<>(Collections.nCopies((int) where.chars().filter(c -> c == '?').count(),
+                    parentId));
+            args.addAll(List.of(more));
+            return args.toArray();
+        }
+    }
+
+    // parent first; deletes run in reverse, so a part is gone before the rows its condition looks through
+    private static final List<Part> PARTS = List.of(
+            new Part("parent", "id", "id = ?"),
+            new Part("child", "id", "parent_id = ?"),
+            new Part("homework", "id", "parent_id = ?"),
+            new Part("homework_schedule", "id", "parent_id = ?"),
+            new Part("session", "id", "child_id in (" + CHILDREN + ")"),
+            new Part("score", "id", "session_id in (" + SESSIONS + ")"),
+            new Part("move", "id", "child_id in (" + CHILDREN + ")"),
+            new Part("move_event", "client_event_id", "move_id in (" + MOVES + ")"),
+            new Part("move_anomaly", "id", "child_id in (" + CHILDREN + ") or session_id in (" + SESSIONS + ")"),
+            new Part("move_archive_total", "id", "child_id in (" + CHILDREN + ")"),
+            new Part("answer", "id", "session_id in (" + SESSIONS + ")"),
+            new Part("child_summary", "child_id", "child_id in (" + CHILDREN + ")"),
+            new Part("child_summary_day", "id", "child_id in (" + CHILDREN + ")"),
+            new Part("weekly_report", "id", "child_id in (" + CHILDREN + ")"),
+            new Part("change_tombstone", "id", "entity_type = 'HOMEWORK' and scope_id in (" + CHILDREN + ")"));
+    // copied only for months the target has archived too; the rest become live rows there
+    private static final Set<String> BY_HORIZON = Set.of("move", "move_archive_total");
+    // the rest of the family is found through these, see ShardDirectory
+    private static final Map<String, String> PLACEMENT_TYPES = Map.of(
+            "parent", ShardDirectory.PARENT,
+            "child", ShardDirectory.CHILD);
+
+    @Autowired
+    private ShardDirectory shardDirectory;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    @Autowired
+    private MoveArchiveService moveArchiveService;
+
+    @Value("${resharding.chunk-size:1000}")
+    private int chunkSize;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class MigrationReport {
+        private Long parentId;
+        private int fromShard;
+        private int toShard;
+        private String status; //MOVED, ALREADY_THERE, ABORTED
+        private Map<String, Integer> rows;
+        private int videosCopied;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Misplacement {
+        private Long parentId;
+        private String username;
+        private int shard;
+        private int targetShard;
+    }
+
+    /** Parents whose shard differs from where the hash ring would place them now, e.g. after adding a shard. */
+    public List<Misplacement> misplaced(int limit) {
+        List<Misplacement> found = shardDirectory.scatter(() -> {
+            int shard = ShardRoutingDataSource.current();
+            List<Misplacement> here = new ArrayList<>();
+            jdbcTemplate.query("select id, username from parent", rs -> {
+                int target = shardDirectory.placeParent(rs.getString("username"));
+                if (target != shard && here.size() < limit) {
+                    here.add(new Misplacement(rs.getLong("id"), rs.getString("username"), shard, target));
+                }
+            });
+            return here;
+        });
+        return found.size() > limit ? found.subList(0, limit) : found;
+    }
+
+    /** @param targetShard null to use the hash ring's placement; returns null when the parent does not exist */
+    public MigrationReport migrate(Long parentId, Integer targetShard) {
+        int source = shardDirectory.shardOf(ShardDirectory.PARENT, parentId);
+        List<String> username = shardDirectory.onShard(source, true, () -> jdbcTemplate.queryForList(
+                "select username from parent where id = ?", String.class, parentId));
+        if (username.isEmpty()) {
+            return null;
+        }
+        int target = targetShard != null ? targetShard : shardDirectory.placeParent(username.get(0));
+        if (target < 0 || target >= shardDirectory.shardCount()) {
+            throw new IllegalArgumentException("No shard " + target);
+        }
+        if (target == source) {
+            return new MigrationReport(parentId, source, target, "ALREADY_THERE",
+                    rows(shardDirectory.onShard(source, true, () -> fingerprint(parentId, false))), 0);
+        }
+
+        Map<String, Fingerprint> before = shardDirectory.onShard(source, true, () -> fingerprint(parentId, false));
+        Map<String, Integer> rows = rows(before);
+        LocalDateTime horizon = shardDirectory.onShard(target, true, moveArchiveService::horizon);
+        int videosCopied;
+        List<Long> childIds;
+        List<ChildMonth> archivedHere = new ArrayList<>();
+        List<ChildMonth> unarchived;
+        try {
+            videosCopied = copyVideos(parentId, source, target);
+            for (Part part : PARTS) {
+                if (!BY_HORIZON.contains(part.table()) || horizon == null) {
+                    copy(part, parentId, source, target, "", null);
+                } else if (part.table().equals("move")) {
+                    copy(part, parentId, source, target, " and created_at >= ?", Timestamp.valueOf(horizon));
+                } else {
+                    copy(part, parentId, source, target, " and month < ?", Date.valueOf(horizon.toLocalDate()));
+                }
+            }
+            archiveBeforeHorizon(parentId, horizon, source, target, archivedHere);
+            unarchived = unarchiveAfterHorizon(parentId, horizon, source, target);
+            childIds = shardDirectory.onShard(target, true, () -> jdbcTemplate.queryForList(CHILDREN, Long.class,
+                    parentId));
+        } catch (RuntimeException e) {
+            undoCopy(parentId, target, archivedHere);
+            throw e;
+        }
+        Map<String, List<Long>> placed = Map.of("parent", List.of(parentId), "child", childIds);
+        PLACEMENT_TYPES.forEach((table, type) -> shardDirectory.recordPlacements(type, placed.get(table), target));
+        boolean deleted;
+        try {
+            deleted = shardDirectory.onShard(source, false, () -> {
+                if (!fingerprint(parentId, true).equals(before)) {
+                    return false; // written to while we copied
+                }
+                deleteFamily(parentId);
+                return true;
+            });
+        } catch (RuntimeException e) {
+            undo(parentId, placed, source, target, archivedHere);
+            throw e;
+        }
+        if (!deleted) {
+            undo(parentId, placed, source, target, archivedHere);
+            log.info("Moving parent {} from shard {} to {} aborted: source changed during the copy", parentId, source, target);
+            return new MigrationReport(parentId, source, target, "ABORTED", rows, 0);
+        }
+        for (ChildMonth month : unarchived) {
+            moveArchiveService.deleteChildMonth(month.childId(), month.month()); // now live rows on the target
+        }
+        log.info("Moved parent {} from shard {} to {}: {}", parentId, source, target, rows);
+        return new MigrationReport(parentId, source, target, "MOVED", rows, videosCopied);
+    }
+
+    private record ChildMonth(Long childId, YearMonth month) {
+    }
+
+    // live moves the source holds for months the target has archived go into segment files for the target
+    private void archiveBeforeHorizon(Long parentId, LocalDateTime horizon, int source, int target,
+                                      List<ChildMonth> archived) {
+        if (horizon == null) {
+            return;
+        }
+        List<ChildMonth> months = shardDirectory.onShard(source, true, () -> jdbcTemplate.query(
+                "select child_id, date_format(created_at, '%Y-%m-01') as month from move where child_id in ("
+                        + CHILDREN + ") and created_at < ? group by child_id, month",
+                (rs, i) -> new ChildMonth(rs.getLong("child_id"), YearMonth.from(LocalDate.parse(rs.getString("month")))),
+                parentId, Timestamp.valueOf(horizon)));
+        for (ChildMonth month : months) {
+            LocalDateTime start = month.month().atDay(1).atStartOfDay();
+            // one child's month at a time, as the archiver itself holds them
+            List<MoveSegment.Row> rows = shardDirectory.onShard(source, true, () -> jdbcTemplate.query(
+                    "select id, session_id, type, video_offset_seconds, created_at from move where child_id = ? " +
+                            "and created_at >= ? and created_at < ?",
+                    (rs, i) -> new MoveSegment.Row(rs.getLong("id"), rs.getObject("session_id", Long.class),
+                            rs.getString("type"), rs.getObject("video_offset_seconds", Integer.class),
+                            rs.getTimestamp("created_at").toLocalDateTime()),
+                    month.childId(), Timestamp.valueOf(start), Timestamp.valueOf(start.plusMonths(1))));
+            shardDirectory.onShard(target, false, () -> {
+                moveArchiveService.archiveChildMonth(month.childId(), month.month(), rows);
+                return null;
+            });
+            archived.add(month);
+        }
+    }
+
+    // inserts and clears the chunk
+    private void insertMoves(int target, List<Object[]> chunk) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        List<Object[]> batch = new ArrayList<>(chunk);
+        chunk.clear();
+        shardDirectory.onShard(target, false, () -> jdbcTemplate.batchUpdate("insert into move (id, child_id, " +
+                "session_id, type, video_offset_seconds, created_at) values (?, ?, ?, ?, ?, ?)", batch));
+    }
+
+    // months the source archived but the target keeps live are read from their files into the target's move table
+    private List<ChildMonth> unarchiveAfterHorizon(Long parentId, LocalDateTime horizon, int source, int target) {
+        List<ChildMonth> months = shardDirectory.onShard(source, true, () -> jdbcTemplate.query(
+                "select distinct child_id, month from move_archive_total where child_id in (" + CHILDREN + ")"
+                        + (horizon == null ? "" : " and month >= ?"),
+                (rs, i) -> new ChildMonth(rs.getLong("child_id"), YearMonth.from(rs.getDate("month").toLocalDate())),
+                horizon == null ? new Object[]{parentId} : new Object[]{parentId, Date.valueOf(horizon.toLocalDate())}));
+        for (ChildMonth month : months) {
+            List<Object[]> chunk = new ArrayList<>(chunkSize);
+            moveArchiveService.forEach(month.childId(), month.month(), null, move -> {
+                chunk.add(new Object[]{move.getId(), move.getChildId(), move.getSessionId(), move.getType(),
+                        move.getVideoOffsetSeconds(), move.getCreatedAt() == null ? null
+                        : Timestamp.valueOf(move.getCreatedAt())});
+                if (chunk.size() == chunkSize) {
+                    insertMoves(target, chunk);
+                }
+            });
+            insertMoves(target, chunk);
+        }
+        return months;
+    }
+
+    private record Fingerprint(long rows, long checksum) {
+    }
+
+    /**
+     * Row count and checksum of each part. With lock, the parent and children are locked first and every part is
+     * read with FOR UPDATE, which also locks the index gaps its condition covers: nothing can be inserted, changed or
+     * removed in the family until the transaction ends.
+     */
+    private Map<String, Fingerprint> fingerprint(Long parentId, boolean lock) {
+        if (lock) {
+            jdbcTemplate.queryForList("select id from parent where id = ? for update", Long.class, parentId);
+            jdbcTemplate.queryForList(CHILDREN + " for update", Long.class, parentId);
+        }
+        Map<String, Fingerprint> fingerprints = new LinkedHashMap<>();
+        for (Part part : PARTS) {
+            // quote() spells NULL out, so a null and an empty value differ
+            String row = jdbcTemplate.queryForList("select column_name from information_schema.columns " +
+                            "where table_schema = database() and table_name = ? order by ordinal_position",
+                    String.class, part.table()).stream().map(column -> "quote(`" + column + "`)")
+                    .collect(Collectors.joining(", "));
+            fingerprints.put(part.table(), jdbcTemplate.queryForObject("select count(*), " +
+                            "coalesce(sum(crc32(concat_ws('|', " + row + "))), 0) from " + part.table() + " where "
+                            + part.where() + (lock ? " for update" : ""),
+                    (rs, i) -> new Fingerprint(rs.getLong(1), rs.getLong(2)), part.args(parentId)));
+        }
+        return fingerprints;
+    }
+
+    private static Map<String, Integer> rows(Map<String, Fingerprint> fingerprints) {
+        Map<String, Integer> rows = new LinkedHashMap<>();
+        fingerprints.forEach((table, fingerprint) -> rows.put(table, (int) fingerprint.rows()));
+        return rows;
+    }
+
+    // one page at a time: read on the source after the last key copied, insert on the target
+    private void copy(Part part, Long parentId, int source, int target, String condition, Object value) {
+        String sql = "select * from " + part.table() + " where (" + part.where() + ")" + condition;
+        Object[] args = value == null ? part.args(parentId) : part.args(parentId, value);
+        Object after = null;
+        while (true) {
+            Object from = after;
+            List<Map<String, Object>> page = shardDirectory.onShard(source, true, () -> {
+                List<Object> pageArgs = new ArrayList<>(List.of(args));
+                if (from != null) {
+                    pageArgs.add(from);
+                }
+                pageArgs.add(chunkSize);
+                return jdbcTemplate.queryForList(sql + (from == null ? "" : " and " + part.key() + " > ?")
+                        + " order by " + part.key() + " limit ?", pageArgs.toArray());
+            });
+            if (page.isEmpty()) {
+                return;
+            }
+            // sessions and scores point at each other, so foreign keys are checked by the family being whole instead
+            shardDirectory.onShard(target, false, () -> withoutForeignKeys(() -> insert(part.table(), page)));
+            if (page.size() < chunkSize) {
+                return;
+            }
+            after = page.get(page.size() - 1).get(part.key());
+        }
+    }
+
+    // the videos the family's homework and sessions point at, and their questions, where the target lacks them
+    private int copyVideos(Long parentId, int source, int target) {
+        List<Long> videoIds = shardDirectory.onShard(source, true, () -> jdbcTemplate.queryForList(
+                "select video_id from homework where parent_id = ? union select video_id from session " +
+                        "where child_id in (" + CHILDREN + ")", Long.class, parentId, parentId))
+                .stream().filter(Objects::nonNull).toList();
+        if (videoIds.isEmpty()) {
+            return 0;
+        }
+        Set<Long> present = Set.copyOf(shardDirectory.onShard(target, true, () -> namedParameterJdbcTemplate
+                .queryForList("select id from video where id in (:ids)", new MapSqlParameterSource("ids", videoIds),
+                        Long.class)));
+        List<Long> missing = videoIds.stream().filter(id -> !present.contains(id)).toList();
+        if (missing.isEmpty()) {
+            return 0;
+        }
+        List<Map<String, Object>> videos = shardDirectory.onShard(source, true, () -> in("video", "id", missing));
+        List<Map<String, Object>> questions = shardDirectory.onShard(source, true, () -> in("question", "video_id",
+                missing));
+        return shardDirectory.onShard(target, false, () -> withoutForeignKeys(() -> {
+            List<Map<String, Object>> copies = new ArrayList<>();
+            for (Map<String, Object> video : videos) {
+                Map<String, Object> copy = new LinkedHashMap<>(video);
+                Integer taken = copy.get("key_hash") == null ? 0 : jdbcTemplate.queryForObject(
+                        "select count(*) from video where key_hash = ?", Integer.class, copy.get("key_hash"));
+                if (taken != null && taken > 0) {
+                    copy.put("video_key", null);
+                    copy.put("key_hash", null);
+                }
+                copies.add(copy);
+            }
+            insert("video", copies);
+            insert("question", questions);
+            return copies.size();
+        }));
+    }
+
+    private List<Map<String, Object>> in(String table, String column, List<Long> ids) {
+        return namedParameterJdbcTemplate.queryForList("select * from " + table + " where " + column + " in (:ids) order by id",
+                new MapSqlParameterSource("ids", ids));
+    }
+
+    // leaves first, chunk by chunk, in the caller's transaction
+    private Void deleteFamily(Long parentId) {
+        return withoutForeignKeys(() -> {
+            List<Part> reversed = new ArrayList<>(PARTS);
+            Collections.reverse(reversed);
+            for (Part part : reversed) {
+                String sql = "delete from " + part.table() + " where " + part.where() + " limit ?";
+                while (jdbcTemplate.update(sql, part.args(parentId, chunkSize)) > 0) {
+                    // next chunk
+                }
+            }
+            return null;
+        });
+    }
+
+    // copied videos and questions stay behind on the target; they are only catalog rows
+    private void undo(Long parentId, Map<String, List<Long>> placed, int source, int target,
+                      List<ChildMonth> archived) {
+        PLACEMENT_TYPES.forEach((table, type) -> shardDirectory.recordPlacements(type, placed.get(table), source));
+        undoCopy(parentId, target, archived);
+    }
+
+    private void undoCopy(Long parentId, int target, List<ChildMonth> archived) {
+        shardDirectory.onShard(target, false, () -> deleteFamily(parentId));
+        archived.forEach(month -> moveArchiveService.deleteChildMonth(month.childId(), month.month()));
+    }
+
+    // the setting belongs to the connection, so this runs inside a transaction to keep one
+    private <T> T withoutForeignKeys(Supplier<T> work) {
+        jdbcTemplate.execute("set foreign_key_checks = 0");
+        try {
+            return work.get();
+        } finally {
+            jdbcTemplate.execute("set foreign_key_checks = 1");
+        }
+    }
+
+    private Void insert(String table, List<Map<String, Object>> rows) {
+        if (rows.isEmpty()) {
+            return null;
+        }
+        List<String> columns = List.copyOf(rows.get(0).keySet());
+        String sql = "insert into " + table + " (" + columns.stream().map(c -> "`" + c + "`").collect(Collectors.joining(", "))
+                + ") values (" + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+        List<Object[]> batch = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            batch.add(columns.stream().map(row::get).toArray());
+        }
+        jdbcTemplate.batchUpdate(sql, batch);
+        return null;
+    }
+}
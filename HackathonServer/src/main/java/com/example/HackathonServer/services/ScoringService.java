@@ -0,0 +1,176 @@
+package com.example.HackathonServer.services;
+
+import com.example.HackathonServer.events.ChildEvent;
+import com.example.HackathonServer.models.Answer;
+import com.example.HackathonServer.models.Score;
+import com.example.HackathonServer.models.Session;
+import com.example.HackathonServer.repos.AnswerRepo;
+import com.example.HackathonServer.repos.ScoreRepo;
+import com.example.HackathonServer.repos.SessionRepo;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Scores a session from the answers the client reports instead of trusting a
+ * client-computed Score. Answers are checked against the cached answer key of
+ * the session's video, so the only per-answer database work is the insert of
+ * the raw answer row; the Score is written once when the session ends, from
+ * the stored answers, so it counts answers taken by any instance.
+ * <p>
+ * The in-memory answers of a session only decide whether an answer is the
+ * first for its question. They are dropped after
+ * scoring.open-session-idle-ms without answers and are not kept at all past
+ * scoring.open-sessions-max open sessions; a dropped session is replayed
+ * from the answer table on its next answer.
+ */
+@Service
+public class ScoringService {
+
+    @Autowired
+    private AnswerKeyCache answerKeyCache;
+    @Autowired
+    private AnswerRepo answerRepo;
+    @Autowired
+    private SessionRepo sessionRepo;
+    @Autowired
+    private ScoreRepo scoreRepo;
+    @Autowired
+    private QuestionStatsService questionStatsService;
+    @Autowired
+    private ApplicationEventPublisher events;
+
+    @Value("${scoring.open-session-idle-ms:3600000}")
+    private long openSessionIdleMs;
+    @Value("${scoring.open-sessions-max:100000}")
+    private int openSessionsMax;
+
+    private final Map<Long, SessionAnswers> openSessions = new ConcurrentHashMap<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class AnswerRequest {
+        private Long questionId;
+        private String chosenOption;
+        private Integer latencyMs;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class AnswerResult {
+        private Long questionId;
+        private boolean correct;
+        private boolean counted; //false when the question was already answered
+    }
+
+    private static class SessionAnswers {
+        final Long videoId;
+        // first answer per question wins
+        final Map<Long, Boolean> answers = new ConcurrentHashMap<>();
+        volatile long lastAnswerAt = System.currentTimeMillis();
+
+        SessionAnswers(Long videoId) {
+            this.videoId = videoId;
+        }
+    }
+
+    public AnswerResult recordAnswer(Long sessionId, AnswerRequest request) {
+        SessionAnswers state = openSessions.get(sessionId);
+        if (state == null) {
+            state = open(sessionId);
+            if (openSessions.size() < openSessionsMax) {
+                SessionAnswers raced = openSessions.putIfAbsent(sessionId, state);
+                state = raced != null ? raced : state;
+            }
+        }
+        state.lastAnswerAt = System.currentTimeMillis();
+        if (state.videoId == null) {
+            throw new IllegalStateException("Session " + sessionId + " has no video");
+        }
+        AnswerKeyCache.AnswerKey key = answerKeyCache.forVideo(state.videoId).get(request.getQuestionId());
+        if (key == null) {
+            throw new IllegalArgumentException("Question " + request.getQuestionId() + " is not part of this session's video");
+        }
+        boolean correct = key.isCorrect(request.getChosenOption());
+        boolean counted = state.answers.putIfAbsent(request.getQuestionId(), correct) == null;
+        if (counted) {
+            questionStatsService.record(state.videoId, request.getQuestionId(), correct,
+                    key.optionIndex(request.getChosenOption()), request.getLatencyMs());
+        }
+        answerRepo.save(new Answer(null, sessionId, request.getQuestionId(),
+                request.getChosenOption(), request.getLatencyMs(), correct, null));
+        return new AnswerResult(request.getQuestionId(), correct, counted);
+    }
+
+    @Transactional
+    public Session endSession(Long sessionId) {
+        Session session = sessionRepo.findById(sessionId)
+                .orElseThrow(() -> new EntityNotFoundException("Session not found"));
+        openSessions.remove(sessionId);
+        if (session.getScore() != null) {
+            return session;
+        }
+        // the stored answers, not this instance's: some may have been taken by another one
+        SessionAnswers state = replay(session);
+        int questions = state.videoId == null ? 0 : answerKeyCache.forVideo(state.videoId).size();
+        int correct = (int) state.answers.values().stream().filter(Boolean::booleanValue).count();
+
+        Score score = new Score();
+        score.setScore(correct);
+        score.setPercentage(questions > 0 ? correct * 100.0 / questions : 0.0);
+        score.setSession(session);
+        scoreRepo.save(score);
+
+        LocalDateTime now = LocalDateTime.now();
+        session.setScore(score);
+        session.setStatus("Completed");
+        session.setEndedAt(now);
+        if (session.getCreatedAt() != null) {
+            session.setDuration(String.valueOf(Duration.between(session.getCreatedAt(), now).toMinutes()));
+        }
+        Session saved = sessionRepo.save(session);
+        Long childId = saved.getChild() == null ? null : saved.getChild().getId();
+        events.publishEvent(new ChildEvent.SessionEnded(childId, saved.getId(), saved.getCreatedAt(),
+                ChildSummaryProjector.minutes(saved.getDuration())));
+        events.publishEvent(new ChildEvent.ScoreRecorded(childId, saved.getId(), score.getScore(), saved.getCreatedAt()));
+        return saved;
+    }
+
+    private SessionAnswers open(Long sessionId) {
+        Session session = sessionRepo.findById(sessionId)
+                .orElseThrow(() -> new EntityNotFoundException("Session not found"));
+        if (session.getScore() != null) {
+            throw new IllegalStateException("Session " + sessionId + " has already ended");
+        }
+        return replay(session);
+    }
+
+    // the session's stored answers; one query per session, not per answer
+    private SessionAnswers replay(Session session) {
+        SessionAnswers state = new SessionAnswers(session.getVideo() == null ? null : session.getVideo().getId());
+        for (Answer answer : answerRepo.findBySessionIdOrderById(session.getId())) {
+            state.answers.putIfAbsent(answer.getQuestionId(), Boolean.TRUE.equals(answer.getCorrect()));
+        }
+        return state;
+    }
+
+    @Scheduled(fixedDelayString = "${scoring.evict-interval-ms:60000}")
+    public void evictIdle() {
+        long idleSince = System.currentTimeMillis() - openSessionIdleMs;
+        openSessions.values().removeIf(state -> state.lastAnswerAt < idleSince);
+    }
+}
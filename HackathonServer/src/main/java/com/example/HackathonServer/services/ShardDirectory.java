@@ -0,0 +1,327 @@
+package com.example.HackathonServer.services;
+
+import com.example.HackathonServer.config.ShardRoutingDataSource;
+import com.example.HackathonServer.util.ConsistentHashRing;
+import com.example.HackathonServer.util.ShardIds;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Where a parent's data lives. New parents are placed on a consistent-hash
+ * ring of the shards, and every row id encodes the shard it was inserted on
+ * (ShardIds), so most lookups are arithmetic. Parents and children that
+ * ReshardingService moved off their id's shard are listed in shard_placement
+ * on shard 0; each instance keeps those in memory and picks up new ones every
+ * sharding.directory.refresh-ms. Their homework, sessions, scores and moves
+ * are not listed: once a family has left a shard, a lookup of such a row
+ * whose id names that shard checks the row is still there, asks the other
+ * shards when it is not, and remembers the answer in a bounded cache
+ * (sharding.directory.lookup-cache-size). With no extra shards configured
+ * everything is shard 0 and none of this does any work.
+ */
+@Slf4j
+@Service
+public class ShardDirectory {
+
+    public static final String PARENT = "PARENT";
+    public static final String CHILD = "CHILD";
+    public static final String HOMEWORK = "HOMEWORK";
+    public static final String SESSION = "SESSION";
+    public static final String SCORE = "SCORE";
+    public static final String MOVE = "MOVE";
+    public static final String VIDEO = "VIDEO";
+
+    private static final Map<String, String> TABLES = Map.of(HOMEWORK, "homework", SESSION, "session",
+            SCORE, "score", MOVE, "move");
+
+    private static final String UPSERT = "insert into shard_placement (entity_type, entity_id, shard, moved_at) " +
+            "values (?, ?, ?, ?) on duplicate key update shard = values(shard), moved_at = values(moved_at)";
+
+    @Autowired
+    @Qualifier("shardRoutingDataSource")
+    private ShardRoutingDataSource shardRoutingDataSource;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // ids up to here were allocated before sharding was switched on and all live on shard 0
+    @Value("${sharding.legacy-id-ceiling:0}")
+    private long legacyIdCeiling;
+    @Value("${sharding.virtual-nodes:128}")
+    private int virtualNodes;
+    @Value("${sharding.directory.lookup-cache-size:100000}")
+    private int lookupCacheSize;
+
+    private ConsistentHashRing<Integer> ring;
+    private volatile Map<String, Integer> placements = Map.of();
+    private volatile Set<Integer> leftShards = Set.of(); // shards some listed family may have been moved off
+    private LocalDateTime loadedThrough;
+    private Map<String, Integer> located; // derived locations of rows of moved families, LRU
+    private ThreadPoolTaskExecutor executor;
+
+    @PostConstruct
+    void init() {
+        located = new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                return size() > lookupCacheSize;
+            }
+        };
+        ring = new ConsistentHashRing<>(virtualNodes);
+        for (int shard = 0; shard < shardCount(); shard++) {
+            ring.add("shard-" + shard, shard);
+        }
+        if (isSharded()) {
+            executor = new ThreadPoolTaskExecutor();
+            executor.setThreadNamePrefix("shard-");
+            executor.setCorePoolSize(shardCount());
+            executor.setMaxPoolSize(shardCount() * 4);
+            executor.setQueueCapacity(shardCount() * 16);
+            executor.initialize();
+            refresh();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    public int shardCount() {
+        return shardRoutingDataSource.shardCount();
+    }
+
+    public boolean isSharded() {
+        return shardCount() > 1;
+    }
+
+    /** Where a parent with this username belongs: used for new parents and as the rebalancing target. */
+    public int placeParent(String username) {
+        if (!isSharded() || username == null) {
+            return 0;
+        }
+        return ring.nodeFor(username.trim().toLowerCase());
+    }
+
+    public int shardOf(String entityType, Long id) {
+        if (!isSharded() || id == null) {
+            return 0;
+        }
+        Integer moved = placements.get(entityType + ":" + id);
+        if (moved != null) {
+            return moved;
+        }
+        int natal = natalShard(id);
+        String table = TABLES.get(entityType);
+        if (table == null || !leftShards.contains(natal)) {
+            return natal;
+        }
+        return locate(entityType, table, id, natal);
+    }
+
+    private int natalShard(Long id) {
+        if (id <= legacyIdCeiling) {
+            return 0;
+        }
+        int shard = ShardIds.shardOf(id);
+        return shard < shardCount() ? shard : 0;
+    }
+
+    // the row's id names a shard families have left: it is either still there or moved with its family
+    private int locate(String entityType, String table, Long id, int natal) {
+        String key = entityType + ":" + id;
+        synchronized (located) {
+            Integer known = located.get(key);
+            if (known != null) {
+                return known;
+            }
+        }
+        String probe = "select count(*) from " + table + " where id = ?";
+        int shard = natal;
+        if (!Boolean.TRUE.equals(onShard(natal, true, () -> exists(probe, id)))) {
+            List<Boolean> found = scatterEach(() -> exists(probe, id));
+            shard = found.indexOf(Boolean.TRUE);
+            if (shard < 0) {
+                return natal; // no such row anywhere; not cached, it may be about to be created
+            }
+        }
+        synchronized (located) {
+            located.put(key, shard);
+        }
+        return shard;
+    }
+
+    private boolean exists(String probe, Long id) {
+        Integer count = jdbcTemplate.queryForObject(probe, Integer.class, id);
+        return count != null && count > 0;
+    }
+
+    /** Pins the rest of this request to the entity's shard; call before the request's first statement. */
+    public void route(String entityType, Long id) {
+        routeTo(shardOf(entityType, id));
+    }
+
+    /**
+     * Pins a write that carries its owner in the body (POST /session, /move, /score) to the child's shard, or to
+     * the session's when only the session is named. Without either it stays on shard 0.
+     */
+    public void routeWrite(Long childId, Long sessionId) {
+        if (childId != null) {
+            route(CHILD, childId);
+        } else if (sessionId != null) {
+            route(SESSION, sessionId);
+        }
+    }
+
+    public void routeTo(int shard) {
+        if (isSharded()) {
+            ShardRoutingDataSource.route(shard);
+        }
+    }
+
+    /**
+     * Runs the query on every shard in parallel and concatenates the results
+     * in shard order. Each shard's part runs in its own read-only transaction
+     * on a pool thread, so it must return data that needs no lazy loading
+     * afterwards (DTOs, or JSON built inside the supplier).
+     */
+    public <T> List<T> scatter(Supplier<List<T>> query) {
+        List<T> gathered = new ArrayList<>();
+        scatterEach(query).forEach(gathered::addAll);
+        return gathered;
+    }
+
+    /** One result per shard, in shard order. */
+    public <T> List<T> scatterEach(Supplier<T> query) {
+        if (!isSharded()) {
+            return List.of(query.get());
+        }
+        List<CompletableFuture<T>> parts = new ArrayList<>();
+        for (int shard = 0; shard < shardCount(); shard++) {
+            int target = shard;
+            parts.add(CompletableFuture.supplyAsync(() -> inTransaction(target, true, query), executor));
+        }
+        List<T> results = new ArrayList<>(parts.size());
+        for (CompletableFuture<T> part : parts) {
+            results.add(join(part));
+        }
+        return results;
+    }
+
+    /** Runs work in a transaction on the given shard, on a pool thread so the caller's own connection is untouched. */
+    public <T> T onShard(int shard, boolean readOnly, Supplier<T> work) {
+        if (!isSharded()) {
+            return inTransaction(0, readOnly, work);
+        }
+        return join(CompletableFuture.supplyAsync(() -> inTransaction(shard, readOnly, work), executor));
+    }
+
+    /** Lists moved parents or children; their other rows are located on demand. */
+    public void recordPlacements(String entityType, Collection<Long> ids, int shard) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        if (!PARENT.equals(entityType) && !CHILD.equals(entityType)) {
+            throw new IllegalArgumentException("Only parent and child placements are recorded");
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> batch = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            batch.add(new Object[]{entityType, id, shard, now});
+        }
+        onShard(0, false, () -> jdbcTemplate.batchUpdate(UPSERT, batch));
+        Map<String, Integer> moved = new HashMap<>();
+        ids.forEach(id -> moved.put(entityType + ":" + id, shard));
+        merge(moved);
+    }
+
+    // new placements since the last load; a full load the first time
+    @Scheduled(fixedDelayString = "${sharding.directory.refresh-ms:30000}")
+    public void refresh() {
+        if (!isSharded()) {
+            return;
+        }
+        LocalDateTime since;
+        synchronized (this) {
+            // placements are stamped with the writer's clock; the overlap covers skew and late commits
+            since = loadedThrough == null ? LocalDateTime.of(1970, 1, 1, 0, 0) : loadedThrough.minusMinutes(5);
+        }
+        LocalDateTime started = LocalDateTime.now();
+        Map<String, Integer> loaded = onShard(0, true, () -> {
+            Map<String, Integer> rows = new HashMap<>();
+            jdbcTemplate.query("select entity_type, entity_id, shard from shard_placement " +
+                    "where entity_type in (?, ?) and moved_at >= ?", rs -> {
+                rows.put(rs.getString("entity_type") + ":" + rs.getLong("entity_id"), rs.getInt("shard"));
+            }, PARENT, CHILD, Timestamp.valueOf(since));
+            return rows;
+        });
+        merge(loaded);
+        synchronized (this) {
+            loadedThrough = started;
+        }
+        log.debug("Shard directory: {} relocated parents and children", placements.size());
+    }
+
+    private synchronized void merge(Map<String, Integer> moved) {
+        boolean changed = false;
+        Map<String, Integer> updated = new HashMap<>(placements);
+        for (Map.Entry<String, Integer> entry : moved.entrySet()) {
+            changed |= !entry.getValue().equals(updated.put(entry.getKey(), entry.getValue()));
+        }
+        if (!changed) {
+            return;
+        }
+        // a family leaves the shard its ids name, or one it was moved to before
+        Set<Integer> left = new HashSet<>(updated.values());
+        updated.keySet().forEach(key -> left.add(natalShard(Long.parseLong(key.substring(key.indexOf(':') + 1)))));
+        placements = updated;
+        leftShards = left;
+        synchronized (located) {
+            located.clear(); // a family moved again; rows found before may have gone with it
+        }
+    }
+
+    private <T> T inTransaction(int shard, boolean readOnly, Supplier<T> work) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(readOnly);
+        return ShardRoutingDataSource.on(shard, () -> transaction.execute(status -> work.get()));
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.HackathonServer.services;
+
+import com.example.HackathonServer.util.ChangeVersions;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Delta sync of a child's homework, the videos they point at and those
+ * videos' questions. Every synced row carries a change_version; a sync
+ * returns rows with since &lt; version &lt;= cursor plus tombstones for rows
+ * deleted in that range, and the cursor to send next time.
+ */
+@Service
+public class SyncService {
+
+    public static final String HOMEWORK = "HOMEWORK";
+    public static final String VIDEO = "VIDEO";
+    public static final String QUESTION = "QUESTION";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    @Autowired
+    private ChangeVersions changeVersions;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class SyncResponse {
+        private long cursor;
+        private boolean full;
+        private List<HomeworkChange> homework;
+        private List<VideoChange> videos;
+        private List<QuestionChange> questions;
+        private List<Deletion> deleted;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class HomeworkChange {
+        private Long id;
+        private String title;
+        private Long videoId;
+        private String status;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class VideoChange {
+        private Long id;
+        private String title;
+        private String url;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class QuestionChange {
+        private Long id;
+        private Long videoId;
+        private String question;
+        private String timeToStop;
+        private String optA;
+        private String optB;
+        private String optC;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Deletion {
+        private String type;
+        private Long id;
+    }
+
+    public void recordDeletion(String entityType, Long entityId, Long scopeId) {
+        jdbcTemplate.update("insert into change_tombstone (entity_type, entity_id, scope_id, change_version, deleted_at) " +
+                        "values (?, ?, ?, ?, ?)", entityType, entityId, scopeId, changeVersions.next(),
+                Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    /** @param rows [entityId, scopeId] pairs */
+    public void recordDeletions(String entityType, List<Long[]> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        long version = changeVersions.reserve(rows.size());
+        List<Object[]> batch = new ArrayList<>(rows.size());
+        for (Long[] row : rows) {
+            batch.add(new Object[]{entityType, row[0], row[1], version++, now});
+        }
+        jdbcTemplate.batchUpdate("insert into change_tombstone (entity_type, entity_id, scope_id, change_version, " +
+                "deleted_at) values (?, ?, ?, ?, ?)", batch);
+    }
+
+    /**
+     * Runs on the primary, not a replica (a read-only transaction of a GET would go to one): the cursor is the
+     * primary's, and a lagging replica would return nothing for versions it has not applied yet while the client
+     * moves its cursor past them for good.
+     *
+     * @param since cursor from the previous sync; 0 or less asks for a full snapshot
+     */
+    @Transactional
+    public SyncResponse changesFor(Long childId, long since) {
+        long cursor = changeVersions.safeCursor();
+        boolean full = since <= 0;
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("childId", childId)
+                .addValue("since", full ? Long.MIN_VALUE : since)
+                .addValue("cursor", cursor);
+        String window = full ? "" : " and change_version > :since and change_version <= :cursor";
+
+        List<HomeworkChange> homework = namedParameterJdbcTemplate.query(
+                "select id, title, video_id, status from homework where child_id = :childId" + window
+                        + " order by change_version",
+                params, (rs, i) -> new HomeworkChange(rs.getLong("id"), rs.getString("title"),
+                        rs.getLong("video_id"), rs.getString("status")));
+
+        List<Long> videoIds = namedParameterJdbcTemplate.queryForList(
+                "select distinct video_id from homework where child_id = :childId", params, Long.class);
+        List<VideoChange> videos = new ArrayList<>();
+        List<QuestionChange> questions = new ArrayList<>();
+        if (!videoIds.isEmpty()) {
+            // a newly assigned homework may point at an old video the client has never seen
+            Set<Long> newlyReferenced = new HashSet<>();
+            homework.forEach(hw -> newlyReferenced.add(hw.getVideoId()));
+            newlyReferenced.add(-1L);
+            params.addValue("videoIds", videoIds).addValue("newVideoIds", newlyReferenced);
+            String videoWindow = full ? "" : " and ((change_version > :since and change_version <= :cursor) "
+                    + "or id in (:newVideoIds))";
+            videos = namedParameterJdbcTemplate.query(
+                    "select id, title, url from video where id in (:videoIds)" + videoWindow,
+                    params, (rs, i) -> new VideoChange(rs.getLong("id"), rs.getString("title"), rs.getString("url")));
+            String questionWindow = full ? "" : " and ((change_version > :since and change_version <= :cursor) "
+                    + "or video_id in (:newVideoIds))";
+            // correct answers are not synced; scoring happens on the server
+            questions = namedParameterJdbcTemplate.query(
+                    "select id, video_id, question, time_to_stop, opt_a, opt_b, opt_c from question " +
+                            "where video_id in (:videoIds)" + questionWindow + " order by id",
+                    params, (rs, i) -> new QuestionChange(rs.getLong("id"), rs.getLong("video_id"),
+                            rs.getString("question"), rs.getString("time_to_stop"), rs.getString("opt_a"),
+                            rs.getString("opt_b"), rs.getString("opt_c")));
+        }
+
+        List<Deletion> deleted = new ArrayList<>();
+        if (!full) {
+            params.addValue("videoIds", videoIds.isEmpty() ? List.of(-1L) : videoIds);
+            deleted = namedParameterJdbcTemplate.query(
+                    "select entity_type, entity_id from change_tombstone where change_version > :since " +
+                            "and change_version <= :cursor and ((entity_type = 'HOMEWORK' and scope_id = :childId) " +
+                            "or (entity_type = 'QUESTION' and scope_id in (:videoIds)) or entity_type = 'VIDEO') " +
+                            "order by change_version",
+                    params, (rs, i) -> new Deletion(rs.getString("entity_type"), rs.getLong("entity_id")));
+        }
+        return new SyncResponse(cursor, full, homework, videos, questions, deleted);
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.HackathonServer.services;
+
+import com.example.HackathonServer.models.Video;
+import com.example.HackathonServer.repos.VideoRepo;
+import com.example.HackathonServer.util.ChangeVersions;
+import com.example.HackathonServer.util.VideoUrls;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One Video row per canonical URL. Homework creation goes through
+ * {@link #findOrCreate} so repeated assignments share the video (and its
+ * questions); {@link #dedupe} is the one-time migration that merges rows
+ * created before keys existed, shard by shard.
+ * <p>
+ * A missing video is created with INSERT ... ON DUPLICATE KEY UPDATE on the
+ * key hash, so a concurrent create of the same URL returns the other row
+ * instead of raising a constraint violation that would mark the caller's
+ * transaction rollback-only.
+ */
+@Slf4j
+@Service
+public class VideoCatalogService {
+
+    @Autowired
+    private VideoRepo videoRepo;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    @Autowired
+    private AnswerKeyCache answerKeyCache;
+    @Autowired
+    private SyncService syncService;
+    @Autowired
+    private VideoEngagementService videoEngagementService;
+    @Autowired
+    private QuestionStatsService questionStatsService;
+    @Autowired
+    private ShardDirectory shardDirectory;
+    @Autowired
+    private ChangeVersions changeVersions;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class DedupReport {
+        private int keysBackfilled;
+        private int duplicateGroups;
+        private int videosMerged;
+        private int homeworkRepointed;
+        private int sessionsRepointed;
+        private int questionsMoved;
+        private int questionsMerged;
+        private int answersRepointed;
+
+        void add(DedupReport shard) {
+            keysBackfilled += shard.keysBackfilled;
+            duplicateGroups += shard.duplicateGroups;
+            videosMerged += shard.videosMerged;
+            homeworkRepointed += shard.homeworkRepointed;
+            sessionsRepointed += shard.sessionsRepointed;
+            questionsMoved += shard.questionsMoved;
+            questionsMerged += shard.questionsMerged;
+            answersRepointed += shard.answersRepointed;
+        }
+    }
+
+    public Video findOrCreate(String title, String url) {
+        String key = VideoUrls.canonicalKey(url);
+        String hash = VideoUrls.keyHash(key);
+        return videoRepo.findByKeyHash(hash).orElseGet(() -> {
+            long version = changeVersions.next();
+            // same connection for both statements: last_insert_id() is per connection
+            Long id = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+                try (PreparedStatement insert = connection.prepareStatement("insert into video (title, url, " +
+                        "video_key, key_hash, created_at, change_version) values (?, ?, ?, ?, ?, ?) " +
+                        "on duplicate key update id = last_insert_id(id)")) {
+                    insert.setString(1, title);
+                    insert.setString(2, url);
+                    insert.setString(3, key);
+                    insert.setString(4, hash);
+                    insert.setTimestamp(5, Timestamp.valueOf(LocalDateTime.now()));
+                    insert.setLong(6, version);
+                    insert.executeUpdate();
+                }
+                try (Statement read = connection.createStatement();
+                     ResultSet rs = read.executeQuery("select last_insert_id()")) {
+                    rs.next();
+                    return rs.getLong(1);
+                }
+            });
+            return videoRepo.findById(id).orElseThrow();
+        });
+    }
+
+    /** Merges duplicate videos on every shard; each shard in its own transaction. */
+    public DedupReport dedupe() {
+        DedupReport total = new DedupReport();
+        for (int shard = 0; shard < shardDirectory.shardCount(); shard++) {
+            DedupReport report = shardDirectory.onShard(shard, false, this::dedupeShard);
+            log.info("Video dedup on shard {}: {}", shard, report);
+            total.add(report);
+        }
+        return total;
+    }
+
+    private DedupReport dedupeShard() {
+        DedupReport report = new DedupReport();
+        List<Object[]> backfill = new ArrayList<>();
+        jdbcTemplate.query("select id, url from video where key_hash is null", rs -> {
+            String key = VideoUrls.canonicalKey(rs.getString("url"));
+            backfill.add(new Object[]{key, VideoUrls.keyHash(key), rs.getLong("id")});
+        });
+        if (!backfill.isEmpty()) {
+            jdbcTemplate.batchUpdate("update video set video_key = ?, key_hash = ? where id = ?", backfill);
+        }
+        report.setKeysBackfilled(backfill.size());
+
+        List<String> duplicatedHashes = jdbcTemplate.queryForList(
+                "select key_hash from video group by key_hash having count(*) > 1", String.class);
+        report.setDuplicateGroups(duplicatedHashes.size());
+        for (String hash : duplicatedHashes) {
+            List<Long> ids = jdbcTemplate.queryForList(
+                    "select id from video where key_hash = ? order by id", Long.class, hash);
+            Long survivor = ids.get(0);
+            List<Long> duplicates = ids.subList(1, ids.size());
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("survivor", survivor)
+                    .addValue("duplicates", duplicates)
+                    .addValue("version", changeVersions.next());
+
+            report.homeworkRepointed += namedParameterJdbcTemplate.update(
+                    "update homework set video_id = :survivor, change_version = :version " +
+                            "where video_id in (:duplicates)", params);
+            report.sessionsRepointed += namedParameterJdbcTemplate.update(
+                    "update session set video_id = :survivor where video_id in (:duplicates)", params);
+            mergeQuestions(survivor, params, report);
+            videoEngagementService.merge(duplicates, survivor);
+            namedParameterJdbcTemplate.update("delete from video where id in (:duplicates)", params);
+            syncService.recordDeletions(SyncService.VIDEO,
+                    duplicates.stream().map(id -> new Long[]{id, null}).toList());
+            report.videosMerged += duplicates.size();
+            ids.forEach(answerKeyCache::invalidate);
+        }
+        return report;
+    }
+
+    /**
+     * A duplicate's question that the survivor also has (same text, same stop
+     * time) is merged into it: answers and stats move to the survivor's
+     * question. The others move to the survivor as they are, so no answer is
+     * left pointing at a deleted question.
+     */
+    private void mergeQuestions(Long survivor, MapSqlParameterSource params, DedupReport report) {
+        Map<List<String>, Long> kept = new HashMap<>();
+        jdbcTemplate.query("select id, question, time_to_stop from question where video_id = ? order by id", rs -> {
+            kept.putIfAbsent(List.of(rs.getString("question"), rs.getString("time_to_stop")), rs.getLong("id"));
+        }, survivor);
+        Map<Long, Long> target = new LinkedHashMap<>();
+        List<Long[]> merged = new ArrayList<>(); // {question id, video id} of the merged-away questions
+        namedParameterJdbcTemplate.query("select id, video_id, question, time_to_stop from question " +
+                "where video_id in (:duplicates) order by video_id, id", params, rs -> {
+            Long id = rs.getLong("id");
+            Long match = kept.putIfAbsent(List.of(rs.getString("question"), rs.getString("time_to_stop")), id);
+            target.put(id, match == null ? id : match);
+            if (match != null) {
+                merged.add(new Long[]{id, rs.getLong("video_id")});
+            }
+        });
+        if (target.isEmpty()) {
+            return;
+        }
+        List<Long> moved = target.entrySet().stream().filter(e -> e.getKey().equals(e.getValue()))
+                .map(Map.Entry::getKey).toList();
+        if (!moved.isEmpty()) {
+            report.questionsMoved += namedParameterJdbcTemplate.update("update question set video_id = :survivor, " +
+                    "change_version = :version where id in (:moved)", new MapSqlParameterSource(params.getValues())
+                    .addValue("moved", moved));
+        }
+        if (!merged.isEmpty()) {
+            // one pass over answer for the whole group
+            StringBuilder remap = new StringBuilder("update answer set question_id = case question_id");
+            List<Object> args = new ArrayList<>();
+            for (Long[] question : merged) {
+                remap.append(" when ? then ?");
+                args.add(question[0]);
+                args.add(target.get(question[0]));
+            }
+            remap.append(" end where question_id in (")
+                    .append(String.join(", ", Collections.nCopies(merged.size(), "?"))).append(")");
+            merged.forEach(question -> args.add(question[0]));
+            report.answersRepointed += jdbcTemplate.update(remap.toString(), args.toArray());
+        }
+        questionStatsService.merge(target, survivor);
+        if (!merged.isEmpty()) {
+            syncService.recordDeletions(SyncService.QUESTION, merged);
+            report.questionsMerged += namedParameterJdbcTemplate.update("delete from question where id in (:merged)",
+                    new MapSqlParameterSource("merged", merged.stream().map(question -> question[0]).toList()));
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.HackathonServer.services;
+
+import com.example.HackathonServer.models.Move;
+import com.example.HackathonServer.models.Session;
+import com.example.HackathonServer.models.VideoEngagementBucket;
+import com.example.HackathonServer.repos.SessionRepo;
+import com.example.HackathonServer.repos.VideoEngagementBucketRepo;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-video histogram of moves by playback offset, one video_engagement_bucket
+ * row per fixed-width offset bucket. Ingest increments an in-memory delta
+ * array per video; a scheduled flush drains the deltas and adds them to the
+ * rows in one JDBC batch, so instances never overwrite each other's counts.
+ * Reads combine the stored rows with whatever has not been flushed yet.
+ */
+@Slf4j
+@Service
+public class VideoEngagementService {
+
+    public static final String[] MOVE_TYPES = {"JUMP", "SQUAT", "CLAP", "OTHER"};
+    private static final int SESSION_CACHE_LIMIT = 10_000;
+    private static final int MAX_OFFSET_SECONDS = 6 * 60 * 60;
+
+    private static final String UPSERT = "insert into video_engagement_bucket " +
+            "(video_id, offset_seconds, jumps, squats, claps, other_moves, updated_at) values (?, ?, ?, ?, ?, ?, ?) " +
+            "on duplicate key update jumps = jumps + values(jumps), squats = squats + values(squats), " +
+            "claps = claps + values(claps), other_moves = other_moves + values(other_moves), " +
+            "updated_at = values(updated_at)";
+
+    @Autowired
+    private VideoEngagementBucketRepo videoEngagementBucketRepo;
+    @Autowired
+    private SessionRepo sessionRepo;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${engagement.bucket-seconds:10}")
+    private int bucketSeconds;
+
+    // unflushed deltas per video
+    private final Map<Long, Histogram> pending = new ConcurrentHashMap<>();
+    private final Map<Long, Long> sessionVideos = new ConcurrentHashMap<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class EngagementCurve {
+        private Long videoId;
+        private int bucketSeconds;
+        private int[] offsets;
+        private Map<String, long[]> moves;
+        private long[] total;
+    }
+
+    // bucket-major counts: [bucket * MOVE_TYPES.length + type]
+    private static class Histogram {
+        long[] counts = new long[0];
+
+        synchronized void add(int bucket, int type, long count) {
+            int index = bucket * MOVE_TYPES.length + type;
+            if (index >= counts.length) {
+                int length = Math.max(index + 1, counts.length * 2);
+                counts = Arrays.copyOf(counts, (length + MOVE_TYPES.length - 1) / MOVE_TYPES.length * MOVE_TYPES.length);
+            }
+            counts[index] += count;
+        }
+
+        synchronized long[] snapshot() {
+            return counts.clone();
+        }
+
+        synchronized long[] drain() {
+            long[] drained = counts;
+            counts = new long[0];
+            return drained;
+        }
+
+        void restore(long[] delta) {
+            for (int i = 0; i < delta.length; i++) {
+                if (delta[i] != 0) {
+                    add(i / MOVE_TYPES.length, i % MOVE_TYPES.length, delta[i]);
+                }
+            }
+        }
+    }
+
+    public void recordMove(Move move) {
+        Integer offset = move.getVideoOffsetSeconds();
+        if (offset == null || offset < 0 || offset > MAX_OFFSET_SECONDS || move.getSession() == null) {
+            return;
+        }
+        Long videoId = videoOf(move.getSession());
+        if (videoId == null) {
+            return;
+        }
+        pending.computeIfAbsent(videoId, id -> new Histogram()).add(offset / bucketSeconds, typeIndex(move.getType()), 1);
+    }
+
+    public EngagementCurve curve(Long videoId) {
+        Histogram histogram = new Histogram();
+        for (VideoEngagementBucket row : videoEngagementBucketRepo.findByVideoIdOrderByOffsetSeconds(videoId)) {
+            int bucket = row.getOffsetSeconds() / bucketSeconds;
+            histogram.add(bucket, 0, row.getJumps());
+            histogram.add(bucket, 1, row.getSquats());
+            histogram.add(bucket, 2, row.getClaps());
+            histogram.add(bucket, 3, row.getOtherMoves());
+        }
+        Histogram unflushed = pending.get(videoId);
+        if (unflushed != null) {
+            histogram.restore(unflushed.snapshot());
+        }
+        long[] counts = histogram.snapshot();
+        int buckets = counts.length / MOVE_TYPES.length;
+        int[] offsets = new int[buckets];
+        long[] total = new long[buckets];
+        Map<String, long[]> moves = new LinkedHashMap<>();
+        for (String type : MOVE_TYPES) {
+            moves.put(type.toLowerCase(), new long[buckets]);
+        }
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            offsets[bucket] = bucket * bucketSeconds;
+            for (int type = 0; type < MOVE_TYPES.length; type++) {
+                long count = counts[bucket * MOVE_TYPES.length + type];
+                moves.get(MOVE_TYPES[type].toLowerCase())[bucket] = count;
+                total[bucket] += count;
+            }
+        }
+        return new EngagementCurve(videoId, bucketSeconds, offsets, moves, total);
+    }
+
+    @Scheduled(fixedDelayString = "${engagement.flush-interval-ms:30000}")
+    public void flush() {
+        Map<Long, long[]> deltas = new LinkedHashMap<>();
+        pending.forEach((videoId, histogram) -> deltas.put(videoId, histogram.drain()));
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> batch = new ArrayList<>();
+        deltas.forEach((videoId, counts) -> {
+            for (int bucket = 0; bucket < counts.length / MOVE_TYPES.length; bucket++) {
+                int at = bucket * MOVE_TYPES.length;
+                if (counts[at] != 0 || counts[at + 1] != 0 || counts[at + 2] != 0 || counts[at + 3] != 0) {
+                    batch.add(new Object[]{videoId, bucket * bucketSeconds, counts[at], counts[at + 1],
+                            counts[at + 2], counts[at + 3], now});
+                }
+            }
+        });
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(UPSERT, batch);
+        } catch (DataAccessException e) {
+            log.warn("Engagement flush failed, keeping the deltas of {} videos for the next run", deltas.size(), e);
+            deltas.forEach((videoId, counts) -> pending.computeIfAbsent(videoId, id -> new Histogram()).restore(counts));
+        }
+    }
+
+    /** Adds the engagement of the given videos to the survivor's and drops their rows; used by the video dedup. */
+    public void merge(List<Long> videoIds, Long survivor) {
+        jdbcTemplate.update("insert into video_engagement_bucket (video_id, offset_seconds, jumps, squats, claps, " +
+                "other_moves, updated_at) select ?, offset_seconds, sum(jumps), sum(squats), sum(claps), " +
+                "sum(other_moves), ? from video_engagement_bucket where video_id in (" + placeholders(videoIds) + ") " +
+                "group by offset_seconds on duplicate key update jumps = jumps + values(jumps), " +
+                "squats = squats + values(squats), claps = claps + values(claps), " +
+                "other_moves = other_moves + values(other_moves), updated_at = values(updated_at)",
+                mergeArgs(survivor, videoIds));
+        jdbcTemplate.update("delete from video_engagement_bucket where video_id in (" + placeholders(videoIds) + ")",
+                videoIds.toArray());
+        for (Long videoId : videoIds) {
+            Histogram unflushed = pending.remove(videoId);
+            if (unflushed != null) {
+                pending.computeIfAbsent(survivor, id -> new Histogram()).restore(unflushed.drain());
+            }
+        }
+    }
+
+    private static String placeholders(List<Long> ids) {
+        return String.join(", ", Collections.nCopies(ids.size(), "?"));
+    }
+
+    private static Object[] mergeArgs(Long survivor, List<Long> videoIds) {
+        List<Object> args = new ArrayList<>();
+        args.add(survivor);
+        args.add(Timestamp.valueOf(LocalDateTime.now()));
+        args.addAll(videoIds);
+        return args.toArray();
+    }
+
+    private Long videoOf(Session session) {
+        if (session.getVideo() != null) {
+            return session.getVideo().getId();
+        }
+        if (session.getId() == null) {
+            return null;
+        }
+        if (sessionVideos.size() > SESSION_CACHE_LIMIT) {
+            sessionVideos.clear();
+        }
+        return sessionVideos.computeIfAbsent(session.getId(), id -> sessionRepo.findById(id)
+                .map(s -> s.getVideo() == null ? null : s.getVideo().getId())
+                .orElse(null));
+    }
+
+    private static int typeIndex(String type) {
+        if (type != null) {
+            for (int i = 0; i < MOVE_TYPES.length - 1; i++) {
+                if (MOVE_TYPES[i].equalsIgnoreCase(type)) {
+                    return i;
+                }
+            }
+        }
+        return MOVE_TYPES.length - 1;
+    }
+}
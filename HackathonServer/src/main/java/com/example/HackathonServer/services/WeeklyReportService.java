@@ -0,0 +1,428 @@
+package com.example.HackathonServer.services;
+
+import com.example.HackathonServer.config.ShardRoutingDataSource;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Precomputes weekly_report rows (moves by type, minutes played, average
+ * score and grade, homework) for every child and the last full Monday to
+ * Sunday week, so a weekly report is one row instead of aggregates over the
+ * raw tables.
+ * <p>
+ * Each shard's child ids are cut into ranges of weekly-report.chunk-span ids
+ * aligned to multiples of the span, and a fork-join pool splits the list of
+ * ranges in halves down to single ranges. A range is read with a few
+ * range-bounded group-by queries, and its reports are upserted in batches in
+ * the same transaction as its weekly_report_chunk row. Because the ranges are
+ * the same on every run, a rerun of the week (the nightly job, a restart of
+ * the server, or the admin endpoint) skips the ranges that already have a
+ * chunk row and picks up where the last run stopped.
+ * <p>
+ * A report is a snapshot. Moves and sessions are filed by their
+ * client-reported created_at, so rows that sync after their week was
+ * computed (a device that was offline) and CRUD edits of a finished week are
+ * not in it; running the week again with rerun recomputes every chunk.
+ * Homework is counted by the server-stamped assigned_at and completed_at,
+ * which never fall in a finished week; homework from before those columns
+ * existed has no stamps and is not counted.
+ */
+@Slf4j
+@Service
+public class WeeklyReportService {
+
+    private static final String[] REPORT_COLUMNS = {"jumps", "squats", "claps", "other_moves", "sessions",
+            "minutes_played", "scored_sessions", "average_score", "grade", "homework_assigned", "homework_completed",
+            "computed_at"};
+    private static final String UPSERT_REPORT = "insert into weekly_report (child_id, week_start, "
+            + String.join(", ", REPORT_COLUMNS) + ") values (?, ?" + ", ?".repeat(REPORT_COLUMNS.length)
+            + ") on duplicate key update " + String.join(", ",
+            Arrays.stream(REPORT_COLUMNS).map(c -> c + " = values(" + c + ")").toList());
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ShardDirectory shardDirectory;
+    @Autowired
+    private MoveArchiveService moveArchiveService;
+
+    @Value("${weekly-report.chunk-span:4096}")
+    private long chunkSpan;
+    @Value("${weekly-report.parallelism:4}")
+    private int parallelism;
+    @Value("${weekly-report.batch-size:500}")
+    private int batchSize;
+    @Value("${weekly-report.weeks-kept:104}")
+    private int weeksKept;
+
+    private ForkJoinPool pool;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile Run last;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Progress {
+        private LocalDate weekStart;
+        private String status; // RUNNING, DONE, FAILED
+        private long chunksTotal;
+        private long chunksSkipped; // written by an earlier run of the same week
+        private long chunksDone;
+        private long chunksFailed;
+        private long reports;
+        private double chunksPerSecond;
+        private LocalDateTime startedAt;
+        private LocalDateTime finishedAt;
+        private String error;
+    }
+
+    // one child's running totals while its chunk is read
+    private static class Report {
+        final long[] moves = new long[4];
+        long sessions;
+        long minutes;
+        long scored;
+        long scoreSum;
+        long homeworkAssigned;
+        long homeworkCompleted;
+    }
+
+    private static class Run {
+        final LocalDate weekStart;
+        final LocalDateTime startedAt = LocalDateTime.now();
+        final LongAdder chunksTotal = new LongAdder();
+        final LongAdder chunksSkipped = new LongAdder();
+        final LongAdder chunksDone = new LongAdder();
+        final LongAdder chunksFailed = new LongAdder();
+        final LongAdder reports = new LongAdder();
+        volatile LocalDateTime finishedAt;
+        volatile String error;
+
+        Run(LocalDate weekStart) {
+            this.weekStart = weekStart;
+        }
+
+        Progress snapshot() {
+            LocalDateTime end = finishedAt == null ? LocalDateTime.now() : finishedAt;
+            double seconds = Math.max(Duration.between(startedAt, end).toMillis(), 1) / 1000.0;
+            String status = finishedAt == null ? "RUNNING" : error == null ? "DONE" : "FAILED";
+            return new Progress(weekStart, status, chunksTotal.sum(), chunksSkipped.sum(), chunksDone.sum(),
+                    chunksFailed.sum(), reports.sum(), chunksDone.sum() / seconds, startedAt, finishedAt, error);
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdown();
+    }
+
+    @Scheduled(cron = "${weekly-report.cron:0 0 4 * * *}")
+    public void runLastWeek() {
+        start(lastWeek(), false);
+    }
+
+    // a run of last week was cut short by a shutdown: finish it rather than wait for the night
+    @EventListener(ApplicationReadyEvent.class)
+    public void resume() {
+        LocalDate week = lastWeek();
+        for (int shard = 0; shard < shardDirectory.shardCount(); shard++) {
+            Integer chunks = ShardRoutingDataSource.on(shard, () -> jdbcTemplate.queryForObject(
+                    "select count(*) from weekly_report_chunk where week_start = ?", Integer.class, Date.valueOf(week)));
+            if (chunks != null && chunks > 0) {
+                start(week, true);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes the reports of the week (moved back to its Monday) that are still missing on every shard.
+     * Returns the run's progress, or null when a run is already going.
+     */
+    public Progress start(LocalDate week, boolean async) {
+        return start(week, async, false);
+    }
+
+    /** Like {@link #start(LocalDate, boolean)}; with rerun, reports already written for the week are recomputed. */
+    public Progress start(LocalDate week, boolean async, boolean rerun) {
+        if (!running.compareAndSet(false, true)) {
+            return null;
+        }
+        Run run = new Run(weekStart(week));
+        if (rerun) {
+            try {
+                for (int shard = 0; shard < shardDirectory.shardCount(); shard++) {
+                    ShardRoutingDataSource.on(shard, () -> jdbcTemplate.update(
+                            "delete from weekly_report_chunk where week_start = ?", Date.valueOf(run.weekStart)));
+                }
+            } catch (RuntimeException e) {
+                running.set(false);
+                throw e;
+            }
+        }
+        last = run;
+        ForkJoinTask<?> task = ForkJoinTask.adapt(() -> execute(run));
+        if (async) {
+            pool.execute(task);
+        } else {
+            pool.invoke(task);
+        }
+        return run.snapshot();
+    }
+
+    /** The running or last finished run, null before the first one. */
+    public Progress progress() {
+        Run run = last;
+        return run == null ? null : run.snapshot();
+    }
+
+    public static LocalDate lastWeek() {
+        return weekStart(LocalDate.now()).minusWeeks(1);
+    }
+
+    private static LocalDate weekStart(LocalDate date) {
+        return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    }
+
+    private void execute(Run run) {
+        try {
+            List<ChunkTask> shards = new ArrayList<>();
+            for (int shard = 0; shard < shardDirectory.shardCount(); shard++) {
+                List<Long> pending = ShardRoutingDataSource.on(shard, () -> pendingChunks(run));
+                shards.add(new ChunkTask(run, shard, pending, 0, pending.size()));
+            }
+            ForkJoinTask.invokeAll(shards);
+            if (run.chunksFailed.sum() == 0) {
+                for (int shard = 0; shard < shardDirectory.shardCount(); shard++) {
+                    ShardRoutingDataSource.on(shard, () -> prune(run.weekStart));
+                }
+            }
+        } catch (RuntimeException e) {
+            run.error = e.getMessage();
+            log.warn("Weekly reports of {} failed", run.weekStart, e);
+        } finally {
+            run.finishedAt = LocalDateTime.now();
+            running.set(false);
+        }
+        Progress progress = run.snapshot();
+        log.info("Weekly reports of {}: {} chunks written, {} already done, {} failed, {} reports in {} s",
+                run.weekStart, progress.getChunksDone(), progress.getChunksSkipped(), progress.getChunksFailed(),
+                progress.getReports(), Duration.between(run.startedAt, run.finishedAt).toSeconds());
+    }
+
+    // chunk starts of the current shard without a chunk row for the week
+    private List<Long> pendingChunks(Run run) {
+        Long lo = jdbcTemplate.queryForObject("select min(id) from child", Long.class);
+        Long hi = jdbcTemplate.queryForObject("select max(id) from child", Long.class);
+        if (lo == null || hi == null) {
+            return List.of();
+        }
+        Set<Long> done = new HashSet<>(jdbcTemplate.queryForList(
+                "select chunk_start from weekly_report_chunk where week_start = ?", Long.class,
+                Date.valueOf(run.weekStart)));
+        List<Long> pending = new ArrayList<>();
+        for (long start = Math.floorDiv(lo, chunkSpan) * chunkSpan; start <= hi; start += chunkSpan) {
+            run.chunksTotal.increment();
+            if (done.contains(start)) {
+                run.chunksSkipped.increment();
+            } else {
+                pending.add(start);
+            }
+        }
+        return pending;
+    }
+
+    // halves the shard's pending chunk list until one chunk is left, then writes it
+    private class ChunkTask extends RecursiveAction {
+        private final Run run;
+        private final int shard;
+        private final List<Long> starts;
+        private final int from;
+        private final int to;
+
+        ChunkTask(Run run, int shard, List<Long> starts, int from, int to) {
+            this.run = run;
+            this.shard = shard;
+            this.starts = starts;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ChunkTask(run, shard, starts, from, mid), new ChunkTask(run, shard, starts, mid, to));
+                return;
+            }
+            if (from == to) {
+                return;
+            }
+            long start = starts.get(from);
+            try {
+                int reports = ShardRoutingDataSource.on(shard, () -> writeChunk(run.weekStart, start, start + chunkSpan));
+                run.chunksDone.increment();
+                run.reports.add(reports);
+            } catch (RuntimeException e) {
+                run.chunksFailed.increment();
+                run.error = e.getMessage();
+                log.warn("Weekly reports of {} failed for child ids [{}, {}) on shard {}", run.weekStart, start,
+                        start + chunkSpan, shard, e);
+            }
+        }
+    }
+
+    // reads and writes the reports of child ids [lo, hi) on the current shard; returns how many were written
+    private int writeChunk(LocalDate week, long lo, long hi) {
+        LocalDateTime from = week.atStartOfDay();
+        LocalDateTime to = week.plusWeeks(1).atStartOfDay();
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        Integer written = transaction.execute(status -> {
+            Map<Long, Report> reports = new LinkedHashMap<>();
+            jdbcTemplate.query("select id from child where id >= ? and id < ? order by id", rs -> {
+                reports.put(rs.getLong("id"), new Report());
+            }, lo, hi);
+            if (!reports.isEmpty()) {
+                readMoves(reports, lo, hi, from, to);
+                readSessions(reports, lo, hi, from, to);
+                jdbcTemplate.query("select child_id, " +
+                        "sum(case when assigned_at >= ? and assigned_at < ? then 1 else 0 end) as assigned, " +
+                        "sum(case when completed_at >= ? and completed_at < ? then 1 else 0 end) as completed " +
+                        "from homework where child_id >= ? and child_id < ? and (assigned_at >= ? and assigned_at < ? " +
+                        "or completed_at >= ? and completed_at < ?) group by child_id", rs -> {
+                    Report report = reports.get(rs.getLong("child_id"));
+                    if (report != null) {
+                        report.homeworkAssigned = rs.getLong("assigned");
+                        report.homeworkCompleted = rs.getLong("completed");
+                    }
+                }, Timestamp.valueOf(from), Timestamp.valueOf(to), Timestamp.valueOf(from), Timestamp.valueOf(to),
+                        lo, hi, Timestamp.valueOf(from), Timestamp.valueOf(to), Timestamp.valueOf(from),
+                        Timestamp.valueOf(to));
+                write(week, reports);
+            }
+            jdbcTemplate.update("insert into weekly_report_chunk (week_start, chunk_start, chunk_end, children, " +
+                            "completed_at) values (?, ?, ?, ?, ?) on duplicate key update chunk_end = values(chunk_end), " +
+                            "children = values(children), completed_at = values(completed_at)",
+                    Date.valueOf(week), lo, hi, reports.size(), Timestamp.valueOf(LocalDateTime.now()));
+            return reports.size();
+        });
+        return written == null ? 0 : written;
+    }
+
+    // live moves past the horizon from the move table, the rest from the archive segments of the week's months
+    private void readMoves(Map<Long, Report> reports, long lo, long hi, LocalDateTime from, LocalDateTime to) {
+        LocalDateTime horizon = moveArchiveService.horizon();
+        LocalDateTime liveFrom = horizon != null && horizon.isAfter(from) ? horizon : from;
+        if (liveFrom.isBefore(to)) {
+            jdbcTemplate.query("select child_id, type, count(*) as moves from move where child_id >= ? and child_id < ? " +
+                    "and created_at >= ? and created_at < ? group by child_id, type", rs -> {
+                Report report = reports.get(rs.getLong("child_id"));
+                if (report != null) {
+                    report.moves[ChildSummaryProjector.moveColumn(rs.getString("type"))] += rs.getLong("moves");
+                }
+            }, lo, hi, Timestamp.valueOf(liveFrom), Timestamp.valueOf(to));
+        }
+        if (horizon == null || !from.isBefore(horizon)) {
+            return;
+        }
+        List<Object[]> archived = jdbcTemplate.query("select distinct child_id, month from move_archive_total " +
+                        "where child_id >= ? and child_id < ? and month >= ? and month < ?",
+                (rs, i) -> new Object[]{rs.getLong("child_id"), rs.getDate("month").toLocalDate()},
+                lo, hi, Date.valueOf(from.toLocalDate().withDayOfMonth(1)), Date.valueOf(to.toLocalDate()));
+        for (Object[] row : archived) {
+            Report report = reports.get((Long) row[0]);
+            if (report == null) {
+                continue;
+            }
+            moveArchiveService.forEach((Long) row[0], YearMonth.from((LocalDate) row[1]), from, move -> {
+                if (move.getCreatedAt() != null && move.getCreatedAt().isBefore(to)) {
+                    report.moves[ChildSummaryProjector.moveColumn(move.getType())]++;
+                }
+            });
+        }
+    }
+
+    // sessions by the day they started, scored ones averaged like DashboardAnalyticsService.averageScore
+    private void readSessions(Map<Long, Report> reports, long lo, long hi, LocalDateTime from, LocalDateTime to) {
+        jdbcTemplate.query("select s.child_id, s.duration, sc.score from session s left join score sc on sc.id = s.score_id " +
+                "where s.child_id >= ? and s.child_id < ? and s.created_at >= ? and s.created_at < ?", rs -> {
+            Report report = reports.get(rs.getLong("child_id"));
+            if (report == null) {
+                return;
+            }
+            report.sessions++;
+            Integer minutes = ChildSummaryProjector.minutes(rs.getString("duration"));
+            if (minutes != null) {
+                report.minutes += minutes;
+            }
+            Integer score = rs.getObject("score", Integer.class);
+            if (score != null) {
+                report.scored++;
+                report.scoreSum += score;
+            }
+        }, lo, hi, Timestamp.valueOf(from), Timestamp.valueOf(to));
+    }
+
+    private void write(LocalDate week, Map<Long, Report> reports) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(reports.size());
+        reports.forEach((childId, r) -> {
+            Double average = r.scored == 0 ? null : (double) r.scoreSum / r.scored * 100;
+            rows.add(new Object[]{childId, Date.valueOf(week), r.moves[0], r.moves[1], r.moves[2], r.moves[3],
+                    r.sessions, r.minutes, r.scored, average,
+                    average == null ? null : DashboardAnalyticsService.grade(average),
+                    r.homeworkAssigned, r.homeworkCompleted, now});
+        });
+        for (int i = 0; i < rows.size(); i += batchSize) {
+            jdbcTemplate.batchUpdate(UPSERT_REPORT, rows.subList(i, Math.min(i + batchSize, rows.size())));
+        }
+    }
+
+    // chunk rows are only needed while their week can still be rerun; reports are kept weekly-report.weeks-kept weeks
+    private Void prune(LocalDate week) {
+        jdbcTemplate.update("delete from weekly_report_chunk where week_start < ?", Date.valueOf(week));
+        jdbcTemplate.update("delete from weekly_report where week_start < ?", Date.valueOf(week.minusWeeks(weeksKept)));
+        return null;
+    }
+}
@@ -0,0 +1,267 @@
+package com.example.HackathonServer.util;
+
+import com.example.HackathonServer.config.ShardRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import com.example.HackathonServer.models.Versioned;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Monotonic change versions for synced rows (homework, video, question and
+ * their tombstones), shared by every instance. Versions come from the
+ * change_version_counter row on shard 0's primary, seeded from the highest
+ * stored version on any shard at startup, in blocks of
+ * change-versions.block-size: one counter bump and one change_version_lease
+ * row per block, after which {@link #next()} and {@link #reserve(int)} are
+ * handed out in memory. A block is used for change-versions.block-ms at most;
+ * what is left of it then is skipped for good (versions only need to grow,
+ * not to be dense) and its lease is deleted once the transactions that took
+ * versions from it have completed. {@link #safeCursor()} never passes a
+ * leased version, so a client cannot skip a row that commits late, whichever
+ * instance wrote it; the cursor trails writes by about one block lifetime.
+ * Leases older than change-versions.lease-timeout-seconds (an instance that
+ * died) are ignored and swept.
+ * <p>
+ * Rows written through JPA get their version from {@link #save}, in the same
+ * transaction as the write; JDBC writers take versions inside their own
+ * transaction. A version taken outside a transaction stays leased for at
+ * least one more block lifetime, enough for the statement that follows.
+ */
+@Slf4j
+@Component
+@DependsOn("entityManagerFactory")
+public class ChangeVersions {
+
+    private static final String[] TABLES = {"homework", "video", "question", "change_tombstone"};
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    @Qualifier("shardRoutingDataSource")
+    private ShardRoutingDataSource shardRoutingDataSource;
+    @Autowired
+    @Qualifier("ingestDataSource")
+    private HikariDataSource primary;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${change-versions.lease-timeout-seconds:300}")
+    private int leaseTimeoutSeconds;
+    @Value("${change-versions.block-size:100}")
+    private int blockSize;
+    @Value("${change-versions.block-ms:1000}")
+    private long blockMillis;
+
+    // the primary pool directly: not the transaction's connection, and never a replica or another shard
+    private JdbcTemplate counter;
+    private ThreadPoolTaskScheduler scheduler;
+
+    // versions first..last under lease leaseId; guarded by this
+    private static final class Block {
+        final long last;
+        final long leaseId;
+        final long openedAt = System.currentTimeMillis();
+        long next;
+        long lastIssuedAt;
+        int inFlight; // transactions that took a version and have not completed
+
+        Block(long first, long last, long leaseId) {
+            this.next = first;
+            this.last = last;
+            this.leaseId = leaseId;
+        }
+    }
+
+    private Block current;
+    private final List<Block> retired = new ArrayList<>();
+
+    @PostConstruct
+    void seed() {
+        counter = new JdbcTemplate(primary);
+        long max = 0;
+        for (int shard = 0; shard < shardRoutingDataSource.shardCount(); shard++) {
+            for (String table : TABLES) {
+                Long version = ShardRoutingDataSource.on(shard, () -> jdbcTemplate.queryForObject(
+                        "select coalesce(max(change_version), 0) from " + table, Long.class));
+                max = Math.max(max, version == null ? 0 : version);
+            }
+        }
+        counter.update("insert into change_version_counter (id, last_version) values (1, ?) " +
+                "on duplicate key update last_version = greatest(last_version, values(last_version))", max);
+        // its own thread: on the shared @Scheduled one a long job would hold every lease, and the cursor, back
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setThreadNamePrefix("change-versions-");
+        scheduler.setPoolSize(1);
+        scheduler.initialize();
+        scheduler.scheduleWithFixedDelay(this::retireBlocks, Duration.ofMillis(Math.max(1, blockMillis / 2)));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdown();
+        List<Long> leases = new ArrayList<>();
+        synchronized (this) {
+            if (current != null) {
+                retired.add(current);
+                current = null;
+            }
+            retired.forEach(block -> leases.add(block.leaseId));
+            retired.clear();
+        }
+        leases.forEach(this::release);
+    }
+
+    /** Stamps the row with a new version and saves it in one transaction, so the lease lasts until the commit. */
+    public <T extends Versioned> T save(CrudRepository<T, ?> repository, T row) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            row.setChangeVersion(next());
+            return repository.save(row);
+        });
+    }
+
+    public long next() {
+        return reserve(1);
+    }
+
+    /** Takes count consecutive versions and returns the first; the caller uses first .. first + count - 1. */
+    public synchronized long reserve(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("count must be positive");
+        }
+        long now = System.currentTimeMillis();
+        if (current == null || current.next + count - 1 > current.last || now - current.openedAt >= blockMillis) {
+            if (current != null) {
+                retired.add(current);
+            }
+            current = null; // stays unset if the allocation fails
+            current = allocate(Math.max(blockSize, count));
+        }
+        Block block = current;
+        long first = block.next;
+        block.next += count;
+        block.lastIssuedAt = now;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            block.inFlight++;
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    synchronized (ChangeVersions.this) {
+                        block.inFlight--;
+                    }
+                }
+            });
+        }
+        return first;
+    }
+
+    /** Highest version below which every version has committed (or rolled back), on any instance. */
+    public long safeCursor() {
+        // one statement, so the counter and the leases are read from the same snapshot
+        Long cursor = counter.queryForObject("select coalesce((select min(first_version) - 1 " +
+                "from change_version_lease where taken_at > now(6) - interval ? second), " +
+                "(select last_version from change_version_counter where id = 1))", Long.class, leaseTimeoutSeconds);
+        return cursor == null ? 0 : cursor;
+    }
+
+    @Scheduled(fixedDelayString = "${change-versions.sweep-interval-ms:60000}")
+    public void sweep() {
+        int swept = counter.update("delete from change_version_lease where taken_at < now(6) - interval ? second",
+                leaseTimeoutSeconds);
+        if (swept > 0) {
+            log.warn("Swept {} change version leases older than {}s", swept, leaseTimeoutSeconds);
+        }
+    }
+
+    // retires the current block once it is too old and releases retired blocks nothing can still commit under
+    void retireBlocks() {
+        List<Long> leases = new ArrayList<>();
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            if (current != null && now - current.openedAt >= blockMillis) {
+                retired.add(current);
+                current = null;
+            }
+            retired.removeIf(block -> {
+                boolean done = block.inFlight == 0 && now - block.lastIssuedAt >= blockMillis;
+                if (done) {
+                    leases.add(block.leaseId);
+                }
+                return done;
+            });
+        }
+        leases.forEach(this::release);
+    }
+
+    // bumps the counter and records the block's lease in one transaction
+    private Block allocate(int count) {
+        return counter.execute((ConnectionCallback<Block>) connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                long last;
+                try (PreparedStatement bump = connection.prepareStatement("update change_version_counter " +
+                        "set last_version = last_insert_id(last_version + ?) where id = 1")) {
+                    bump.setInt(1, count);
+                    bump.executeUpdate();
+                }
+                try (Statement read = connection.createStatement();
+                     ResultSet rs = read.executeQuery("select last_insert_id()")) {
+                    rs.next();
+                    last = rs.getLong(1);
+                }
+                long first = last - count + 1;
+                long leaseId;
+                try (PreparedStatement insert = connection.prepareStatement("insert into change_version_lease " +
+                        "(first_version, last_version, taken_at) values (?, ?, now(6))",
+                        Statement.RETURN_GENERATED_KEYS)) {
+                    insert.setLong(1, first);
+                    insert.setLong(2, last);
+                    insert.executeUpdate();
+                    try (ResultSet keys = insert.getGeneratedKeys()) {
+                        keys.next();
+                        leaseId = keys.getLong(1);
+                    }
+                }
+                connection.commit();
+                return new Block(first, last, leaseId);
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        });
+    }
+
+    private void release(long leaseId) {
+        try {
+            counter.update("delete from change_version_lease where id = ?", leaseId);
+        } catch (RuntimeException e) {
+            // the sweep removes it after the timeout; until then the cursor waits
+            log.warn("Could not release change version lease {}", leaseId, e);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.HackathonServer.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Consistent hashing with virtual nodes: each node owns the arcs ending at
+ * its points on a 64-bit ring, and a key belongs to the first point at or
+ * after its hash. Adding a node only takes keys from its new arcs, so about
+ * 1/N of the keys move instead of nearly all of them with hash % N.
+ */
+public class ConsistentHashRing<T> {
+
+    private final NavigableMap<Long, T> ring = new TreeMap<>();
+    private final int virtualNodes;
+
+    public ConsistentHashRing(int virtualNodes) {
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("virtualNodes must be > 0");
+        }
+        this.virtualNodes = virtualNodes;
+    }
+
+    /** @param name stable name of the node; its ring points are derived from it */
+    public void add(String name, T node) {
+        for (int i = 0; i < virtualNodes; i++) {
+            ring.put(hash(name + "#" + i), node);
+        }
+    }
+
+    public T nodeFor(String key) {
+        if (ring.isEmpty()) {
+            throw new IllegalStateException("ring is empty");
+        }
+        Map.Entry<Long, T> entry = ring.ceilingEntry(hash(key));
+        return (entry != null ? entry : ring.firstEntry()).getValue();
+    }
+
+    // FNV-1a over the UTF-8 bytes, then fmix64 so neighbouring keys land far apart
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
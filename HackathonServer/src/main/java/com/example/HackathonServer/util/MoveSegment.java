@@ -0,0 +1,400 @@
+package com.example.HackathonServer.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compact archive of one child's moves (and the sessions they belong to) for
+ * one month. Moves are sorted by time and cut into blocks of BLOCK_MOVES;
+ * each block stores its columns one after another - ids as zigzag varint
+ * deltas, timestamps (microseconds) as delta-of-delta varints, type and
+ * session as run-length (code, count) pairs, offsets as varint deltas - and
+ * is Deflate-compressed on its own. A fixed-width footer holds the block
+ * index (time range, position) plus the type and session dictionaries, so a
+ * range read maps the file, binary-searches the index and inflates only the
+ * blocks it needs.
+ * <pre>
+ * file   = magic:int footerOffset:long block* footer
+ * footer = blocks:int moves:int (first:long last:long offset:long length:int rawLength:int count:int)*
+ *          types:int (length:short utf8)* sessions:int (id:long videoId:long createdAt:long endedAt:long)*
+ * </pre>
+ */
+public final class MoveSegment {
+
+    public static final String EXTENSION = ".mvs";
+    static final int BLOCK_MOVES = 1024;
+
+    private static final int MAGIC = 0x4d565331; // "MVS1"
+    private static final int INDEX_ENTRY = 8 + 8 + 8 + 4 + 4 + 4;
+    private static final int SESSION_ENTRY = 8 * 4;
+    private static final long NONE = Long.MIN_VALUE;
+
+    private MoveSegment() {
+    }
+
+    public record Row(Long id, Long sessionId, String type, Integer videoOffsetSeconds, LocalDateTime createdAt) {
+    }
+
+    public record SessionEntry(long id, Long videoId, LocalDateTime createdAt, LocalDateTime endedAt) {
+    }
+
+    /** @param rows moves of one child, any order; createdAt must be set */
+    public static void write(Path file, List<Row> rows, List<SessionEntry> sessions) throws IOException {
+        List<Row> sorted = new ArrayList<>(rows);
+        sorted.sort((a, b) -> {
+            int byTime = a.createdAt().compareTo(b.createdAt());
+            return byTime != 0 ? byTime : Long.compare(a.id(), b.id());
+        });
+        Map<String, Integer> typeCodes = new LinkedHashMap<>();
+        Map<Long, Integer> sessionCodes = new HashMap<>();
+        List<SessionEntry> sessionTable = new ArrayList<>(sessions);
+        sessionTable.sort((a, b) -> Long.compare(a.id(), b.id()));
+        for (SessionEntry session : sessionTable) {
+            sessionCodes.put(session.id(), sessionCodes.size() + 1);
+        }
+        for (Row row : sorted) {
+            if (row.type() != null) {
+                typeCodes.putIfAbsent(row.type(), typeCodes.size() + 1);
+            }
+            if (row.sessionId() != null && !sessionCodes.containsKey(row.sessionId())) {
+                sessionCodes.put(row.sessionId(), sessionCodes.size() + 1);
+                sessionTable.add(new SessionEntry(row.sessionId(), null, null, null));
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(12);
+            header.putInt(MAGIC).putLong(0).flip();
+            channel.write(header);
+            long position = 12;
+            List<long[]> index = new ArrayList<>();
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            try {
+                for (int start = 0; start < sorted.size(); start += BLOCK_MOVES) {
+                    List<Row> block = sorted.subList(start, Math.min(sorted.size(), start + BLOCK_MOVES));
+                    byte[] raw = encodeBlock(block, typeCodes, sessionCodes);
+                    byte[] compressed = deflate(deflater, raw);
+                    channel.write(ByteBuffer.wrap(compressed));
+                    index.add(new long[]{micros(block.get(0).createdAt()), micros(block.get(block.size() - 1).createdAt()),
+                            position, compressed.length, raw.length, block.size()});
+                    position += compressed.length;
+                }
+            } finally {
+                deflater.end();
+            }
+
+            ByteArrayOutputStream footer = new ByteArrayOutputStream();
+            ByteBuffer fixed = ByteBuffer.allocate(8 + index.size() * INDEX_ENTRY);
+            fixed.putInt(index.size()).putInt(sorted.size());
+            for (long[] entry : index) {
+                fixed.putLong(entry[0]).putLong(entry[1]).putLong(entry[2])
+                        .putInt((int) entry[3]).putInt((int) entry[4]).putInt((int) entry[5]);
+            }
+            footer.write(fixed.array());
+            ByteBuffer types = ByteBuffer.allocate(4).putInt(typeCodes.size());
+            footer.write(types.array());
+            for (String type : typeCodes.keySet()) {
+                byte[] utf8 = type.getBytes(StandardCharsets.UTF_8);
+                footer.write(ByteBuffer.allocate(2).putShort((short) utf8.length).array());
+                footer.write(utf8);
+            }
+            ByteBuffer table = ByteBuffer.allocate(4 + sessionTable.size() * SESSION_ENTRY);
+            table.putInt(sessionTable.size());
+            for (SessionEntry session : sessionTable) {
+                table.putLong(session.id())
+                        .putLong(session.videoId() == null ? NONE : session.videoId())
+                        .putLong(session.createdAt() == null ? NONE : micros(session.createdAt()))
+                        .putLong(session.endedAt() == null ? NONE : micros(session.endedAt()));
+            }
+            footer.write(table.array());
+            channel.write(ByteBuffer.wrap(footer.toByteArray()));
+            channel.write(ByteBuffer.allocate(8).putLong(position).flip(), 4);
+        }
+    }
+
+    public static Reader open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new Reader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /** A mapped segment; the mapping stays valid after the channel is closed. */
+    public static final class Reader {
+
+        private final MappedByteBuffer buffer;
+        private final int blocks;
+        private final int moves;
+        private final int indexStart;
+        private final List<String> types = new ArrayList<>();
+        private final List<SessionEntry> sessions = new ArrayList<>();
+
+        private Reader(MappedByteBuffer buffer) throws IOException {
+            this.buffer = buffer;
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a move segment");
+            }
+            int footer = (int) buffer.getLong(4);
+            blocks = buffer.getInt(footer);
+            moves = buffer.getInt(footer + 4);
+            indexStart = footer + 8;
+            int position = indexStart + blocks * INDEX_ENTRY;
+            int typeCount = buffer.getInt(position);
+            position += 4;
+            for (int i = 0; i < typeCount; i++) {
+                byte[] utf8 = new byte[buffer.getShort(position)];
+                buffer.get(position + 2, utf8);
+                types.add(new String(utf8, StandardCharsets.UTF_8));
+                position += 2 + utf8.length;
+            }
+            int sessionCount = buffer.getInt(position);
+            position += 4;
+            for (int i = 0; i < sessionCount; i++, position += SESSION_ENTRY) {
+                long videoId = buffer.getLong(position + 8);
+                sessions.add(new SessionEntry(buffer.getLong(position), videoId == NONE ? null : videoId,
+                        time(buffer.getLong(position + 16)), time(buffer.getLong(position + 24))));
+            }
+        }
+
+        public int moveCount() {
+            return moves;
+        }
+
+        public int byteSize() {
+            return buffer.capacity();
+        }
+
+        public List<SessionEntry> sessions() {
+            return Collections.unmodifiableList(sessions);
+        }
+
+        public boolean containsSession(long sessionId) {
+            // written sorted by id, except ids only seen on moves, which are appended
+            for (SessionEntry session : sessions) {
+                if (session.id() == sessionId) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /** Moves with from &lt;= createdAt &lt; to, oldest first; either bound may be null. */
+        public List<Row> read(LocalDateTime from, LocalDateTime to) {
+            List<Row> rows = new ArrayList<>();
+            forEach(from, to, rows::add);
+            return rows;
+        }
+
+        /** The moves {@link #read} returns, handed to the sink as each block is inflated; one block in memory. */
+        public void forEach(LocalDateTime from, LocalDateTime to, Consumer<Row> sink) {
+            long fromMicros = from == null ? Long.MIN_VALUE : micros(from);
+            long toMicros = to == null ? Long.MAX_VALUE : micros(to);
+            int low = 0;
+            int high = blocks;
+            while (low < high) { // first block whose last move is not before `from`
+                int mid = (low + high) >>> 1;
+                if (buffer.getLong(indexStart + mid * INDEX_ENTRY + 8) < fromMicros) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            Inflater inflater = new Inflater();
+            try {
+                for (int block = low; block < blocks; block++) {
+                    int entry = indexStart + block * INDEX_ENTRY;
+                    if (buffer.getLong(entry) >= toMicros) {
+                        break;
+                    }
+                    ByteBuffer compressed = buffer.slice((int) buffer.getLong(entry + 16), buffer.getInt(entry + 24));
+                    byte[] raw = new byte[buffer.getInt(entry + 28)];
+                    inflater.reset();
+                    inflater.setInput(compressed);
+                    inflater.inflate(raw);
+                    for (Row row : decodeBlock(raw, types, sessions)) {
+                        long at = micros(row.createdAt());
+                        if (at >= fromMicros && at < toMicros) {
+                            sink.accept(row);
+                        }
+                    }
+                }
+            } catch (DataFormatException e) {
+                throw new IllegalStateException("Corrupt move segment", e);
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+
+    private static byte[] encodeBlock(List<Row> block, Map<String, Integer> typeCodes, Map<Long, Integer> sessionCodes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(block.size() * 8);
+        writeVarLong(out, block.size());
+        long previousId = 0;
+        for (Row row : block) {
+            writeVarLong(out, zigzag(row.id() - previousId));
+            previousId = row.id();
+        }
+        long previousTime = 0;
+        long previousDelta = 0;
+        for (Row row : block) {
+            long time = micros(row.createdAt());
+            long delta = time - previousTime;
+            writeVarLong(out, zigzag(delta - previousDelta));
+            previousDelta = delta;
+            previousTime = time;
+        }
+        int[] types = new int[block.size()];
+        int[] sessions = new int[block.size()];
+        for (int i = 0; i < block.size(); i++) {
+            Row row = block.get(i);
+            types[i] = row.type() == null ? 0 : typeCodes.get(row.type());
+            sessions[i] = row.sessionId() == null ? 0 : sessionCodes.get(row.sessionId());
+        }
+        writeRuns(out, types);
+        writeRuns(out, sessions);
+        long previousOffset = 0;
+        for (Row row : block) {
+            if (row.videoOffsetSeconds() == null) {
+                writeVarLong(out, 0);
+            } else {
+                writeVarLong(out, zigzag(row.videoOffsetSeconds() - previousOffset) + 1);
+                previousOffset = row.videoOffsetSeconds();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static List<Row> decodeBlock(byte[] raw, List<String> types, List<SessionEntry> sessions) {
+        int[] position = {0};
+        int count = (int) readVarLong(raw, position);
+        long[] ids = new long[count];
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            previous += unzigzag(readVarLong(raw, position));
+            ids[i] = previous;
+        }
+        long[] times = new long[count];
+        long time = 0;
+        long delta = 0;
+        for (int i = 0; i < count; i++) {
+            delta += unzigzag(readVarLong(raw, position));
+            time += delta;
+            times[i] = time;
+        }
+        int[] typeCodes = readRuns(raw, position, count);
+        int[] sessionCodes = readRuns(raw, position, count);
+        List<Row> rows = new ArrayList<>(count);
+        long previousOffset = 0;
+        for (int i = 0; i < count; i++) {
+            long encoded = readVarLong(raw, position);
+            Integer offset = null;
+            if (encoded != 0) {
+                previousOffset += unzigzag(encoded - 1);
+                offset = (int) previousOffset;
+            }
+            rows.add(new Row(ids[i], sessionCodes[i] == 0 ? null : sessions.get(sessionCodes[i] - 1).id(),
+                    typeCodes[i] == 0 ? null : types.get(typeCodes[i] - 1), offset, time(times[i])));
+        }
+        return rows;
+    }
+
+    private static void writeRuns(ByteArrayOutputStream out, int[] codes) {
+        for (int i = 0; i < codes.length; ) {
+            int run = 1;
+            while (i + run < codes.length && codes[i + run] == codes[i]) {
+                run++;
+            }
+            writeVarLong(out, codes[i]);
+            writeVarLong(out, run);
+            i += run;
+        }
+    }
+
+    private static int[] readRuns(byte[] raw, int[] position, int count) {
+        int[] codes = new int[count];
+        for (int i = 0; i < count; ) {
+            int code = (int) readVarLong(raw, position);
+            int run = (int) readVarLong(raw, position);
+            Arrays.fill(codes, i, i + run, code);
+            i += run;
+        }
+        return codes;
+    }
+
+    private static byte[] deflate(Deflater deflater, byte[] raw) {
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 16);
+        byte[] chunk = new byte[4096];
+        while (!deflater.finished()) {
+            out.write(chunk, 0, deflater.deflate(chunk));
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeVarLong(OutputStream out, long value) {
+        try {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // ByteArrayOutputStream does not throw
+        }
+    }
+
+    private static long readVarLong(byte[] raw, int[] position) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = raw[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long micros(LocalDateTime time) {
+        Objects.requireNonNull(time, "createdAt");
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + time.getNano() / 1_000;
+    }
+
+    private static LocalDateTime time(long micros) {
+        if (micros == NONE) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+}
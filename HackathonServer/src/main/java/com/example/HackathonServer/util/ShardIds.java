@@ -0,0 +1,27 @@
+package com.example.HackathonServer.util;
+
+/**
+ * Row ids that say which shard they were allocated on. With sharding enabled
+ * every shard's connections run with auto_increment_increment = MAX_SHARDS
+ * and auto_increment_offset = shard + 1, so MySQL only hands shard k ids with
+ * (id - 1) % MAX_SHARDS == k, and any id can be routed without a lookup.
+ */
+public final class ShardIds {
+
+    public static final int MAX_SHARDS = 16;
+
+    private ShardIds() {
+    }
+
+    public static String initSql(int shard) {
+        if (shard < 0 || shard >= MAX_SHARDS) {
+            throw new IllegalArgumentException("shard must be in [0, " + MAX_SHARDS + ")");
+        }
+        return "set session auto_increment_increment = " + MAX_SHARDS
+                + ", auto_increment_offset = " + (shard + 1);
+    }
+
+    public static int shardOf(long id) {
+        return (int) Math.floorMod(id - 1, (long) MAX_SHARDS);
+    }
+}
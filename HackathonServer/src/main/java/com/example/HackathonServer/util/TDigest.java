@@ -0,0 +1,230 @@
+package com.example.HackathonServer.util;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Small merging t-digest (Dunning) used for approximate quantiles over large
+ * streams. Digests are mergeable, so per-cohort sketches can be combined and
+ * checkpointed as bytes. Not thread-safe; callers synchronize.
+ */
+public class TDigest {
+
+    private final double compression;
+
+    private double[] means;
+    private double[] weights;
+    private int size;
+
+    private double[] bufferMeans;
+    private double[] bufferWeights;
+    private int bufferSize;
+
+    private double totalWeight;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public TDigest(double compression) {
+        this.compression = compression;
+        int capacity = (int) Math.ceil(compression * 2) + 10;
+        this.means = new double[capacity];
+        this.weights = new double[capacity];
+        this.bufferMeans = new double[capacity * 4];
+        this.bufferWeights = new double[capacity * 4];
+    }
+
+    public void add(double x) {
+        add(x, 1);
+    }
+
+    public void add(double x, double w) {
+        if (Double.isNaN(x) || w <= 0) {
+            return;
+        }
+        if (bufferSize == bufferMeans.length) {
+            compress();
+        }
+        bufferMeans[bufferSize] = x;
+        bufferWeights[bufferSize] = w;
+        bufferSize++;
+        totalWeight += w;
+        min = Math.min(min, x);
+        max = Math.max(max, x);
+    }
+
+    public void merge(TDigest other) {
+        other.compress();
+        for (int i = 0; i < other.size; i++) {
+            add(other.means[i], other.weights[i]);
+        }
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public double size() {
+        return totalWeight;
+    }
+
+    /** Fraction of the recorded weight that is less than or equal to {@code x}. */
+    public double cdf(double x) {
+        compress();
+        if (size == 0) {
+            return Double.NaN;
+        }
+        if (x < min) {
+            return 0;
+        }
+        if (x >= max) {
+            return 1;
+        }
+        if (size == 1) {
+            return (x - min) / (max - min);
+        }
+        double cumulative = 0;
+        for (int i = 0; i < size; i++) {
+            if (x < means[i]) {
+                if (i == 0) {
+                    double span = means[0] - min;
+                    double left = weights[0] / 2;
+                    return span > 0 ? left * (x - min) / span / totalWeight : 0;
+                }
+                double base = cumulative - weights[i - 1] / 2;
+                double span = (weights[i - 1] + weights[i]) / 2;
+                double gap = means[i] - means[i - 1];
+                double fraction = gap > 0 ? (x - means[i - 1]) / gap : 0.5;
+                return (base + span * fraction) / totalWeight;
+            }
+            cumulative += weights[i];
+        }
+        double right = weights[size - 1] / 2;
+        double gap = max - means[size - 1];
+        double fraction = gap > 0 ? (x - means[size - 1]) / gap : 1;
+        return (totalWeight - right + right * fraction) / totalWeight;
+    }
+
+    /** Approximate value below which a fraction {@code q} of the weight falls. */
+    public double quantile(double q) {
+        compress();
+        if (size == 0) {
+            return Double.NaN;
+        }
+        if (size == 1 || q <= 0) {
+            return q <= 0 ? min : means[0];
+        }
+        if (q >= 1) {
+            return max;
+        }
+        double target = q * totalWeight;
+        if (target < weights[0] / 2) {
+            return min + (means[0] - min) * target / (weights[0] / 2);
+        }
+        double cumulative = weights[0] / 2;
+        for (int i = 1; i < size; i++) {
+            double step = (weights[i - 1] + weights[i]) / 2;
+            if (cumulative + step > target) {
+                double fraction = (target - cumulative) / step;
+                return means[i - 1] + (means[i] - means[i - 1]) * fraction;
+            }
+            cumulative += step;
+        }
+        double right = weights[size - 1] / 2;
+        double fraction = (target - cumulative) / right;
+        return means[size - 1] + (max - means[size - 1]) * Math.min(1, fraction);
+    }
+
+    private void compress() {
+        if (bufferSize == 0) {
+            return;
+        }
+        int n = size + bufferSize;
+        double[] allMeans = new double[n];
+        double[] allWeights = new double[n];
+        System.arraycopy(means, 0, allMeans, 0, size);
+        System.arraycopy(weights, 0, allWeights, 0, size);
+        System.arraycopy(bufferMeans, 0, allMeans, size, bufferSize);
+        System.arraycopy(bufferWeights, 0, allWeights, size, bufferSize);
+        sortByMean(allMeans, allWeights, n);
+        bufferSize = 0;
+
+        int out = 0;
+        double mean = allMeans[0];
+        double weight = allWeights[0];
+        double soFar = 0;
+        double kLeft = scale(0);
+        for (int i = 1; i < n; i++) {
+            double proposed = weight + allWeights[i];
+            if (scale((soFar + proposed) / totalWeight) - kLeft <= 1) {
+                mean += (allMeans[i] - mean) * allWeights[i] / proposed;
+                weight = proposed;
+            } else {
+                out = append(out, mean, weight);
+                soFar += weight;
+                kLeft = scale(soFar / totalWeight);
+                mean = allMeans[i];
+                weight = allWeights[i];
+            }
+        }
+        size = append(out, mean, weight);
+    }
+
+    private int append(int index, double mean, double weight) {
+        if (index == means.length) {
+            means = Arrays.copyOf(means, index * 2);
+            weights = Arrays.copyOf(weights, index * 2);
+        }
+        means[index] = mean;
+        weights[index] = weight;
+        return index + 1;
+    }
+
+    private double scale(double q) {
+        return compression / (2 * Math.PI) * Math.asin(2 * Math.min(1, Math.max(0, q)) - 1);
+    }
+
+    private static void sortByMean(double[] keys, double[] values, int n) {
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(keys[a], keys[b]));
+        double[] sortedKeys = new double[n];
+        double[] sortedValues = new double[n];
+        for (int i = 0; i < n; i++) {
+            sortedKeys[i] = keys[order[i]];
+            sortedValues[i] = values[order[i]];
+        }
+        System.arraycopy(sortedKeys, 0, keys, 0, n);
+        System.arraycopy(sortedValues, 0, values, 0, n);
+    }
+
+    public byte[] toBytes() {
+        compress();
+        ByteBuffer buffer = ByteBuffer.allocate(8 * 4 + 4 + size * 16);
+        buffer.putDouble(compression);
+        buffer.putDouble(totalWeight);
+        buffer.putDouble(min);
+        buffer.putDouble(max);
+        buffer.putInt(size);
+        for (int i = 0; i < size; i++) {
+            buffer.putDouble(means[i]);
+            buffer.putDouble(weights[i]);
+        }
+        return buffer.array();
+    }
+
+    public static TDigest fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        TDigest digest = new TDigest(buffer.getDouble());
+        double total = buffer.getDouble();
+        double min = buffer.getDouble();
+        double max = buffer.getDouble();
+        int n = buffer.getInt();
+        for (int i = 0; i < n; i++) {
+            digest.size = digest.append(digest.size, buffer.getDouble(), buffer.getDouble());
+        }
+        digest.totalWeight = total;
+        digest.min = min;
+        digest.max = max;
+        return digest;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.HackathonServer.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel. Level 0 has one slot per tick; every level above
+ * has slots as wide as the whole level below, so deadlines hours or weeks out
+ * cost a few levels instead of one slot per tick. Adding is O(1); advancing
+ * one tick fires one slot and, when a higher level's slot comes due, spreads
+ * its entries over the levels below. An item fires at the end of the tick its
+ * deadline falls in, so up to one tick late, never early. Times are epoch
+ * millis. Not thread-safe; callers synchronize.
+ */
+public final class TimingWheel<T> {
+
+    private record Entry<T>(long deadline, T item) {
+    }
+
+    private final long tickMillis;
+    private final int slots;
+    private final List<ArrayDeque<Entry<T>>[]> levels = new ArrayList<>();
+    private long time; // start of the current level-0 tick
+    private int size;
+
+    public TimingWheel(long tickMillis, int slots, long startMillis) {
+        if (tickMillis <= 0 || slots < 2) {
+            throw new IllegalArgumentException("tickMillis must be positive and slots at least 2");
+        }
+        this.tickMillis = tickMillis;
+        this.slots = slots;
+        this.time = startMillis - Math.floorMod(startMillis, tickMillis);
+    }
+
+    /** Returns false, leaving the item out, when its deadline is before the current tick: it is due now. */
+    public boolean add(long deadline, T item) {
+        if (deadline < time) {
+            return false;
+        }
+        place(new Entry<>(deadline, item));
+        size++;
+        return true;
+    }
+
+    /** Moves the wheel to now and hands every item whose tick has ended to sink, oldest tick first. */
+    public void advance(long now, Consumer<T> sink) {
+        while (time + tickMillis <= now) {
+            if (size == 0) {
+                time = now - Math.floorMod(now, tickMillis); // nothing to fire or cascade on the way
+                return;
+            }
+            ArrayDeque<Entry<T>> due = levels.get(0)[slot(0, time)];
+            time += tickMillis;
+            while (!due.isEmpty()) {
+                size--;
+                sink.accept(due.poll().item());
+            }
+            cascade();
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int levels() {
+        return levels.size();
+    }
+
+    // level i takes deadlines within its span of the start of the current tick of level i - 1
+    private void place(Entry<T> entry) {
+        long tick = tickMillis;
+        for (int level = 0; ; level++) {
+            long span = tick * slots;
+            long levelStart = time - Math.floorMod(time, tick);
+            // past the range of a long the last level takes the rest
+            if (entry.deadline() < levelStart + span || span / slots != tick) {
+                bucketsOf(level)[slot(level, entry.deadline())].add(entry);
+                return;
+            }
+            tick = span;
+        }
+    }
+
+    // the wheel entered a new tick of every level whose tick divides time: bring those slots down, highest first
+    private void cascade() {
+        int top = 0;
+        long tick = tickMillis;
+        while (top + 1 < levels.size() && Math.floorMod(time, tick * slots) == 0) {
+            tick *= slots;
+            top++;
+        }
+        for (int level = top; level > 0; level--) {
+            ArrayDeque<Entry<T>> bucket = levels.get(level)[slot(level, time)];
+            while (!bucket.isEmpty()) {
+                place(bucket.poll());
+            }
+        }
+    }
+
+    private int slot(int level, long at) {
+        long tick = tickMillis;
+        for (int i = 0; i < level; i++) {
+            tick *= slots;
+        }
+        return (int) Math.floorMod(Math.floorDiv(at, tick), (long) slots);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ArrayDeque<Entry<T>>[] bucketsOf(int level) {
+        while (levels.size() <= level) {
+            ArrayDeque<Entry<T>>[] buckets = new ArrayDeque[slots];
+            for (int i = 0; i < slots; i++) {
+                buckets[i] = new ArrayDeque<>();
+            }
+            levels.add(buckets);
+        }
+        return levels.get(level);
+    }
+}
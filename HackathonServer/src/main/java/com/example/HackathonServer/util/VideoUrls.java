@@ -0,0 +1,90 @@
+package com.example.HackathonServer.util;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Canonical catalog keys for video URLs. Every YouTube URL form (watch,
+ * youtu.be, embed, shorts, mobile) maps to "yt:&lt;id&gt;"; anything else is
+ * reduced to a normalized "url:" form (lower-case host without www, no
+ * fragment or trailing slash, sorted query parameters).
+ */
+public final class VideoUrls {
+
+    private static final Pattern YOUTUBE_ID = Pattern.compile("[A-Za-z0-9_-]{11}");
+    private static final Pattern YOUTUBE_PATH = Pattern.compile("^/(?:embed|shorts|v|live)/([A-Za-z0-9_-]{11})");
+
+    private VideoUrls() {
+    }
+
+    public static String canonicalKey(String url) {
+        String trimmed = url.trim();
+        URI uri;
+        try {
+            uri = new URI(trimmed.contains("://") ? trimmed : "https://" + trimmed);
+        } catch (URISyntaxException e) {
+            return "url:" + trimmed.toLowerCase(Locale.ROOT);
+        }
+        String host = uri.getHost() == null ? "" : uri.getHost().toLowerCase(Locale.ROOT);
+        if (host.startsWith("www.")) {
+            host = host.substring(4);
+        }
+        String path = uri.getRawPath() == null ? "" : uri.getRawPath();
+        String youtubeId = youtubeId(host, path, uri.getRawQuery());
+        if (youtubeId != null) {
+            return "yt:" + youtubeId;
+        }
+        while (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        String query = uri.getRawQuery() == null ? "" : Arrays.stream(uri.getRawQuery().split("&"))
+                .filter(p -> !p.isEmpty())
+                .sorted()
+                .collect(Collectors.joining("&"));
+        return "url:" + host + path + (query.isEmpty() ? "" : "?" + query);
+    }
+
+    /** Fixed-length SHA-256 hex of the canonical key, used for the unique index. */
+    public static String keyHash(String canonicalKey) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha.digest(canonicalKey.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String youtubeId(String host, String path, String query) {
+        if (host.equals("youtu.be")) {
+            String id = path.startsWith("/") ? path.substring(1) : path;
+            int slash = id.indexOf('/');
+            id = slash >= 0 ? id.substring(0, slash) : id;
+            return YOUTUBE_ID.matcher(id).matches() ? id : null;
+        }
+        if (!host.equals("youtube.com") && !host.endsWith(".youtube.com")
+                && !host.equals("youtube-nocookie.com")) {
+            return null;
+        }
+        Matcher matcher = YOUTUBE_PATH.matcher(path);
+        if (matcher.find()) {
+            return matcher.group(1);
+        }
+        if (query != null) {
+            for (String param : query.split("&")) {
+                if (param.startsWith("v=") && YOUTUBE_ID.matcher(param.substring(2)).matches()) {
+                    return param.substring(2);
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.HackathonServer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * p99 latency of POST /move from a few game clients, alone and while many
+ * dashboard clients refresh their summaries, over real HTTP against a live
+ * MySQL: run with -Dit.shard0.url=jdbc:mysql://.../db (an empty schema) and
+ * optionally -Dit.mysql.username / -Dit.mysql.password. Prints both
+ * percentiles and the dashboard requests served and shed; asserts only that
+ * every move was stored and that the dashboards did not multiply ingest p99.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@EnabledIfSystemProperty(named = "it.shard0.url", matches = ".+")
+class MixedLoadBenchmarkTest {
+
+    private static final int GAME_CLIENTS = 8;
+    private static final int MOVES_PER_CLIENT = 300;
+    private static final int DASHBOARD_CLIENTS = 48;
+
+    @LocalServerPort
+    private int port;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final List<Long> childIds = new ArrayList<>();
+    private final Map<Long, Long> sessionIds = new HashMap<>();
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getProperty("it.shard0.url"));
+        registry.add("spring.datasource.username", () -> System.getProperty("it.mysql.username", "root"));
+        registry.add("spring.datasource.password", () -> System.getProperty("it.mysql.password", ""));
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "update");
+        // measure the bulkhead, not the per-child admission limits
+        registry.add("admission.child.rate-per-second", () -> "100000");
+        registry.add("admission.child.burst", () -> "100000");
+        registry.add("admission.parent.rate-per-second", () -> "100000");
+        registry.add("admission.parent.burst", () -> "100000");
+    }
+
+    @BeforeEach
+    void setUp() {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        long parentId = insert("insert into parent (full_name, username, email, password) values (?, ?, ?, ?)",
+                "Parent", "load-" + suffix, "load-" + suffix + "@example.com", "x");
+        long videoId = insert("insert into video (title, url) values (?, ?)", "Stretch",
+                "https://example.com/load-" + suffix);
+        for (int i = 0; i < GAME_CLIENTS; i++) {
+            long childId = insert("insert into child (parent_id, full_name, date_of_birth) values (?, ?, '2018-01-01')",
+                    parentId, "Child " + i);
+            childIds.add(childId);
+            sessionIds.put(childId, insert("insert into session (child_id, video_id, status, created_at) " +
+                    "values (?, ?, 'STARTED', now())", childId, videoId));
+        }
+    }
+
+    @Test
+    void dashboardsDoNotStallIngest() throws Exception {
+        long alone = p99(ingest());
+        AtomicLong served = new AtomicLong();
+        AtomicLong shed = new AtomicLong();
+        List<Long> mixedLatencies = ingestUnderDashboards(served, shed);
+        long mixed = p99(mixedLatencies);
+
+        System.out.printf("POST /move p99: %.1f ms alone, %.1f ms with %d dashboard clients " +
+                "(%d summaries served, %d shed with 503)%n", alone / 1e6, mixed / 1e6, DASHBOARD_CLIENTS,
+                served.get(), shed.get());
+        Long stored = jdbcTemplate.queryForObject("select count(*) from move where child_id in (" +
+                String.join(", ", Collections.nCopies(childIds.size(), "?")) + ")", Long.class, childIds.toArray());
+        assertThat(stored).isEqualTo(2L * GAME_CLIENTS * MOVES_PER_CLIENT);
+        assertThat(mixed).isLessThan(Math.max(5 * alone, alone + 50_000_000L));
+    }
+
+    private List<Long> ingestUnderDashboards(AtomicLong served, AtomicLong shed) throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService dashboards = Executors.newFixedThreadPool(DASHBOARD_CLIENTS);
+        String[] summaries = {"/move/last7days/%d", "/move/last30days/%d", "/score/%d/last-week/average",
+                "/score/%d/last-month/grade", "/session/%d/last-week/total-hour"};
+        for (int i = 0; i < DASHBOARD_CLIENTS; i++) {
+            int client = i;
+            dashboards.submit(() -> {
+                for (int n = 0; running.get(); n++) {
+                    String path = String.format(summaries[(client + n) % summaries.length],
+                            childIds.get((client + n) % childIds.size()));
+                    int status = send(HttpRequest.newBuilder(uri(path)).GET()).statusCode();
+                    (status == 503 ? shed : served).incrementAndGet();
+                }
+                return null;
+            });
+        }
+        try {
+            Thread.sleep(500); // let the dashboards saturate the analytics bulkhead first
+            return ingest();
+        } finally {
+            running.set(false);
+            dashboards.shutdown();
+        }
+    }
+
+    // nanoseconds per POST /move, every game client's moves together
+    private List<Long> ingest() throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(GAME_CLIENTS);
+        List<Future<List<Long>>> parts = new ArrayList<>();
+        for (Long childId : childIds) {
+            parts.add(clients.submit(() -> {
+                List<Long> latencies = new ArrayList<>(MOVES_PER_CLIENT);
+                for (int m = 0; m < MOVES_PER_CLIENT; m++) {
+                    String body = "{\"type\":\"jump\",\"child\":{\"id\":" + childId + "},\"session\":{\"id\":"
+                            + sessionIds.get(childId) + "},\"clientEventId\":\"" + UUID.randomUUID() + "\"}";
+                    long started = System.nanoTime();
+                    HttpResponse<String> response = send(HttpRequest.newBuilder(uri("/move"))
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString(body)));
+                    latencies.add(System.nanoTime() - started);
+                    assertThat(response.statusCode()).isEqualTo(200);
+                }
+                return latencies;
+            }));
+        }
+        List<Long> latencies = new ArrayList<>();
+        for (Future<List<Long>> part : parts) {
+            latencies.addAll(part.get());
+        }
+        clients.shutdown();
+        return latencies;
+    }
+
+    private static long p99(List<Long> latencies) {
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        return sorted.get((int) Math.ceil(sorted.size() * 0.99) - 1);
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) {
+        try {
+            return http.send(request.timeout(Duration.ofSeconds(30)).build(), HttpResponse.BodyHandlers.ofString());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private long insert(String sql, Object... args) {
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            for (int i = 0; i < args.length; i++) {
+                ps.setObject(i + 1, args[i]);
+            }
+            return ps;
+        }, keys);
+        return keys.getKey().longValue();
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.HackathonServer;
+
+import com.example.HackathonServer.repos.ChildRepo;
+import com.example.HackathonServer.services.ReadModelService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A child's recent sessions served the old way (the entity graph, serialized
+ * inside the transaction so Jackson loads moves and scores lazily) and the
+ * new way (ReadModelService's record DTOs). Prints statements, median latency
+ * and bytes allocated per request for both; run against a live MySQL with
+ * -Dit.shard0.url=jdbc:mysql://.../db (an empty schema) and optionally
+ * -Dit.mysql.username / -Dit.mysql.password.
+ */
+@SpringBootTest
+@EnabledIfSystemProperty(named = "it.shard0.url", matches = ".+")
+class ReadModelBenchmarkTest {
+
+    private static final int SESSIONS = 200;
+    private static final int MOVES_PER_SESSION = 30;
+    private static final int ROUNDS = 30;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private ChildRepo childRepo;
+    @Autowired
+    private ReadModelService readModelService;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private long childId;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getProperty("it.shard0.url"));
+        registry.add("spring.datasource.username", () -> System.getProperty("it.mysql.username", "root"));
+        registry.add("spring.datasource.password", () -> System.getProperty("it.mysql.password", ""));
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "update");
+        registry.add("spring.jpa.properties.hibernate.generate_statistics", () -> "true");
+    }
+
+    @BeforeEach
+    void setUp() {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        long parentId = insert("insert into parent (full_name, username, email, password) values (?, ?, ?, ?)",
+                "Parent", "bench-" + suffix, "bench-" + suffix + "@example.com", "x");
+        childId = insert("insert into child (parent_id, full_name, date_of_birth) values (?, ?, '2018-01-01')",
+                parentId, "Child");
+        long videoId = insert("insert into video (title, url) values (?, ?)", "Stretch",
+                "https://example.com/bench-" + suffix);
+        LocalDateTime start = LocalDateTime.now().minusDays(20);
+        List<Object[]> moves = new ArrayList<>();
+        for (int s = 0; s < SESSIONS; s++) {
+            LocalDateTime at = start.plusHours(2L * s);
+            long scoreId = insert("insert into score (score, percentage) values (?, ?)", s % 10, (s % 10) * 10.0);
+            long sessionId = insert("insert into session (child_id, video_id, status, created_at, ended_at, " +
+                            "duration, score_id) values (?, ?, 'ENDED', ?, ?, '00:09:00', ?)", childId, videoId,
+                    Timestamp.valueOf(at), Timestamp.valueOf(at.plusMinutes(9)), scoreId);
+            for (int m = 0; m < MOVES_PER_SESSION; m++) {
+                moves.add(new Object[]{childId, sessionId, m % 2 == 0 ? "jump" : "squat", m * 10,
+                        Timestamp.valueOf(at.plusSeconds(10L * m))});
+            }
+        }
+        jdbcTemplate.batchUpdate("insert into move (child_id, session_id, type, video_offset_seconds, created_at) " +
+                "values (?, ?, ?, ?, ?)", moves);
+    }
+
+    @Test
+    void dtosTakeFewerStatementsThanTheEntityGraph() throws Exception {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        // the pre-DTO endpoint: child.getSessions() serialized while the session is open
+        Result entities = measure("entities", () -> readOnly.execute(status -> serialize(
+                childRepo.findById(childId).orElseThrow().getSessions())));
+        Result dtos = measure("DTOs", () -> serialize(readModelService.recentSessions(childId)));
+
+        assertThat(dtos.statements).isLessThan(entities.statements);
+        assertThat(dtos.statements).isLessThanOrEqualTo(4);
+    }
+
+    private byte[] serialize(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Result measure(String name, Supplier<byte[]> request) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        request.get(); // warm up
+        statistics.clear();
+        int bytes = request.get().length;
+        long statements = statistics.getPrepareStatementCount();
+        long[] nanos = new long[ROUNDS];
+        long allocated = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+            long started = System.nanoTime();
+            request.get();
+            nanos[i] = System.nanoTime() - started;
+            allocated += threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        }
+        Arrays.sort(nanos);
+        Result result = new Result(statements, nanos[ROUNDS / 2], allocated / ROUNDS);
+        System.out.printf("recent sessions as %s: %d statements, median %.2f ms, %d KB allocated, %d bytes%n", name,
+                result.statements, result.medianNanos / 1e6, result.allocatedBytes / 1024, bytes);
+        return result;
+    }
+
+    private record Result(long statements, long medianNanos, long allocatedBytes) {
+    }
+
+    private long insert(String sql, Object... args) {
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            for (int i = 0; i < args.length; i++) {
+                ps.setObject(i + 1, args[i]);
+            }
+            return ps;
+        }, keys);
+        return keys.getKey().longValue();
+    }
+}
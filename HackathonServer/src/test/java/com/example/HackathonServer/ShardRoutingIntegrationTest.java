@@ -0,0 +1,170 @@
+package com.example.HackathonServer;
+
+import com.example.HackathonServer.config.ShardRoutingDataSource;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Two shards on a live MySQL: run with -Dit.shard0.url=jdbc:mysql://.../shard0
+ * -Dit.shard1.url=jdbc:mysql://.../shard1 (two empty schemas) and optionally
+ * -Dit.mysql.username / -Dit.mysql.password. Hibernate creates the schema on
+ * shard 0; setUp copies it to shard 1.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@EnabledIfSystemProperty(named = "it.shard1.url", matches = ".+")
+class ShardRoutingIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private long parentId;
+    private long childId;
+    private long videoId;
+
+    @DynamicPropertySource
+    static void shards(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getProperty("it.shard0.url"));
+        registry.add("spring.datasource.username", () -> System.getProperty("it.mysql.username", "root"));
+        registry.add("spring.datasource.password", () -> System.getProperty("it.mysql.password", ""));
+        registry.add("sharding.datasource.urls", () -> System.getProperty("it.shard1.url"));
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "update");
+    }
+
+    @BeforeEach
+    void setUp() {
+        copySchemaToShard1();
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        ShardRoutingDataSource.on(1, () -> {
+            parentId = insert("insert into parent (full_name, username, email, password) values (?, ?, ?, ?)",
+                    "Parent", "it-" + suffix, "it-" + suffix + "@example.com", "x");
+            childId = insert("insert into child (parent_id, full_name, date_of_birth) values (?, ?, '2018-01-01')",
+                    parentId, "Child");
+            videoId = insert("insert into video (title, url) values (?, ?)", "Stretch", "https://example.com/" + suffix);
+            return null;
+        });
+        assertThat(childId % 16).isEqualTo(2); // (id - 1) % 16 == 1: allocated on shard 1
+    }
+
+    @Test
+    void ingestWritesLandOnTheChildsShard() throws Exception {
+        String eventId = UUID.randomUUID().toString();
+        mockMvc.perform(post("/session").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"child\":{\"id\":" + childId + "},\"video\":{\"id\":" + videoId + "},"
+                                + "\"clientEventId\":\"" + eventId + "\"}"))
+                .andExpect(status().isOk());
+        Long sessionId = onShard(1, "select id from session where client_event_id = ?", eventId);
+        assertThat(sessionId).isNotNull();
+        assertThat(onShard(0, "select id from session where client_event_id = ?", eventId)).isNull();
+
+        // moves route by the child they name
+        mockMvc.perform(post("/move").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"type\":\"jump\",\"child\":{\"id\":" + childId + "},\"session\":{\"id\":" + sessionId + "}}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/move").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"type\":\"squat\",\"child\":{\"id\":" + childId + "},\"session\":{\"id\":" + sessionId + "}}"))
+                .andExpect(status().isOk());
+        assertThat(count(1, "select count(*) from move where session_id = ?", sessionId)).isEqualTo(2);
+        assertThat(count(0, "select count(*) from move where session_id = ?", sessionId)).isZero();
+
+        // scores are only written by ending the session, routed by the session id
+        mockMvc.perform(post("/session/" + sessionId + "/end"))
+                .andExpect(status().isOk());
+        assertThat(count(1, "select count(*) from score where session_id = ?", sessionId)).isEqualTo(1);
+    }
+
+    // shards allocate ids 16 apart, so the driver's consecutive generated keys of a multi-row insert would be wrong
+    @Test
+    void bulkHomeworkReturnsTheIdOfEachChildsRow() throws Exception {
+        String child = "insert into child (parent_id, full_name, date_of_birth) values (?, ?, '2018-01-01')";
+        List<Long> children = ShardRoutingDataSource.on(1, () -> List.of(childId,
+                insert(child, parentId, "Second"), insert(child, parentId, "Third")));
+        String body = mockMvc.perform(post("/homework/bulk").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Stretch\",\"url\":\"https://example.com/bulk-" + UUID.randomUUID()
+                                + "\",\"parentId\":" + parentId + ",\"childIds\":" + children + "}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        JsonNode results = objectMapper.readTree(body);
+        assertThat(results).hasSize(3);
+        List<Long> homeworkIds = new ArrayList<>();
+        for (JsonNode result : results) {
+            assertThat(result.get("status").asText()).isEqualTo("CREATED");
+            long homeworkId = result.get("homeworkId").asLong();
+            assertThat(onShard(1, "select child_id from homework where id = ?", homeworkId))
+                    .isEqualTo(result.get("childId").asLong());
+            homeworkIds.add(homeworkId);
+        }
+        assertThat(homeworkIds).doesNotHaveDuplicates();
+        assertThat(homeworkIds).allMatch(id -> id % 16 == 2);
+    }
+
+    private long insert(String sql, Object... args) {
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            for (int i = 0; i < args.length; i++) {
+                ps.setObject(i + 1, args[i]);
+            }
+            return ps;
+        }, keys);
+        return keys.getKey().longValue();
+    }
+
+    private Long onShard(int shard, String sql, Object... args) {
+        return ShardRoutingDataSource.on(shard, () -> {
+            List<Long> ids = jdbcTemplate.queryForList(sql, Long.class, args);
+            return ids.isEmpty() ? null : ids.get(0);
+        });
+    }
+
+    private long count(int shard, String sql, Object... args) {
+        Long count = ShardRoutingDataSource.on(shard, () -> jdbcTemplate.queryForObject(sql, Long.class, args));
+        return count == null ? 0 : count;
+    }
+
+    // the application does not manage the schema of extra shards; give shard 1 shard 0's tables
+    private void copySchemaToShard1() {
+        List<String> ddl = ShardRoutingDataSource.on(0, () -> jdbcTemplate.queryForList("show tables", String.class)
+                .stream().map(table -> jdbcTemplate.queryForMap("show create table `" + table + "`")
+                        .get("Create Table").toString()).toList());
+        ShardRoutingDataSource.on(1, () -> jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            JdbcTemplate single = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+            single.execute("set foreign_key_checks = 0");
+            for (String create : ddl) {
+                single.execute(create.replaceFirst("CREATE TABLE", "CREATE TABLE IF NOT EXISTS"));
+            }
+            single.execute("set foreign_key_checks = 1");
+            return null;
+        }));
+    }
+}
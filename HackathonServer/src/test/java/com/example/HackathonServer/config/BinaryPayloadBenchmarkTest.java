@@ -0,0 +1,97 @@
+package com.example.HackathonServer.config;
+
+import com.example.HackathonServer.dto.MoveDTO;
+import com.example.HackathonServer.dto.ScoreDTO;
+import com.example.HackathonServer.dto.SessionDTO;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Payload size and serialization time of 10k moves and 10k sessions as JSON,
+ * CBOR and Smile, with mappers configured the way WebConfig configures the
+ * converters. Prints one line per format; asserts only what does not depend
+ * on the machine (round trips, and binary being smaller).
+ */
+class BinaryPayloadBenchmarkTest {
+
+    private static final int ELEMENTS = 10_000;
+    private static final int ROUNDS = 20;
+    private static final LocalDateTime START = LocalDateTime.of(2025, 3, 1, 8, 0);
+    private static final String[] TYPES = {"JUMP", "SQUAT", "CLAP"};
+
+    @Test
+    void movesAreSmallerInBinaryFormats() throws Exception {
+        List<MoveDTO> moves = new ArrayList<>(ELEMENTS);
+        for (int i = 0; i < ELEMENTS; i++) {
+            moves.add(move(i));
+        }
+        Map<String, Integer> sizes = measure("List<Move>", moves, new TypeReference<List<MoveDTO>>() {
+        });
+        assertThat(sizes.get("cbor")).isLessThan(sizes.get("json"));
+        assertThat(sizes.get("smile")).isLessThan(sizes.get("json"));
+    }
+
+    @Test
+    void sessionsAreSmallerInBinaryFormats() throws Exception {
+        List<SessionDTO> sessions = new ArrayList<>(ELEMENTS);
+        for (int i = 0; i < ELEMENTS; i++) {
+            LocalDateTime created = START.plusMinutes(i * 15L);
+            sessions.add(new SessionDTO((long) i, 40L + i % 25, "ENDED", created, created.plusMinutes(9), "00:09:00",
+                    new ScoreDTO((long) i, i % 10, (i % 10) * 10.0), List.of(move(3 * i), move(3 * i + 1))));
+        }
+        Map<String, Integer> sizes = measure("List<Session>", sessions, new TypeReference<List<SessionDTO>>() {
+        });
+        assertThat(sizes.get("cbor")).isLessThan(sizes.get("json"));
+        assertThat(sizes.get("smile")).isLessThan(sizes.get("json"));
+    }
+
+    private static MoveDTO move(int i) {
+        return new MoveDTO(1_000L + 16L * i, 1L + i / 300, TYPES[i % TYPES.length], i % 600,
+                START.plusNanos(750_000_000L * i));
+    }
+
+    private static <T> Map<String, Integer> measure(String payload, List<T> value, TypeReference<List<T>> type)
+            throws Exception {
+        Map<String, ObjectMapper> mappers = new LinkedHashMap<>();
+        mappers.put("json", configure(Jackson2ObjectMapperBuilder.json()));
+        mappers.put("cbor", configure(Jackson2ObjectMapperBuilder.cbor()));
+        mappers.put("smile", configure(Jackson2ObjectMapperBuilder.smile()));
+        Map<String, Integer> sizes = new LinkedHashMap<>();
+        for (Map.Entry<String, ObjectMapper> entry : mappers.entrySet()) {
+            ObjectMapper mapper = entry.getValue();
+            byte[] bytes = mapper.writeValueAsBytes(value);
+            assertThat(mapper.readValue(bytes, type)).isEqualTo(value);
+            long bestWrite = Long.MAX_VALUE;
+            long bestRead = Long.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++) { // best of, after the first rounds warm up the JIT
+                long started = System.nanoTime();
+                mapper.writeValueAsBytes(value);
+                bestWrite = Math.min(bestWrite, System.nanoTime() - started);
+                started = System.nanoTime();
+                mapper.readValue(bytes, type);
+                bestRead = Math.min(bestRead, System.nanoTime() - started);
+            }
+            System.out.printf("%s x %d as %s: %d bytes (%.1f per element), write %.2f ms, read %.2f ms%n", payload,
+                    value.size(), entry.getKey(), bytes.length, (double) bytes.length / value.size(),
+                    bestWrite / 1e6, bestRead / 1e6);
+            sizes.put(entry.getKey(), bytes.length);
+        }
+        return sizes;
+    }
+
+    // what Spring Boot's builder adds for the JSON mapper: java.time support and ISO dates
+    private static ObjectMapper configure(Jackson2ObjectMapperBuilder builder) {
+        return builder.featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+    }
+}
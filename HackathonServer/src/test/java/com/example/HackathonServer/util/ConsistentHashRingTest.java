@@ -0,0 +1,76 @@
+package com.example.HackathonServer.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConsistentHashRingTest {
+
+    private static final int KEYS = 40_000;
+
+    @Test
+    void placementIsStableAcrossRingsBuiltTheSameWay() {
+        ConsistentHashRing<Integer> first = ring(4, 128);
+        ConsistentHashRing<Integer> second = ring(4, 128);
+        for (int i = 0; i < 1_000; i++) {
+            assertThat(second.nodeFor("parent-" + i)).isEqualTo(first.nodeFor("parent-" + i));
+        }
+    }
+
+    @Test
+    void virtualNodesSpreadKeysEvenly() {
+        Map<Integer, Integer> counts = new HashMap<>();
+        ConsistentHashRing<Integer> ring = ring(4, 128);
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.nodeFor("parent-" + i), 1, Integer::sum);
+        }
+        assertThat(counts).hasSize(4);
+        for (int count : counts.values()) {
+            assertThat(count).isBetween(KEYS / 4 * 8 / 10, KEYS / 4 * 12 / 10);
+        }
+    }
+
+    @Test
+    void addingANodeOnlyMovesKeysToIt() {
+        ConsistentHashRing<Integer> before = ring(4, 128);
+        ConsistentHashRing<Integer> after = ring(5, 128);
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            int was = before.nodeFor("parent-" + i);
+            int now = after.nodeFor("parent-" + i);
+            if (was != now) {
+                assertThat(now).isEqualTo(4);
+                moved++;
+            }
+        }
+        // about 1/5 of the keys; hash % N would move 4/5
+        assertThat(moved).isBetween(KEYS / 5 * 7 / 10, KEYS / 5 * 13 / 10);
+    }
+
+    @Test
+    void hashSpreadsNeighbouringKeys() {
+        assertThat(ConsistentHashRing.hash("parent-1")).isNotEqualTo(ConsistentHashRing.hash("parent-2"));
+        assertThat(Long.bitCount(ConsistentHashRing.hash("parent-1") ^ ConsistentHashRing.hash("parent-2")))
+                .isBetween(16, 48);
+    }
+
+    @Test
+    void rejectsEmptyRingsAndZeroVirtualNodes() {
+        assertThatThrownBy(() -> new ConsistentHashRing<Integer>(4).nodeFor("parent-1"))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> new ConsistentHashRing<Integer>(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // named like ShardDirectory names its shards
+    private static ConsistentHashRing<Integer> ring(int shards, int virtualNodes) {
+        ConsistentHashRing<Integer> ring = new ConsistentHashRing<>(virtualNodes);
+        for (int shard = 0; shard < shards; shard++) {
+            ring.add("shard-" + shard, shard);
+        }
+        return ring;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.HackathonServer.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CsvReaderTest {
+
+    @Test
+    void splitsPlainRecordsOnCommasAndLineBreaks() throws IOException {
+        assertThat(readAll("a,b,c\n1,2,3\r\n4,,6")).containsExactly(
+                List.of("a", "b", "c"), List.of("1", "2", "3"), List.of("4", "", "6"));
+    }
+
+    @Test
+    void quotedFieldsKeepCommasLineBreaksAndDoubledQuotes() throws IOException {
+        String csv = "text,answer\n"
+                + "\"Which is bigger, 3 or 5?\",5\n"
+                + "\"Two\nlines\",\"She said \"\"hi\"\"\"\n"
+                + "\"\",\"\"\"\"\n";
+        assertThat(readAll(csv)).containsExactly(
+                List.of("text", "answer"),
+                List.of("Which is bigger, 3 or 5?", "5"),
+                List.of("Two\nlines", "She said \"hi\""),
+                List.of("", "\""));
+    }
+
+    @Test
+    void skipsBlankLinesAndReturnsNullAtTheEnd() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader("\n\r\na\n\n\nb\n\n"));
+        assertThat(reader.next()).containsExactly("a");
+        assertThat(reader.next()).containsExactly("b");
+        assertThat(reader.next()).isNull();
+        assertThat(reader.next()).isNull();
+        assertThat(new CsvReader(new StringReader("")).next()).isNull();
+    }
+
+    @Test
+    void quotesInsideAnUnquotedFieldAreLiteral() throws IOException {
+        assertThat(readAll("5\" ruler,x\"y\"")).containsExactly(List.of("5\" ruler", "x\"y\""));
+    }
+
+    @Test
+    void rejectsAnUnterminatedQuotedField() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader("a,b\n\"open,c\nd,e\n"));
+        assertThat(reader.next()).containsExactly("a", "b");
+        assertThatThrownBy(reader::next)
+                .isInstanceOf(CsvReader.MalformedCsvException.class)
+                .hasMessageContaining("Unterminated");
+    }
+
+    private static List<List<String>> readAll(String csv) throws IOException {
+        CsvReader reader = new CsvReader(new StringReader(csv));
+        List<List<String>> records = new ArrayList<>();
+        for (List<String> record = reader.next(); record != null; record = reader.next()) {
+            records.add(record);
+        }
+        return records;
+    }
+}
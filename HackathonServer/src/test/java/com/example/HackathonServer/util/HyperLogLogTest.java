@@ -0,0 +1,90 @@
+package com.example.HackathonServer.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class HyperLogLogTest {
+
+    @Test
+    void estimatesSequentialIdsWithinTheStandardError() {
+        // precision 14: 1.04 / sqrt(16384) is about 0.8%
+        for (int count : new int[]{1_000, 50_000, 1_000_000}) {
+            HyperLogLog sketch = new HyperLogLog(14);
+            for (long id = 1; id <= count; id++) {
+                sketch.add(id);
+            }
+            assertThat((double) sketch.estimate()).isCloseTo(count, within(count * 0.03));
+        }
+    }
+
+    @Test
+    void smallCountsAreNearlyExact() {
+        HyperLogLog sketch = new HyperLogLog(14);
+        assertThat(sketch.estimate()).isZero();
+        for (long id = 100; id < 110; id++) {
+            sketch.add(id);
+        }
+        assertThat(sketch.estimate()).isEqualTo(10);
+    }
+
+    @Test
+    void repeatsDoNotCountAndDoNotChangeRegisters() {
+        HyperLogLog sketch = new HyperLogLog(12);
+        for (long id = 1; id <= 5_000; id++) {
+            sketch.add(id);
+        }
+        long estimate = sketch.estimate();
+        boolean changed = false;
+        for (long id = 1; id <= 5_000; id++) {
+            changed |= sketch.add(id);
+        }
+        assertThat(changed).isFalse();
+        assertThat(sketch.estimate()).isEqualTo(estimate);
+    }
+
+    @Test
+    void mergeCountsTheUnionOnce() {
+        // two days with 20k users in common
+        HyperLogLog monday = new HyperLogLog(14);
+        HyperLogLog tuesday = new HyperLogLog(14);
+        for (long id = 1; id <= 60_000; id++) {
+            monday.add(id);
+        }
+        for (long id = 40_001; id <= 100_000; id++) {
+            tuesday.add(id);
+        }
+        HyperLogLog week = monday.copy();
+        week.merge(tuesday);
+
+        assertThat((double) week.estimate()).isCloseTo(100_000, within(3_000.0));
+        // the copy is independent of the sketch it came from
+        assertThat((double) monday.estimate()).isCloseTo(60_000, within(1_800.0));
+    }
+
+    @Test
+    void bytesRoundTrip() {
+        HyperLogLog sketch = new HyperLogLog(10);
+        for (long id = 1; id <= 3_000; id++) {
+            sketch.add(id * 7);
+        }
+        byte[] bytes = sketch.toBytes();
+        HyperLogLog restored = HyperLogLog.fromBytes(bytes);
+
+        assertThat(bytes).hasSize(1 << 10);
+        assertThat(restored.estimate()).isEqualTo(sketch.estimate());
+        assertThat(restored.toBytes()).isEqualTo(bytes);
+        assertThat(restored.add(3)).isEqualTo(sketch.add(3));
+    }
+
+    @Test
+    void rejectsMismatchedPrecisionAndBadInput() {
+        HyperLogLog sketch = new HyperLogLog(12);
+        assertThatThrownBy(() -> sketch.merge(new HyperLogLog(14))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new HyperLogLog(3)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new HyperLogLog(19)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> HyperLogLog.fromBytes(new byte[1000])).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.HackathonServer.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MoveSegmentTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 3, 1, 8, 0);
+    private static final String[] TYPES = {"JUMP", "SQUAT", "CLAP", "WAVE"};
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripsEveryColumnInTimeOrder() throws IOException {
+        List<MoveSegment.Row> rows = List.of(
+                new MoveSegment.Row(40L, 7L, "SQUAT", 12, START.plusSeconds(5)),
+                new MoveSegment.Row(10L, null, null, null, START),
+                new MoveSegment.Row(30L, 7L, "JUMP", 3, START.plusSeconds(5)), // same instant: ordered by id
+                new MoveSegment.Row(20L, 9L, "JUMP", 0, START.plusNanos(123_456_000)));
+        List<MoveSegment.SessionEntry> sessions = List.of(
+                new MoveSegment.SessionEntry(7L, 3L, START, START.plusMinutes(10)));
+
+        MoveSegment.Reader reader = write(rows, sessions);
+
+        List<MoveSegment.Row> expected = new ArrayList<>(rows);
+        expected.sort(Comparator.comparing(MoveSegment.Row::createdAt).thenComparing(MoveSegment.Row::id));
+        assertThat(reader.moveCount()).isEqualTo(4);
+        assertThat(reader.read(null, null)).containsExactlyElementsOf(expected);
+        // a session only seen on a move is appended to the dictionary without details
+        assertThat(reader.sessions()).containsExactly(sessions.get(0),
+                new MoveSegment.SessionEntry(9L, null, null, null));
+        assertThat(reader.containsSession(9L)).isTrue();
+        assertThat(reader.containsSession(8L)).isFalse();
+    }
+
+    @Test
+    void rangeReadsAcrossBlocksMatchAFilterOfTheWholeSegment() throws IOException {
+        List<MoveSegment.Row> rows = randomMoves(3 * MoveSegment.BLOCK_MOVES + 17, new Random(45));
+        MoveSegment.Reader reader = write(rows, List.of());
+        List<MoveSegment.Row> all = reader.read(null, null);
+        assertThat(all).hasSize(rows.size()).containsExactlyInAnyOrderElementsOf(rows);
+
+        LocalDateTime from = all.get(MoveSegment.BLOCK_MOVES - 5).createdAt();
+        LocalDateTime to = all.get(2 * MoveSegment.BLOCK_MOVES + 5).createdAt();
+        List<MoveSegment.Row> expected = all.stream()
+                .filter(row -> !row.createdAt().isBefore(from) && row.createdAt().isBefore(to))
+                .toList();
+        assertThat(reader.read(from, to)).containsExactlyElementsOf(expected);
+        assertThat(reader.read(null, from)).containsExactlyElementsOf(all.subList(0, all.indexOf(expected.get(0))));
+        assertThat(reader.read(to.plusYears(1), null)).isEmpty();
+
+        List<MoveSegment.Row> streamed = new ArrayList<>();
+        reader.forEach(from, to, streamed::add);
+        assertThat(streamed).isEqualTo(expected);
+    }
+
+    @Test
+    void emptySegmentReadsBackEmpty() throws IOException {
+        MoveSegment.Reader reader = write(List.of(), List.of(new MoveSegment.SessionEntry(1L, null, START, null)));
+        assertThat(reader.moveCount()).isZero();
+        assertThat(reader.read(null, null)).isEmpty();
+        assertThat(reader.sessions()).hasSize(1);
+    }
+
+    @Test
+    void rejectsFilesThatAreNotSegments() throws IOException {
+        Path file = dir.resolve("child-1" + MoveSegment.EXTENSION);
+        Files.write(file, new byte[64]);
+        assertThatThrownBy(() -> MoveSegment.open(file)).isInstanceOf(IOException.class);
+    }
+
+    /**
+     * Size and decode rate of a month of moves for one busy child, for the
+     * comparison with the move table's footprint (information_schema puts a
+     * row there at well over 60 bytes, indexes included).
+     */
+    @Test
+    void compressesAMonthOfMovesWell() throws IOException {
+        List<MoveSegment.Row> rows = randomMoves(200_000, new Random(7));
+        MoveSegment.Reader reader = write(rows, List.of());
+
+        long started = System.nanoTime();
+        long[] decoded = {0};
+        reader.forEach(null, null, row -> decoded[0]++);
+        long elapsed = System.nanoTime() - started;
+
+        double bytesPerMove = (double) reader.byteSize() / rows.size();
+        System.out.printf("move segment: %.2f bytes/move, %.0f moves/s decoded%n", bytesPerMove,
+                decoded[0] * 1_000_000_000.0 / Math.max(1, elapsed));
+        assertThat(decoded[0]).isEqualTo(rows.size());
+        assertThat(bytesPerMove).isLessThan(8);
+    }
+
+    private MoveSegment.Reader write(List<MoveSegment.Row> rows, List<MoveSegment.SessionEntry> sessions)
+            throws IOException {
+        Path file = dir.resolve("child-" + rows.size() + MoveSegment.EXTENSION);
+        MoveSegment.write(file, rows, sessions);
+        return MoveSegment.open(file);
+    }
+
+    // sessions of a few hundred moves a second apart, ids mostly increasing, offsets drifting forward
+    private static List<MoveSegment.Row> randomMoves(int count, Random random) {
+        List<MoveSegment.Row> rows = new ArrayList<>(count);
+        LocalDateTime at = START;
+        long id = 1_000;
+        long session = 1;
+        int offset = 0;
+        for (int i = 0; i < count; i++) {
+            if (random.nextInt(300) == 0) {
+                session++;
+                offset = 0;
+                at = at.plusHours(1 + random.nextInt(20));
+            }
+            at = at.plusNanos((500 + random.nextInt(1500)) * 1_000_000L);
+            id += random.nextInt(20) == 0 ? 16 * (1 + random.nextInt(4)) : 16;
+            offset += random.nextInt(3);
+            boolean untyped = random.nextInt(100) == 0;
+            rows.add(new MoveSegment.Row(id, session, untyped ? null : TYPES[random.nextInt(TYPES.length)],
+                    untyped ? null : offset, at));
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.HackathonServer.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ShardIdsTest {
+
+    @Test
+    void idsAllocatedWithAShardsOffsetMapBackToIt() {
+        for (int shard = 0; shard < ShardIds.MAX_SHARDS; shard++) {
+            // what MySQL hands out with auto_increment_offset = shard + 1 and increment = MAX_SHARDS
+            for (long n = 0; n < 1_000; n++) {
+                long id = shard + 1 + n * ShardIds.MAX_SHARDS;
+                assertThat(ShardIds.shardOf(id)).isEqualTo(shard);
+            }
+        }
+    }
+
+    @Test
+    void shardOfStaysInRangeForAnyId() {
+        assertThat(ShardIds.shardOf(1)).isZero();
+        assertThat(ShardIds.shardOf(16)).isEqualTo(15);
+        assertThat(ShardIds.shardOf(17)).isZero();
+        assertThat(ShardIds.shardOf(0)).isEqualTo(15);
+        assertThat(ShardIds.shardOf(-5)).isBetween(0, ShardIds.MAX_SHARDS - 1);
+        assertThat(ShardIds.shardOf(Long.MAX_VALUE)).isBetween(0, ShardIds.MAX_SHARDS - 1);
+    }
+
+    @Test
+    void initSqlSetsTheShardsIncrementAndOffset() {
+        assertThat(ShardIds.initSql(0))
+                .isEqualTo("set session auto_increment_increment = 16, auto_increment_offset = 1");
+        assertThat(ShardIds.initSql(15))
+                .isEqualTo("set session auto_increment_increment = 16, auto_increment_offset = 16");
+        assertThatThrownBy(() -> ShardIds.initSql(-1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ShardIds.initSql(ShardIds.MAX_SHARDS)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
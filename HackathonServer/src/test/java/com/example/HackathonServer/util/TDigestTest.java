@@ -0,0 +1,126 @@
+package com.example.HackathonServer.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class TDigestTest {
+
+    @Test
+    void quantilesOfAShuffledUniformRangeAreClose() {
+        TDigest digest = digestOf(shuffled(0, 10_000, 26));
+
+        assertThat(digest.size()).isEqualTo(10_000.0);
+        assertThat(digest.quantile(0.5)).isCloseTo(5_000.0, within(100.0));
+        assertThat(digest.quantile(0.25)).isCloseTo(2_500.0, within(100.0));
+        // the tails keep small centroids, so they are tighter than the middle
+        assertThat(digest.quantile(0.99)).isCloseTo(9_900.0, within(20.0));
+        assertThat(digest.quantile(0.01)).isCloseTo(100.0, within(20.0));
+        assertThat(digest.quantile(0)).isEqualTo(0.0);
+        assertThat(digest.quantile(1)).isEqualTo(9_999.0);
+    }
+
+    @Test
+    void cdfIsTheInverseOfQuantile() {
+        TDigest digest = digestOf(shuffled(0, 10_000, 27));
+
+        assertThat(digest.cdf(2_500)).isCloseTo(0.25, within(0.01));
+        assertThat(digest.cdf(9_000)).isCloseTo(0.9, within(0.01));
+        assertThat(digest.cdf(-1)).isEqualTo(0.0);
+        assertThat(digest.cdf(9_999)).isEqualTo(1.0);
+        assertThat(digest.cdf(digest.quantile(0.7))).isCloseTo(0.7, within(0.005));
+    }
+
+    @Test
+    void skewedCountsWithManyZerosStayOrdered() {
+        // weekly moves of a cohort: most children idle, a long tail of very active ones
+        Random random = new Random(28);
+        TDigest digest = new TDigest(100);
+        for (int i = 0; i < 5_000; i++) {
+            digest.add(i % 3 == 0 ? 0 : Math.floor(-Math.log(1 - random.nextDouble()) * 200));
+        }
+        // a point mass is spread over its centroid's width, so its cdf reads a little low
+        assertThat(digest.cdf(0)).isCloseTo(1 / 3.0, within(0.05));
+        assertThat(digest.quantile(0.2)).isEqualTo(0.0);
+        assertThat(digest.quantile(0.5)).isLessThan(digest.quantile(0.9));
+        assertThat(digest.quantile(0.9)).isLessThan(digest.quantile(0.99));
+    }
+
+    @Test
+    void mergedHalvesMatchTheWhole() {
+        List<Double> values = shuffled(0, 10_000, 29);
+        TDigest whole = digestOf(values);
+        TDigest merged = digestOf(values.subList(0, 5_000));
+        merged.merge(digestOf(values.subList(5_000, 10_000)));
+
+        assertThat(merged.size()).isEqualTo(whole.size());
+        for (double q : new double[]{0.01, 0.1, 0.5, 0.9, 0.99}) {
+            assertThat(merged.quantile(q)).isCloseTo(whole.quantile(q), within(100.0));
+        }
+        assertThat(merged.quantile(0)).isEqualTo(0.0);
+        assertThat(merged.quantile(1)).isEqualTo(9_999.0);
+    }
+
+    @Test
+    void bytesRoundTripAndStaySmall() {
+        TDigest digest = digestOf(shuffled(0, 100_000, 30));
+        byte[] bytes = digest.toBytes();
+        TDigest restored = TDigest.fromBytes(bytes);
+
+        assertThat(restored.size()).isEqualTo(digest.size());
+        for (double q : new double[]{0, 0.05, 0.5, 0.95, 1}) {
+            assertThat(restored.quantile(q)).isEqualTo(digest.quantile(q));
+        }
+        // bounded by the compression, not by the 100k samples
+        assertThat(bytes.length).isLessThan(16 * 300);
+        // a restored digest keeps accepting samples
+        restored.add(200_000);
+        assertThat(restored.quantile(1)).isEqualTo(200_000.0);
+    }
+
+    @Test
+    void weightedSamplesCountTheirWeight() {
+        TDigest digest = new TDigest(100);
+        digest.add(1, 90);
+        digest.add(100, 10);
+
+        assertThat(digest.size()).isEqualTo(100.0);
+        assertThat(digest.quantile(0.3)).isEqualTo(1.0);
+        assertThat(digest.quantile(0.99)).isEqualTo(100.0);
+        assertThat(digest.cdf(50)).isBetween(0.45, 0.95);
+    }
+
+    @Test
+    void emptyAndSingleValueDigests() {
+        TDigest empty = new TDigest(100);
+        assertThat(Double.isNaN(empty.quantile(0.5))).isTrue();
+        assertThat(Double.isNaN(empty.cdf(1))).isTrue();
+
+        TDigest single = new TDigest(100);
+        single.add(42);
+        assertThat(single.quantile(0.5)).isEqualTo(42.0);
+        assertThat(single.cdf(41)).isEqualTo(0.0);
+        assertThat(single.cdf(42)).isEqualTo(1.0);
+    }
+
+    private static TDigest digestOf(List<Double> values) {
+        TDigest digest = new TDigest(100);
+        values.forEach(digest::add);
+        return digest;
+    }
+
+    private static List<Double> shuffled(int from, int to, long seed) {
+        List<Double> values = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            values.add((double) i);
+        }
+        Collections.shuffle(values, new Random(seed));
+        return values;
+    }
+}
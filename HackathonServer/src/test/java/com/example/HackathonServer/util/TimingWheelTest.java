@@ -0,0 +1,124 @@
+package com.example.HackathonServer.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TimingWheelTest {
+
+    // level 0 spans 40 ms, level 1 160 ms, level 2 640 ms, level 3 2560 ms
+    private static final long TICK = 10;
+    private static final int SLOTS = 4;
+
+    @Test
+    void firesAtTheEndOfTheDeadlinesTickNeverEarly() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, SLOTS, 7);
+        List<String> fired = new ArrayList<>();
+        assertThat(wheel.add(25, "a")).isTrue();
+        assertThat(wheel.add(3, "b")).isTrue(); // the start is rounded down to its tick
+
+        wheel.advance(9, fired::add);
+        assertThat(fired).isEmpty();
+        wheel.advance(10, fired::add);
+        assertThat(fired).containsExactly("b");
+        wheel.advance(29, fired::add);
+        assertThat(fired).containsExactly("b");
+        wheel.advance(30, fired::add);
+        assertThat(fired).containsExactly("b", "a");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void cascadesFarDeadlinesDownThroughEveryLevel() {
+        TimingWheel<Long> wheel = new TimingWheel<>(TICK, SLOTS, 0);
+        Random random = new Random(50);
+        List<Long> deadlines = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            deadlines.add((long) random.nextInt(10_000));
+        }
+        deadlines.add(39L);   // last tick of level 0
+        deadlines.add(40L);   // first deadline placed on level 1
+        deadlines.add(160L);  // first on level 2
+        deadlines.add(640L);  // first on level 3
+        deadlines.add(2_560L);
+        for (long deadline : deadlines) {
+            wheel.add(deadline, deadline);
+        }
+        assertThat(wheel.levels()).isGreaterThan(3);
+
+        Map<Long, Integer> pending = new HashMap<>();
+        deadlines.forEach(deadline -> pending.merge(deadline, 1, Integer::sum));
+        for (long now = 1; now <= 10_010; now++) {
+            long at = now;
+            wheel.advance(now, deadline -> {
+                // exactly when the tick holding the deadline ends
+                assertThat(at).isEqualTo((deadline / TICK + 1) * TICK);
+                assertThat(pending.merge(deadline, -1, Integer::sum)).isGreaterThan(-1);
+            });
+        }
+        assertThat(pending.values()).allMatch(count -> count == 0);
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void oneLargeAdvanceFiresOldestTickFirst() {
+        TimingWheel<Long> wheel = new TimingWheel<>(TICK, SLOTS, 0);
+        long[] deadlines = {5_000, 15, 700, 160, 2_999, 41, 39};
+        for (long deadline : deadlines) {
+            wheel.add(deadline, deadline);
+        }
+        List<Long> fired = new ArrayList<>();
+        wheel.advance(2_999, fired::add); // the tick holding 2_999 ends at 3_000
+        assertThat(fired).containsExactly(15L, 39L, 41L, 160L, 700L);
+        wheel.advance(5_010, fired::add);
+        assertThat(fired).containsExactly(15L, 39L, 41L, 160L, 700L, 2_999L, 5_000L);
+    }
+
+    @Test
+    void refusesDeadlinesBeforeTheCurrentTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, SLOTS, 0);
+        wheel.add(5_000, "later");
+        wheel.advance(105, item -> {
+        });
+        assertThat(wheel.add(99, "late")).isFalse();
+        assertThat(wheel.add(100, "this tick")).isTrue();
+        assertThat(wheel.size()).isEqualTo(2);
+    }
+
+    @Test
+    void anEmptyWheelSkipsStraightToNow() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, SLOTS, 0);
+        wheel.advance(1_000_000_003L, item -> {
+        });
+        List<String> fired = new ArrayList<>();
+        assertThat(wheel.add(1_000_000_000L, "now")).isTrue();
+        assertThat(wheel.add(1_000_000_500L, "soon")).isTrue();
+        wheel.advance(1_000_000_010L, fired::add);
+        assertThat(fired).containsExactly("now");
+        wheel.advance(1_000_000_510L, fired::add);
+        assertThat(fired).containsExactly("now", "soon");
+    }
+
+    @Test
+    void farFutureDeadlinesDoNotOverflowTheLevels() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, SLOTS, 0);
+        assertThat(wheel.add(Long.MAX_VALUE, "never")).isTrue();
+        List<String> fired = new ArrayList<>();
+        wheel.advance(100_000, fired::add);
+        assertThat(fired).isEmpty();
+        assertThat(wheel.size()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsBadSizing() {
+        assertThatThrownBy(() -> new TimingWheel<String>(0, SLOTS, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new TimingWheel<String>(TICK, 1, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
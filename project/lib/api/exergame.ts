@@ -40,6 +40,8 @@ export const exergameAPI = {
     try {
       const response = await fetch(`${API_BASE_URL}/video`, {
         method: 'GET',
+        // sends back the server's read-your-writes cookie so reads right after a write see it
+        credentials: 'include',
         headers: {
           'Content-Type': 'application/json',
         },
@@ -63,6 +65,7 @@ export const exergameAPI = {
     try {
       const response = await fetch(`${API_BASE_URL}/video/${videoId}`, {
         method: 'GET',
+        credentials: 'include',
         headers: {
           'Content-Type': 'application/json',
         },
@@ -89,6 +92,7 @@ export const exergameAPI = {
     try {
       const response = await fetch(`${API_BASE_URL}/homework/child/${childId}/all`, {
         method: 'GET',
+        credentials: 'include',
         headers: {
           'Content-Type': 'application/json',
         },